@@ -0,0 +1,364 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Checks {@link ArchitectureRule}s against the package and class dependency graphs of a scan.
+ * <p>
+ * Each distinct pattern is matched once, against the names sharing its literal prefix, found
+ * by binary search in the sorted names. A rule's targets form one target
+ * set, or one per module when its target pattern marks modules. Direct rules then cost one
+ * pass over the edges, intersecting the target sets of each edge's target with the rules its
+ * source is subject to. Transitive rules use reachability precomputed over the condensation
+ * DAG: components are visited dependencies first, and each one's {@link BitSet} of reachable
+ * target sets is its members' own sets or'ed with those of the components it depends on, so a
+ * source violates a rule when its component reaches one of the rule's target sets. Only then is
+ * the graph searched, for a shortest path to report.
+ */
+public class ArchitectureChecker {
+
+    /**
+     * A dependency, or for transitive rules a shortest chain of dependencies, a rule forbids.
+     */
+    public static class Violation {
+        private final ArchitectureRule rule;
+        private final List<String> path;
+
+        Violation(ArchitectureRule rule, List<String> path) {
+            this.rule = rule;
+            this.path = path;
+        }
+
+        public ArchitectureRule getRule() {
+            return rule;
+        }
+
+        public String getFrom() {
+            return path.get(0);
+        }
+
+        public String getTo() {
+            return path.get(path.size() - 1);
+        }
+
+        /**
+         * @return the names from source to forbidden target; two for a direct dependency
+         */
+        public List<String> getPath() {
+            return path;
+        }
+
+        /**
+         * @return ids ({@code from->to}) of the edges along the path, as used in the graph view
+         */
+        public List<String> getEdgeIds() {
+            List<String> edgeIds = new ArrayList<>(path.size() - 1);
+            for (int i = 1; i < path.size(); i++) {
+                edgeIds.add(path.get(i - 1) + "->" + path.get(i));
+            }
+            return edgeIds;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" -> ", path) + "  (" + rule + ")";
+        }
+    }
+
+    // A rule's targets, or those of one module when the rule's target pattern marks modules
+    private static class TargetSet {
+        private final int rule;
+        private final String module;
+
+        TargetSet(int rule, String module) {
+            this.rule = rule;
+            this.module = module;
+        }
+    }
+
+    private final List<ArchitectureRule> rules;
+
+    public ArchitectureChecker(List<ArchitectureRule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * @return the violations at both levels, package ones first
+     */
+    public List<Violation> check(DependencyScanner.ScanResultContainer result) {
+        DependencyGraph graph = result.getGraph();
+        List<Violation> violations = new ArrayList<>();
+        violations.addAll(check(GraphDiff.PACKAGE_LEVEL, graph.getPackageDependencies(), result.getPackageCondensation(),
+                graph::getPackageName));
+        violations.addAll(check(GraphDiff.CLASS_LEVEL, result.getClassDependencyIndex(), result.getClassCondensation(),
+                graph::getClassName));
+        return violations;
+    }
+
+    private List<Violation> check(String level, DependencyGraph.Adjacency adjacency, Condensation condensation,
+                                  IntFunction<String> nameOf) {
+        List<Integer> levelRules = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            if (rules.get(r).getLevel().equals(level)) {
+                levelRules.add(r);
+            }
+        }
+        if (levelRules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int nodeCount = adjacency.getNodeCount();
+        String[] names = new String[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            names[node] = nameOf.apply(node);
+        }
+
+        // Each distinct pattern is matched once against the names sharing its literal prefix,
+        // however many rules use it
+        int[] sorted = IntStream.range(0, nodeCount).boxed()
+                .sorted(Comparator.comparing(node -> names[node]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        Map<String, BitSet> sourceMatches = new HashMap<>();
+        Map<String, List<Integer>> rulesByTarget = new LinkedHashMap<>();
+        for (int r : levelRules) {
+            sourceMatches.computeIfAbsent(rules.get(r).getFrom(), from -> matching(from, names, sorted));
+            rulesByTarget.computeIfAbsent(rules.get(r).getTo(), to -> new ArrayList<>()).add(r);
+        }
+
+        // Target sets of every node, ascending
+        List<TargetSet> targetSets = new ArrayList<>();
+        Map<String, Integer> targetSetIds = new HashMap<>();
+        int[][] targetsOf = new int[nodeCount][];
+        int[] targetCount = new int[nodeCount];
+        for (Map.Entry<String, List<Integer>> target : rulesByTarget.entrySet()) {
+            Pattern pattern = ArchitectureRule.compile(target.getKey());
+            String literal = ArchitectureRule.longestLiteral(target.getKey());
+            int[] range = prefixRange(ArchitectureRule.literalPrefix(target.getKey()), names, sorted);
+            for (int i = range[0]; i < range[1]; i++) {
+                int node = sorted[i];
+                if (!names[node].contains(literal)) {
+                    continue;
+                }
+                Matcher matcher = pattern.matcher("." + names[node]);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                String module = (matcher.groupCount() > 0 && matcher.group(1) != null)
+                        ? names[node].substring(0, matcher.end(1) - 1) : null;
+                for (int r : target.getValue()) {
+                    int targetSet = targetSetIds.computeIfAbsent(r + ":" + module, key -> {
+                        targetSets.add(new TargetSet(r, module));
+                        return targetSets.size() - 1;
+                    });
+                    if (targetsOf[node] == null) {
+                        targetsOf[node] = new int[2];
+                    } else if (targetCount[node] == targetsOf[node].length) {
+                        targetsOf[node] = Arrays.copyOf(targetsOf[node], 2 * targetCount[node]);
+                    }
+                    targetsOf[node][targetCount[node]++] = targetSet;
+                }
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            if (targetsOf[node] != null) {
+                targetsOf[node] = Arrays.copyOf(targetsOf[node], targetCount[node]);
+                Arrays.sort(targetsOf[node]);
+            }
+        }
+        if (targetSets.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Violation> violations = new ArrayList<>();
+        checkDirect(adjacency, names, targetsOf, targetSets, sourceMatches, violations);
+        checkTransitive(adjacency, condensation, names, targetsOf, targetSets, sourceMatches, violations);
+        return violations;
+    }
+
+    private void checkDirect(DependencyGraph.Adjacency adjacency, String[] names, int[][] targetsOf,
+                             List<TargetSet> targetSets, Map<String, BitSet> sourceMatches, List<Violation> violations) {
+        for (int node = 0; node < names.length; node++) {
+            for (int i = 0; i < adjacency.degree(node); i++) {
+                int target = adjacency.target(node, i);
+                if (targetsOf[target] == null || target == node) {
+                    continue;
+                }
+                for (int targetSet : targetsOf[target]) {
+                    ArchitectureRule rule = rules.get(targetSets.get(targetSet).rule);
+                    // A transitive rule covers direct dependencies; it reports them itself
+                    if (!rule.isTransitive() && appliesTo(rule, targetSets.get(targetSet), node, names, sourceMatches)) {
+                        violations.add(new Violation(rule, Arrays.asList(names[node], names[target])));
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkTransitive(DependencyGraph.Adjacency adjacency, Condensation condensation, String[] names,
+                                 int[][] targetsOf, List<TargetSet> targetSets, Map<String, BitSet> sourceMatches,
+                                 List<Violation> violations) {
+        BitSet transitiveSets = new BitSet(targetSets.size());
+        for (int targetSet = 0; targetSet < targetSets.size(); targetSet++) {
+            if (rules.get(targetSets.get(targetSet).rule).isTransitive()) {
+                transitiveSets.set(targetSet);
+            }
+        }
+        if (transitiveSets.isEmpty()) {
+            return;
+        }
+
+        // Target sets each component reaches, including its own members; null for none.
+        // Components a component depends on have lower ids, so they are complete already
+        int componentCount = condensation.getComponentCount();
+        BitSet[] reaches = new BitSet[componentCount];
+        BitSet[] reachesOthers = new BitSet[componentCount];
+        DependencyGraph.Adjacency dag = condensation.getDag();
+        for (int component = 0; component < componentCount; component++) {
+            BitSet reached = null;
+            for (int i = 0; i < dag.degree(component); i++) {
+                reached = or(reached, reaches[dag.target(component, i)]);
+            }
+            // Without a cycle, a node only reaches its own target sets by depending on itself
+            BitSet own = null;
+            for (int member : condensation.getMembers(component)) {
+                if (targetsOf[member] != null) {
+                    own = (own != null) ? own : new BitSet();
+                    for (int targetSet : targetsOf[member]) {
+                        if (transitiveSets.get(targetSet)) {
+                            own.set(targetSet);
+                        }
+                    }
+                }
+            }
+            reaches[component] = (own != null) ? or(copy(reached), own) : reached;
+            reachesOthers[component] = condensation.isCyclic(component) ? reaches[component] : reached;
+        }
+
+        for (int targetSet = transitiveSets.nextSetBit(0); targetSet >= 0; targetSet = transitiveSets.nextSetBit(targetSet + 1)) {
+            ArchitectureRule rule = rules.get(targetSets.get(targetSet).rule);
+            BitSet sources = sourceMatches.get(rule.getFrom());
+            for (int node = sources.nextSetBit(0); node >= 0; node = sources.nextSetBit(node + 1)) {
+                BitSet reached = reachesOthers[condensation.getComponent(node)];
+                if (reached != null && reached.get(targetSet) && appliesTo(rule, targetSets.get(targetSet), node, names, sourceMatches)) {
+                    List<String> path = shortestPath(adjacency, condensation, reaches, targetsOf, targetSet, node, names);
+                    if (path != null) {
+                        violations.add(new Violation(rule, path));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Breadth-first search for the nearest other node in a target set, only entering nodes
+     * whose component still reaches the set.
+     */
+    private static List<String> shortestPath(DependencyGraph.Adjacency adjacency, Condensation condensation,
+                                             BitSet[] reaches, int[][] targetsOf, int targetSet, int source, String[] names) {
+        Map<Integer, Integer> parent = new HashMap<>();
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        parent.put(source, -1);
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = 0; i < adjacency.degree(node); i++) {
+                int next = adjacency.target(node, i);
+                BitSet reached = reaches[condensation.getComponent(next)];
+                if (parent.containsKey(next) || reached == null || !reached.get(targetSet)) {
+                    continue;
+                }
+                parent.put(next, node);
+                if (targetsOf[next] != null && Arrays.binarySearch(targetsOf[next], targetSet) >= 0) {
+                    List<String> path = new ArrayList<>();
+                    for (int step = next; step != -1; step = parent.get(step)) {
+                        path.add(names[step]);
+                    }
+                    Collections.reverse(path);
+                    return path;
+                }
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, 2 * tail);
+                }
+                queue[tail++] = next;
+            }
+        }
+        return null; // Only the source itself is in the set
+    }
+
+    /**
+     * @return the names a pattern matches; only names starting with its literal prefix are
+     *         tried, and a plain substring test rules out most of those
+     */
+    private static BitSet matching(String pattern, String[] names, int[] sorted) {
+        Pattern compiled = ArchitectureRule.compile(pattern);
+        String literal = ArchitectureRule.longestLiteral(pattern);
+        int[] range = prefixRange(ArchitectureRule.literalPrefix(pattern), names, sorted);
+        BitSet matches = new BitSet(names.length);
+        for (int i = range[0]; i < range[1]; i++) {
+            int node = sorted[i];
+            if (names[node].contains(literal) && compiled.matcher("." + names[node]).matches()) {
+                matches.set(node);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return the start and end, in {@code sorted}, of the names starting with a prefix
+     */
+    private static int[] prefixRange(String prefix, String[] names, int[] sorted) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names[sorted[middle]].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < sorted.length && names[sorted[end]].startsWith(prefix)) {
+            end++;
+        }
+        return new int[]{low, end};
+    }
+
+    private static boolean appliesTo(ArchitectureRule rule, TargetSet targetSet, int node, String[] names,
+                                     Map<String, BitSet> sourceMatches) {
+        if (!sourceMatches.get(rule.getFrom()).get(node)) {
+            return false;
+        }
+        String module = targetSet.module;
+        return module == null || !(names[node].equals(module) || names[node].startsWith(module + "."));
+    }
+
+    private static BitSet or(BitSet into, BitSet other) {
+        if (other == null) {
+            return into;
+        }
+        if (into == null) {
+            return (BitSet) other.clone();
+        }
+        into.or(other);
+        return into;
+    }
+
+    private static BitSet copy(BitSet bits) {
+        return (bits != null) ? (BitSet) bits.clone() : null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A forbidden dependency, stored in the project file and checked by {@link ArchitectureChecker}.
+ * <p>
+ * Rules are written as {@code <from> must not depend on <to>}, or {@code must not transitively
+ * depend on} to forbid indirect dependencies too, and apply to packages unless prefixed with
+ * {@code classes}. Patterns match dot-separated names: {@code *} matches within one segment,
+ * {@code **} one or more segments and {@code ..} any number of them, so {@code ..web..} is any
+ * package with a {@code web} segment and {@code com.acme..} is {@code com.acme} and everything
+ * below it. A {@code (*)} or {@code (**)} in the target pattern marks a module: sources inside
+ * the target's name up to the end of that group are exempt, so
+ * {@code .. must not depend on (**).internal..} forbids using another module's internals.
+ */
+public class ArchitectureRule {
+
+    private static final Pattern SYNTAX = Pattern.compile(
+            "\\s*(?:(classes|packages)\\s+)?(\\S+)\\s+must\\s+not\\s+(transitively\\s+)?depend\\s+on\\s+(\\S+)\\s*",
+            Pattern.CASE_INSENSITIVE);
+
+    private String level;
+    private String from;
+    private String to;
+    private boolean transitive;
+
+    public ArchitectureRule() {
+    }
+
+    /**
+     * @param level {@link GraphDiff#PACKAGE_LEVEL} or {@link GraphDiff#CLASS_LEVEL}
+     */
+    public ArchitectureRule(String level, String from, String to, boolean transitive) {
+        this.level = level;
+        this.from = from;
+        this.to = to;
+        this.transitive = transitive;
+    }
+
+    /**
+     * Parses the textual form produced by {@link #toString()}.
+     */
+    public static ArchitectureRule parse(String text) {
+        Matcher matcher = SYNTAX.matcher(text);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a rule: \"" + text.trim()
+                    + "\" (expected \"[classes] <from> must not [transitively] depend on <to>\")");
+        }
+        boolean classLevel = matcher.group(1) != null && matcher.group(1).toLowerCase(Locale.ROOT).equals("classes");
+        ArchitectureRule rule = new ArchitectureRule(classLevel ? GraphDiff.CLASS_LEVEL : GraphDiff.PACKAGE_LEVEL,
+                matcher.group(2), matcher.group(4), matcher.group(3) != null);
+        compile(rule.from);
+        compile(rule.to);
+        return rule;
+    }
+
+    public String getLevel() {
+        return level != null ? level : GraphDiff.PACKAGE_LEVEL;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public boolean isTransitive() {
+        return transitive;
+    }
+
+    /**
+     * Compiles a name pattern into a regular expression matched against the name with a dot in
+     * front, so that every segment, the first one included, follows a dot.
+     */
+    static Pattern compile(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Empty name pattern");
+        }
+        StringBuilder regex = new StringBuilder();
+        boolean anySegments = false;
+        for (String segment : pattern.split("\\.", -1)) {
+            if (segment.isEmpty()) {
+                // ".." leaves an empty segment; consecutive ones mean the same
+                if (!anySegments) {
+                    regex.append("(?:\\.[^.]+)*");
+                }
+                anySegments = true;
+                continue;
+            }
+            anySegments = false;
+            switch (segment) {
+                case "(*)":
+                    regex.append("(\\.[^.]+)");
+                    break;
+                case "(**)":
+                    regex.append("((?:\\.[^.]+)+)");
+                    break;
+                case "**":
+                    regex.append("(?:\\.[^.]+)+");
+                    break;
+                case "*":
+                    regex.append("\\.[^.]+");
+                    break;
+                default:
+                    if (segment.indexOf('(') >= 0 || segment.indexOf(')') >= 0) {
+                        throw new IllegalArgumentException("Only (*) and (**) may be grouped: " + pattern);
+                    }
+                    regex.append("\\.");
+                    for (String literal : segment.split("\\*", -1)) {
+                        regex.append(literal.isEmpty() ? "" : Pattern.quote(literal)).append("[^.]*");
+                    }
+                    regex.setLength(regex.length() - "[^.]*".length());
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * @return the text every name matching the pattern starts with
+     */
+    static String literalPrefix(String pattern) {
+        int end = pattern.length();
+        for (String wildcard : new String[]{"*", "(", ".."}) {
+            int index = pattern.indexOf(wildcard);
+            if (index >= 0) {
+                end = Math.min(end, index);
+            }
+        }
+        return pattern.substring(0, end);
+    }
+
+    /**
+     * @return the longest text every name matching the pattern contains
+     */
+    static String longestLiteral(String pattern) {
+        String longest = "";
+        for (String literal : pattern.split("[.*()]+")) {
+            if (literal.length() > longest.length()) {
+                longest = literal;
+            }
+        }
+        return longest;
+    }
+
+    @Override
+    public String toString() {
+        return (getLevel().equals(GraphDiff.CLASS_LEVEL) ? "classes " : "") + from + " must not "
+                + (transitive ? "transitively " : "") + "depend on " + to;
+    }
+}
@@ -0,0 +1,220 @@
+package com.ryddlesoft.devi4j;
+
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes metrics for every class in a project's sources. Files are split into chunks of a
+ * bounded size and the chunks are analyzed on a fork-join pool, each with its own short-lived
+ * Spoon model, so at most one chunk model per thread is resident at any time. Results are
+ * handed to a consumer as soon as their chunk is done. Files found in the {@link MetricsCache}
+ * are not parsed at all.
+ */
+public class BatchMetricsAnalyzer {
+
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+
+    /**
+     * Called from the pool threads after each chunk.
+     */
+    public interface ProgressListener {
+        void progress(int completedFiles, int totalFiles, int analyzedClasses);
+    }
+
+    private final List<String> sourcePaths;
+    private final int threads;
+    private final int chunkSize;
+    private final MetricsCache cache;
+    private final CodeMetricsAnalyzer analyzer = new CodeMetricsAnalyzer();
+    private volatile boolean cancelled;
+
+    /**
+     * @param threads   worker threads; 0 uses one per available processor
+     * @param chunkSize source files per Spoon model
+     * @param cache     cache to consult and fill, or null
+     */
+    public BatchMetricsAnalyzer(List<String> sourcePaths, int threads, int chunkSize, MetricsCache cache) {
+        this.sourcePaths = (sourcePaths != null) ? sourcePaths : Collections.emptyList();
+        this.threads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = Math.max(1, chunkSize);
+        this.cache = cache;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @param sink receives each class's metrics from the pool threads and must be thread-safe
+     * @throws CancellationException if {@link #cancel()} was called
+     */
+    public MetricsStatistics analyze(Consumer<ClassMetrics> sink, ProgressListener listener) throws IOException {
+        ScanStatistics.Recorder.resetPeakHeap();
+        long startNanos = System.nanoTime();
+
+        List<Path> files = collectSourceFiles(sourcePaths);
+        List<List<Path>> chunks = new ArrayList<>();
+        for (int start = 0; start < files.size(); start += chunkSize) {
+            chunks.add(files.subList(start, Math.min(files.size(), start + chunkSize)));
+        }
+
+        AtomicInteger completedFiles = new AtomicInteger();
+        AtomicInteger analyzedClasses = new AtomicInteger();
+        AtomicInteger failedFiles = new AtomicInteger();
+        AtomicInteger cachedFiles = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // Parallel streams run on the pool that submitted them
+            pool.submit(() -> chunks.parallelStream().forEach(chunk -> {
+                if (cancelled) {
+                    return;
+                }
+                int classes = analyzeCachedChunk(chunk, sink, failedFiles, cachedFiles);
+                listener.progress(completedFiles.addAndGet(chunk.size()), files.size(), analyzedClasses.addAndGet(classes));
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Metrics analysis interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (cancelled) {
+            throw new CancellationException("Metrics analysis cancelled");
+        }
+
+        long durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        return new MetricsStatistics(files.size(), analyzedClasses.get(), failedFiles.get(), cachedFiles.get(),
+                durationMillis, ScanStatistics.Recorder.peakHeap(), threads);
+    }
+
+    private int analyzeCachedChunk(List<Path> chunk, Consumer<ClassMetrics> sink, AtomicInteger failedFiles,
+                                   AtomicInteger cachedFiles) {
+        if (cache == null) {
+            return analyzeChunk(chunk, sink, failedFiles, Collections.emptyMap());
+        }
+        int classes = 0;
+        List<Path> misses = new ArrayList<>();
+        Map<Path, String> missKeys = new HashMap<>();
+        for (Path file : chunk) {
+            String key;
+            try {
+                key = cache.key(file);
+            } catch (IOException e) {
+                failedFiles.incrementAndGet();
+                continue;
+            }
+            List<ClassMetrics> cached = cache.get(key);
+            if (cached != null) {
+                cached.forEach(sink);
+                classes += cached.size();
+                cachedFiles.incrementAndGet();
+            } else {
+                misses.add(file);
+                missKeys.put(normalize(file), key);
+            }
+        }
+        return classes + (misses.isEmpty() ? 0 : analyzeChunk(misses, sink, failedFiles, missKeys));
+    }
+
+    /**
+     * Models a whole chunk at once; if Spoon rejects it, the files are retried one by one so a
+     * single broken file only loses its own metrics.
+     *
+     * @param cacheKeys cache keys of the chunk's files by normalized path
+     */
+    private int analyzeChunk(List<Path> chunk, Consumer<ClassMetrics> sink, AtomicInteger failedFiles,
+                             Map<Path, String> cacheKeys) {
+        Map<Path, List<ClassMetrics>> metricsByFile;
+        try {
+            metricsByFile = analyzeModel(buildModel(chunk));
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                failedFiles.incrementAndGet();
+                return 0;
+            }
+            int classes = 0;
+            for (Path file : chunk) {
+                classes += analyzeChunk(Collections.singletonList(file), sink, failedFiles, cacheKeys);
+            }
+            return classes;
+        }
+
+        int classes = 0;
+        for (Path file : chunk) {
+            List<ClassMetrics> metrics = metricsByFile.getOrDefault(normalize(file), Collections.emptyList());
+            metrics.forEach(sink);
+            classes += metrics.size();
+            String key = cacheKeys.get(normalize(file));
+            if (key != null) {
+                cache.put(key, metrics);
+            }
+        }
+        return classes;
+    }
+
+    private static CtModel buildModel(List<Path> files) {
+        Launcher launcher = CodeMetricsAnalyzer.createLauncher();
+        for (Path file : files) {
+            launcher.addInputResource(file.toString());
+        }
+        return launcher.buildModel();
+    }
+
+    private Map<Path, List<ClassMetrics>> analyzeModel(CtModel model) {
+        Map<Path, List<ClassMetrics>> metricsByFile = new HashMap<>();
+        for (CtType<?> type : model.getAllTypes()) {
+            File file = type.getPosition().getFile();
+            if (file != null) {
+                metricsByFile.computeIfAbsent(normalize(file.toPath()), f -> new ArrayList<>())
+                        .addAll(analyzer.analyzeAllTypes(type));
+            }
+        }
+        return metricsByFile;
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    static List<Path> collectSourceFiles(List<String> sourcePaths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String sourcePath : sourcePaths) {
+            if (!new File(sourcePath).exists()) {
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(Paths.get(sourcePath))) {
+                files.addAll(walk.filter(path -> path.toString().endsWith(".java") && Files.isRegularFile(path))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return files;
+    }
+}
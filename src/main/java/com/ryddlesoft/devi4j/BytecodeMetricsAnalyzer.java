@@ -0,0 +1,291 @@
+package com.ryddlesoft.devi4j;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Computes method metrics straight from class files, so classes that only exist in jars get
+ * metrics too. Cyclomatic complexity counts conditional jumps and switch cases, the bytecode
+ * counterparts of the branches {@link CodeMetricsAnalyzer} counts in sources; the line count
+ * is the number of distinct source lines with code, when the class carries line numbers.
+ * <p>
+ * During a {@link ScanProfile#FULL full} scan, a per-class summary is computed from the bytes
+ * ClassGraph reads anyway and kept in the scan index and snapshot as metric columns. Besides
+ * the method totals it holds the class-local OO metrics: WMC (the sum of method complexities),
+ * LCOM (Chidamber-Kemerer: method pairs sharing no instance field of the class minus pairs
+ * sharing one, at least 0) and RFC (own methods plus distinct methods invoked). The metrics
+ * that depend on other classes are added by {@link OoMetricsCalculator}.
+ */
+public class BytecodeMetricsAnalyzer {
+
+    /**
+     * Bump whenever a metric's definition changes, so cached summaries are recomputed.
+     */
+    public static final int VERSION = 3;
+
+    // Indexes into the per-class summary produced by summarize()
+    public static final int METHOD_COUNT = 0;
+    public static final int WMC = 1;
+    public static final int MAX_COMPLEXITY = 2;
+    public static final int INSTRUCTION_COUNT = 3;
+    public static final int LCOM = 4;
+    public static final int RFC = 5;
+    public static final String[] SUMMARY_COLUMNS = {"methods", "wmc", "maxComplexity", "instructions", "lcom", "rfc"};
+
+    public ClassMetrics analyze(byte[] classBytes) {
+        return read(classBytes).classMetrics;
+    }
+
+    /**
+     * @return the class-level summary, indexed by {@link #METHOD_COUNT} and its siblings
+     */
+    public int[] summarize(byte[] classBytes) {
+        ClassFacts facts = read(classBytes);
+        int[] summary = new int[SUMMARY_COLUMNS.length];
+        for (MethodMetrics method : facts.classMetrics.getMethodMetrics()) {
+            summary[METHOD_COUNT]++;
+            summary[WMC] += method.getCyclomaticComplexity();
+            summary[MAX_COMPLEXITY] = Math.max(summary[MAX_COMPLEXITY], method.getCyclomaticComplexity());
+            summary[INSTRUCTION_COUNT] += method.getInstructionCount();
+        }
+        summary[LCOM] = lackOfCohesion(facts.fieldAccesses);
+        summary[RFC] = facts.responseSet.size();
+        return summary;
+    }
+
+    /**
+     * Reads a class from the first jar or class directory of {@code classpath} containing it.
+     *
+     * @return its metrics, or null if no classpath element contains the class
+     */
+    public ClassMetrics analyze(List<String> classpath, String className) throws IOException {
+        String resourceName = className.replace('.', '/') + ".class";
+        for (String path : classpath) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File classFile = new File(file, resourceName);
+                if (classFile.isFile()) {
+                    return analyze(Files.readAllBytes(classFile.toPath()));
+                }
+            } else if (file.isFile()) {
+                try (ZipFile zipFile = new ZipFile(file)) {
+                    ZipEntry entry = zipFile.getEntry(resourceName);
+                    if (entry != null) {
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            return analyze(in.readAllBytes());
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chidamber-Kemerer LCOM over the instance field sets of the methods.
+     */
+    private static int lackOfCohesion(List<BitSet> fieldAccesses) {
+        int disjointPairs = 0;
+        int sharingPairs = 0;
+        for (int i = 0; i < fieldAccesses.size(); i++) {
+            for (int j = i + 1; j < fieldAccesses.size(); j++) {
+                if (fieldAccesses.get(i).intersects(fieldAccesses.get(j))) {
+                    sharingPairs++;
+                } else {
+                    disjointPairs++;
+                }
+            }
+        }
+        return Math.max(0, disjointPairs - sharingPairs);
+    }
+
+    private static ClassFacts read(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        String owner = reader.getClassName();
+        ClassFacts facts = new ClassFacts(new ClassMetrics(owner.replace('/', '.')));
+        Map<String, Integer> instanceFields = new HashMap<>();
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                if ((access & Opcodes.ACC_STATIC) == 0) {
+                    instanceFields.put(name, instanceFields.size());
+                }
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if ((access & Opcodes.ACC_BRIDGE) != 0) {
+                    return null; // Compiler-generated forwarder of another method
+                }
+                MethodMetrics methodMetrics = new MethodMetrics(name);
+                Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+                methodMetrics.setParameterCount(argumentTypes.length);
+                methodMetrics.setParameterTypes(Arrays.stream(argumentTypes).map(Type::getClassName)
+                        .collect(Collectors.joining(",")));
+                methodMetrics.setCyclomaticComplexity(1);
+                facts.classMetrics.addMethodMetrics(methodMetrics);
+                facts.responseSet.add(owner + '.' + name + descriptor);
+                BitSet fields = new BitSet();
+                if (!name.equals("<clinit>")) {
+                    facts.fieldAccesses.add(fields);
+                }
+                return new MethodMetricsVisitor(methodMetrics, owner, instanceFields, fields, facts.responseSet);
+            }
+        }, ClassReader.SKIP_FRAMES);
+        return facts;
+    }
+
+    private static class ClassFacts {
+        final ClassMetrics classMetrics;
+        final List<BitSet> fieldAccesses = new ArrayList<>();
+        final Set<String> responseSet = new HashSet<>();
+
+        ClassFacts(ClassMetrics classMetrics) {
+            this.classMetrics = classMetrics;
+        }
+    }
+
+    private static class MethodMetricsVisitor extends MethodVisitor {
+        private final MethodMetrics methodMetrics;
+        private final String owner;
+        // Fields are visited before methods, so the map is complete when code is visited
+        private final Map<String, Integer> instanceFields;
+        private final BitSet fieldAccesses;
+        private final Set<String> responseSet;
+        private final Set<Integer> lines = new HashSet<>();
+        private int complexity = 1;
+        private int instructions;
+
+        MethodMetricsVisitor(MethodMetrics methodMetrics, String owner, Map<String, Integer> instanceFields,
+                             BitSet fieldAccesses, Set<String> responseSet) {
+            super(Opcodes.ASM9);
+            this.methodMetrics = methodMetrics;
+            this.owner = owner;
+            this.instanceFields = instanceFields;
+            this.fieldAccesses = fieldAccesses;
+            this.responseSet = responseSet;
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            instructions++;
+            if (opcode != Opcodes.GOTO && opcode != Opcodes.JSR) {
+                complexity++;
+            }
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            instructions++;
+            complexity += countCases(dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            instructions++;
+            complexity += countCases(dflt, labels);
+        }
+
+        // Table switches pad the gaps between case values with jumps to the default
+        private static int countCases(Label dflt, Label[] labels) {
+            int cases = 0;
+            for (Label label : labels) {
+                if (label != dflt) {
+                    cases++;
+                }
+            }
+            return cases;
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            instructions++;
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            instructions++;
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int varIndex) {
+            instructions++;
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            instructions++;
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String fieldOwner, String name, String descriptor) {
+            instructions++;
+            Integer field = fieldOwner.equals(owner) ? instanceFields.get(name) : null;
+            if (field != null) {
+                fieldAccesses.set(field);
+            }
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String methodOwner, String name, String descriptor, boolean isInterface) {
+            instructions++;
+            responseSet.add(methodOwner + '.' + name + descriptor);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                           Object... bootstrapMethodArguments) {
+            instructions++;
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            instructions++;
+        }
+
+        @Override
+        public void visitIincInsn(int varIndex, int increment) {
+            instructions++;
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            instructions++;
+        }
+
+        @Override
+        public void visitLineNumber(int line, Label start) {
+            lines.add(line);
+        }
+
+        @Override
+        public void visitEnd() {
+            methodMetrics.setCyclomaticComplexity(complexity);
+            methodMetrics.setInstructionCount(instructions);
+            methodMetrics.setLineCount(lines.size());
+        }
+    }
+}
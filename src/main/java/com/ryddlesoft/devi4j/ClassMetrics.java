@@ -32,4 +32,23 @@ public class ClassMetrics {
     public void setMethodMetrics(List<MethodMetrics> methodMetrics) {
         this.methodMetrics = methodMetrics;
     }
+
+    /**
+     * @return the highest cyclomatic complexity of any method, or 0 without methods
+     */
+    public int getMaxCyclomaticComplexity() {
+        int max = 0;
+        for (MethodMetrics method : methodMetrics) {
+            max = Math.max(max, method.getCyclomaticComplexity());
+        }
+        return max;
+    }
+
+    public int getTotalCyclomaticComplexity() {
+        int total = 0;
+        for (MethodMetrics method : methodMetrics) {
+            total += method.getCyclomaticComplexity();
+        }
+        return total;
+    }
 }
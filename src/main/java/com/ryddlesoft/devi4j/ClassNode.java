@@ -0,0 +1,54 @@
+package com.ryddlesoft.devi4j;
+
+/**
+ * A scanned class as shown in the project tree.
+ */
+public class ClassNode {
+    private final int id;
+    private final String name;
+    private final String packageName;
+
+    public ClassNode(int id, String name, String packageName) {
+        this.id = id;
+        this.name = name;
+        this.packageName = packageName;
+    }
+
+    /**
+     * @return the class id in the {@link DependencyGraph} this node was created from
+     */
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * @return the name after the last '.' or '$', e.g. {@code Inner} for {@code a.b.Outer$Inner}
+     */
+    public String getSimpleName() {
+        int lastSeparator = Math.max(name.lastIndexOf('.'), name.lastIndexOf('$'));
+        return (lastSeparator == -1) ? name : name.substring(lastSeparator + 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ClassNode && name.equals(((ClassNode) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getSimpleName();
+    }
+}
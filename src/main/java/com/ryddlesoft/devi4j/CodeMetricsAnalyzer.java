@@ -1,9 +1,21 @@
 package com.ryddlesoft.devi4j;
 
 import spoon.Launcher;
-import spoon.reflect.CtModel;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtLambda;
+import spoon.reflect.code.CtNewClass;
+import spoon.reflect.declaration.CtAnonymousExecutable;
 import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtField;
 import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.CtTypeMember;
+import spoon.reflect.declaration.CtTypeParameter;
+import spoon.reflect.reference.CtTypeReference;
 import spoon.reflect.visitor.CtScanner;
 import spoon.reflect.code.CtIf;
 import spoon.reflect.code.CtFor;
@@ -19,56 +31,165 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Computes method metrics from source code with Spoon. Every type of a file is analyzed,
+ * including nested, local and anonymous classes, enums and interfaces, keyed by binary name
+ * ({@code Outer$Inner}, {@code Outer$1}). Constructors are reported as {@code <init>},
+ * initializer blocks as {@code <clinit>} and {@code <init-block>}, and lambdas separately as
+ * {@code lambda$enclosing$n}, as javac compiles them. Branches inside a lambda or a nested class
+ * therefore count for that lambda or class only, never for the enclosing method.
+ */
 public class CodeMetricsAnalyzer {
 
-    public ClassMetrics analyze(String filePath) {
-        File sourceFile = new File(filePath);
-        if (!sourceFile.exists()) {
-            return null;
-        }
+    /**
+     * Bump whenever a metric's definition changes, so cached results are recomputed.
+     */
+    public static final int VERSION = 3;
 
-        Launcher launcher = new Launcher();
-        launcher.addInputResource(sourceFile.getAbsolutePath());
-        launcher.getEnvironment().setNoClasspath(true); // Important for analyzing single files
-        launcher.getEnvironment().setCommentEnabled(false);
-        launcher.getEnvironment().setComplianceLevel(11);
-        CtModel model = launcher.buildModel();
+    /**
+     * Computes the metrics of a type taken from an already built model, without its nested types.
+     */
+    public ClassMetrics analyze(CtType<?> ctType) {
+        ClassMetrics classMetrics = new ClassMetrics(ctType.getQualifiedName());
+        List<CtLambda<?>> lambdas = new ArrayList<>();
+        List<String> lambdaOwners = new ArrayList<>();
 
-        CtClass<?> ctClass = model.getElements(new TypeFilter<>(CtClass.class)).stream().findFirst().orElse(null);
+        for (CtTypeMember member : ctType.getTypeMembers()) {
+            String name;
+            if (member instanceof CtConstructor) {
+                name = "<init>";
+            } else if (member instanceof CtMethod) {
+                name = member.getSimpleName();
+            } else if (member instanceof CtAnonymousExecutable) {
+                name = member.isStatic() ? "<clinit>" : "<init-block>";
+            } else {
+                continue; // Fields and nested types
+            }
+            CtExecutable<?> executable = (CtExecutable<?>) member;
+            MethodMetrics methodMetrics = analyzeExecutable(name, executable.getParameters().size(), executable.getBody());
+            methodMetrics.setParameterTypes(parameterTypes(executable));
+            classMetrics.addMethodMetrics(methodMetrics);
+            collectLambdas(member, ctType, name, lambdas, lambdaOwners);
+        }
+        // Field initializers may hold lambdas too
+        for (CtField<?> field : ctType.getFields()) {
+            collectLambdas(field, ctType, field.isStatic() ? "static" : "new", lambdas, lambdaOwners);
+        }
 
-        if (ctClass == null) {
-            return null;
+        for (int i = 0; i < lambdas.size(); i++) {
+            CtLambda<?> lambda = lambdas.get(i);
+            CtElement body = (lambda.getBody() != null) ? lambda.getBody() : lambda.getExpression();
+            classMetrics.addMethodMetrics(analyzeExecutable("lambda$" + lambdaOwners.get(i) + "$" + i,
+                    lambda.getParameters().size(), body));
         }
+        return classMetrics;
+    }
+
+    /**
+     * @return the erased parameter types in the form class files use, so that source and
+     *         bytecode metrics of a method get the same key
+     */
+    private static String parameterTypes(CtExecutable<?> executable) {
+        StringBuilder types = new StringBuilder();
+        for (CtParameter<?> parameter : executable.getParameters()) {
+            if (types.length() > 0) {
+                types.append(',');
+            }
+            CtTypeReference<?> type = parameter.getType();
+            types.append((type != null) ? type.getTypeErasure().getQualifiedName() : "?");
+        }
+        return types.toString();
+    }
 
-        ClassMetrics classMetrics = new ClassMetrics(ctClass.getQualifiedName());
-        // classMetrics.setMethods(new ArrayList<>()); // Use addMethodMetrics instead
+    private static MethodMetrics analyzeExecutable(String name, int parameterCount, CtElement body) {
+        MethodMetrics methodMetrics = new MethodMetrics(name);
+        methodMetrics.setParameterCount(parameterCount);
 
-        for (CtMethod<?> ctMethod : ctClass.getMethods()) {
-            MethodMetrics methodMetrics = new MethodMetrics(ctMethod.getSimpleName());
-            methodMetrics.setParameterCount(ctMethod.getParameters().size());
+        int loc = 0;
+        if (body instanceof CtBlock) {
+            loc = ((CtBlock<?>) body).getStatements().size();
+        } else if (body != null) {
+            loc = 1; // Expression lambda
+        }
+        methodMetrics.setLineCount(loc);
+        methodMetrics.setCyclomaticComplexity(calculateCyclomaticComplexity(body));
+        return methodMetrics;
+    }
 
-            int loc = 0;
-            if (ctMethod.getBody() != null) {
-                loc = ctMethod.getBody().getStatements().size();
+    /**
+     * Collects the lambdas written directly in {@code member} of {@code owner}, skipping those
+     * of nested classes, which are analyzed with their own class.
+     */
+    private static void collectLambdas(CtElement member, CtType<?> owner, String ownerName,
+                                       List<CtLambda<?>> lambdas, List<String> lambdaOwners) {
+        String javacName = ownerName.equals("<init>") || ownerName.equals("<init-block>") ? "new"
+                : ownerName.equals("<clinit>") ? "static" : ownerName;
+        for (CtLambda<?> lambda : member.getElements(new TypeFilter<>(CtLambda.class))) {
+            if (lambda.getParent(CtType.class) == owner) {
+                lambdas.add(lambda);
+                lambdaOwners.add(javacName);
             }
-            methodMetrics.setLineCount(loc);
+        }
+    }
 
-            int complexity = calculateCyclomaticComplexity(ctMethod);
-            methodMetrics.setCyclomaticComplexity(complexity);
+    /**
+     * Computes the metrics of every type declared in a file, nested types included.
+     *
+     * @return the metrics in declaration order, or null if the file does not exist
+     */
+    public List<ClassMetrics> analyzeFile(String filePath) {
+        File sourceFile = new File(filePath);
+        if (!sourceFile.exists()) {
+            return null;
+        }
+        Launcher launcher = createLauncher();
+        launcher.addInputResource(sourceFile.getAbsolutePath());
+        List<ClassMetrics> metrics = new ArrayList<>();
+        for (CtType<?> ctType : launcher.buildModel().getAllTypes()) {
+            metrics.addAll(analyzeAllTypes(ctType));
+        }
+        return metrics;
+    }
 
-            classMetrics.addMethodMetrics(methodMetrics);
+    /**
+     * Analyzes a top-level type and every type declared anywhere inside it.
+     */
+    public List<ClassMetrics> analyzeAllTypes(CtType<?> topLevelType) {
+        List<ClassMetrics> metrics = new ArrayList<>();
+        for (CtType<?> ctType : getAllTypes(topLevelType)) {
+            metrics.add(analyze(ctType));
         }
+        return metrics;
+    }
 
-        return classMetrics;
+    /**
+     * @return the type itself followed by its nested, local and anonymous types
+     */
+    static List<CtType<?>> getAllTypes(CtType<?> topLevelType) {
+        List<CtType<?>> types = new ArrayList<>();
+        for (CtType<?> ctType : topLevelType.getElements(new TypeFilter<CtType<?>>(CtType.class))) {
+            if (!(ctType instanceof CtTypeParameter)) {
+                types.add(ctType);
+            }
+        }
+        return types;
+    }
+
+    static Launcher createLauncher() {
+        Launcher launcher = new Launcher();
+        launcher.getEnvironment().setNoClasspath(true); // Important for analyzing sources without their dependencies
+        launcher.getEnvironment().setCommentEnabled(false);
+        launcher.getEnvironment().setComplianceLevel(11);
+        return launcher;
     }
 
-    private int calculateCyclomaticComplexity(CtMethod<?> method) {
-        if (method.getBody() == null) {
+    private static int calculateCyclomaticComplexity(CtElement body) {
+        if (body == null) {
             return 1;
         }
 
         ComplexityVisitor visitor = new ComplexityVisitor();
-        visitor.scan(method.getBody());
+        visitor.scan(body);
         return visitor.getComplexity();
     }
 
@@ -111,6 +232,22 @@ public class CodeMetricsAnalyzer {
 
         // Removed visitCtCatch as it was causing compilation issues
 
+        @Override
+        public <T> void visitCtLambda(CtLambda<T> lambda) {
+            // Counted as an executable of its own
+        }
+
+        @Override
+        public <T> void visitCtClass(CtClass<T> ctClass) {
+            // Local and anonymous classes are analyzed as types of their own
+        }
+
+        @Override
+        public <T> void visitCtNewClass(CtNewClass<T> newClass) {
+            // Scan the constructor arguments but not the anonymous class body
+            scan(newClass.getArguments());
+        }
+
         @Override
         public <T> void visitCtConditional(CtConditional<T> conditional) {
             complexity++;
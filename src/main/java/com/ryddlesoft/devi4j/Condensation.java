@@ -0,0 +1,107 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Strongly connected components of a dependency graph and the DAG between them, computed once
+ * per scan. Components are numbered in the order Tarjan's algorithm completes them, so every
+ * edge of the DAG points from a higher to a lower component id. Cycles touching a selection are
+ * found by looking up the component of each selected node, without searching the graph again.
+ */
+public class Condensation {
+
+    private final int[] componentOf;
+    private final int[] memberOffsets;
+    private final int[] members;
+    private final BitSet cyclic;
+    private final DependencyGraph.Adjacency dag;
+
+    public Condensation(DependencyGraph.Adjacency adjacency) {
+        this(adjacency, CycleDetector.findComponents(adjacency));
+    }
+
+    /**
+     * @param componentOf the component of every node, numbered so that edges between
+     *                    components lead to lower ids, as Tarjan's algorithm completes them
+     */
+    Condensation(DependencyGraph.Adjacency adjacency, int[] componentOf) {
+        this.componentOf = componentOf;
+        int nodeCount = componentOf.length;
+        int componentCount = 0;
+        for (int component : componentOf) {
+            componentCount = Math.max(componentCount, component + 1);
+        }
+
+        // Members grouped by component, ascending within each
+        memberOffsets = new int[componentCount + 1];
+        for (int component : componentOf) {
+            memberOffsets[component + 1]++;
+        }
+        for (int i = 0; i < componentCount; i++) {
+            memberOffsets[i + 1] += memberOffsets[i];
+        }
+        int[] fill = Arrays.copyOf(memberOffsets, componentCount);
+        members = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            members[fill[componentOf[node]]++] = node;
+        }
+
+        cyclic = new BitSet(componentCount);
+        int[] from = new int[adjacency.getEdgeCount()];
+        int[] to = new int[adjacency.getEdgeCount()];
+        int dagEdges = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            for (int i = 0; i < adjacency.degree(node); i++) {
+                int target = adjacency.target(node, i);
+                if (componentOf[target] != componentOf[node]) {
+                    from[dagEdges] = componentOf[node];
+                    to[dagEdges++] = componentOf[target];
+                } else {
+                    cyclic.set(componentOf[node]); // Several members, or a self-loop
+                }
+            }
+        }
+        dag = DependencyGraph.Adjacency.fromEdges(componentCount, from, to, dagEdges);
+    }
+
+    public int getComponentCount() {
+        return memberOffsets.length - 1;
+    }
+
+    public int getComponent(int node) {
+        return componentOf[node];
+    }
+
+    public int getSize(int component) {
+        return memberOffsets[component + 1] - memberOffsets[component];
+    }
+
+    /**
+     * @return the nodes of a component, ascending
+     */
+    public int[] getMembers(int component) {
+        return Arrays.copyOfRange(members, memberOffsets[component], memberOffsets[component + 1]);
+    }
+
+    /**
+     * @return whether the component is a cycle: several nodes, or one that depends on itself
+     */
+    public boolean isCyclic(int component) {
+        return cyclic.get(component);
+    }
+
+    /**
+     * @return dependencies between components; each edge leads to a lower component id
+     */
+    public DependencyGraph.Adjacency getDag() {
+        return dag;
+    }
+
+    /**
+     * @return all cyclic components, ascending
+     */
+    public int[] getCyclicComponents() {
+        return cyclic.stream().toArray();
+    }
+}
@@ -0,0 +1,353 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Suggests which dependencies to remove to break the cycles of a graph.
+ * <p>
+ * Each cyclic component of a {@link Condensation} is handled on its own, in parallel. Its
+ * elementary cycles are enumerated Johnson-style, starting every cycle at its smallest node and
+ * only visiting larger ones, but bounded in length and count. Instead of Johnson's blocking,
+ * which would lose cycles under a length bound, a search only continues to nodes whose distance
+ * back to the start still fits the bound. A feedback arc set is then chosen with the weighted
+ * greedy ordering of Eades, Lin and Smyth: sinks go last, sources first, and otherwise the node
+ * with the largest excess of outgoing over incoming weight; the edges pointing backwards in that
+ * order are the cuts. Cuts are ranked by the enumerated cycles they break, then by their weight,
+ * so cheap cuts that break many cycles come first.
+ */
+public class CycleBreaker {
+
+    public static final int DEFAULT_MAX_LENGTH = 8;
+    public static final int DEFAULT_MAX_CYCLES = 10_000;
+
+    /**
+     * A dependency to remove.
+     */
+    public static class Cut {
+        private final int from;
+        private final int to;
+        private final int weight;
+        private final int cycles;
+
+        Cut(int from, int to, int weight, int cycles) {
+            this.from = from;
+            this.to = to;
+            this.weight = weight;
+            this.cycles = cycles;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        /**
+         * @return the reference count of the dependency, i.e. what it costs to remove
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return how many of the enumerated cycles run through the dependency
+         */
+        public int getCycles() {
+            return cycles;
+        }
+    }
+
+    public static class Result {
+        private final List<int[]> cycles;
+        private final List<Cut> cuts;
+        private final boolean truncated;
+
+        Result(List<int[]> cycles, List<Cut> cuts, boolean truncated) {
+            this.cycles = cycles;
+            this.cuts = cuts;
+            this.truncated = truncated;
+        }
+
+        /**
+         * @return elementary cycles as node ids in edge order, each starting at its smallest node
+         */
+        public List<int[]> getCycles() {
+            return cycles;
+        }
+
+        /**
+         * @return a feedback arc set: removing all of it leaves no cycle; best cuts first
+         */
+        public List<Cut> getCuts() {
+            return cuts;
+        }
+
+        /**
+         * @return whether some component had more cycles than the count limit
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    private final DependencyGraph.Adjacency adjacency;
+    private final Condensation condensation;
+    private final int[] weights;
+
+    /**
+     * @param weights reference count of every edge in the order of the adjacency's targets, or
+     *                null to weigh every edge 1
+     */
+    public CycleBreaker(DependencyGraph.Adjacency adjacency, Condensation condensation, int[] weights) {
+        this.adjacency = adjacency;
+        this.condensation = condensation;
+        this.weights = weights;
+    }
+
+    /**
+     * @param maxLength  longest cycle to enumerate, in edges
+     * @param maxCycles  most cycles to enumerate per component
+     */
+    public Result analyze(int maxLength, int maxCycles) {
+        List<Result> components = IntStream.of(condensation.getCyclicComponents())
+                .parallel()
+                .mapToObj(component -> analyzeComponent(component, maxLength, maxCycles))
+                .collect(Collectors.toList());
+
+        List<int[]> cycles = new ArrayList<>();
+        List<Cut> cuts = new ArrayList<>();
+        boolean truncated = false;
+        for (Result component : components) {
+            cycles.addAll(component.cycles);
+            cuts.addAll(component.cuts);
+            truncated |= component.truncated;
+        }
+        cuts.sort(Comparator.comparingInt(Cut::getCycles).reversed()
+                .thenComparingInt(Cut::getWeight)
+                .thenComparingInt(Cut::getFrom)
+                .thenComparingInt(Cut::getTo));
+        return new Result(cycles, cuts, truncated);
+    }
+
+    private Result analyzeComponent(int component, int maxLength, int maxCycles) {
+        int[] members = condensation.getMembers(component);
+        int size = members.length;
+
+        // Edges inside the component, by index into members; rows stay sorted
+        int[][] successors = new int[size][];
+        int[][] successorWeights = new int[size][];
+        int[] inDegree = new int[size];
+        for (int v = 0; v < size; v++) {
+            int node = members[v];
+            int[] row = new int[adjacency.degree(node)];
+            int[] rowWeights = new int[row.length];
+            int count = 0;
+            for (int i = 0; i < adjacency.degree(node); i++) {
+                int target = adjacency.target(node, i);
+                if (condensation.getComponent(target) == component) {
+                    row[count] = Arrays.binarySearch(members, target);
+                    rowWeights[count++] = (weights != null) ? weights[adjacency.offsets()[node] + i] : 1;
+                    inDegree[row[count - 1]]++;
+                }
+            }
+            successors[v] = Arrays.copyOf(row, count);
+            successorWeights[v] = Arrays.copyOf(rowWeights, count);
+        }
+        int[][] predecessors = new int[size][];
+        int[][] predecessorWeights = new int[size][];
+        for (int v = 0; v < size; v++) {
+            predecessors[v] = new int[inDegree[v]];
+            predecessorWeights[v] = new int[inDegree[v]];
+        }
+        int[] fill = new int[size];
+        for (int v = 0; v < size; v++) {
+            for (int i = 0; i < successors[v].length; i++) {
+                int w = successors[v][i];
+                predecessors[w][fill[w]] = v;
+                predecessorWeights[w][fill[w]++] = successorWeights[v][i];
+            }
+        }
+
+        CycleSearch search = new CycleSearch(successors, predecessors, maxLength, maxCycles);
+        for (int start = 0; start < size && !search.isFull(); start++) {
+            search.searchFrom(start);
+        }
+        List<int[]> cycles = new ArrayList<>(search.cycles.size());
+        for (int[] cycle : search.cycles) {
+            int[] nodes = new int[cycle.length];
+            for (int i = 0; i < cycle.length; i++) {
+                nodes[i] = members[cycle[i]];
+            }
+            cycles.add(nodes);
+        }
+
+        int[] position = greedyOrder(successors, successorWeights, predecessors, predecessorWeights);
+        Map<Long, int[]> cutCycles = new HashMap<>();
+        List<Cut> cuts = new ArrayList<>();
+        for (int v = 0; v < size; v++) {
+            for (int i = 0; i < successors[v].length; i++) {
+                int w = successors[v][i];
+                if (position[w] <= position[v]) {
+                    cutCycles.put(edgeKey(members[v], members[w]), new int[]{successorWeights[v][i], 0});
+                }
+            }
+        }
+        for (int[] cycle : cycles) {
+            for (int i = 0; i < cycle.length; i++) {
+                int[] cut = cutCycles.get(edgeKey(cycle[i], cycle[(i + 1) % cycle.length]));
+                if (cut != null) {
+                    cut[1]++;
+                }
+            }
+        }
+        for (Map.Entry<Long, int[]> cut : cutCycles.entrySet()) {
+            cuts.add(new Cut((int) (cut.getKey() >>> 32), (int) (long) cut.getKey(), cut.getValue()[0], cut.getValue()[1]));
+        }
+        return new Result(cycles, cuts, search.isFull());
+    }
+
+    private static long edgeKey(int from, int to) {
+        return ((long) from << 32) | to;
+    }
+
+    /**
+     * Bounded depth-first search for the cycles through a start node that only visit larger nodes.
+     */
+    private static class CycleSearch {
+        private final int[][] successors;
+        private final int[][] predecessors;
+        private final int maxLength;
+        private final int maxCycles;
+        private final int[] path;
+        private final boolean[] onPath;
+        private final int[] distance;
+        private final int[] queue;
+        final List<int[]> cycles = new ArrayList<>();
+
+        CycleSearch(int[][] successors, int[][] predecessors, int maxLength, int maxCycles) {
+            this.successors = successors;
+            this.predecessors = predecessors;
+            this.maxLength = maxLength;
+            this.maxCycles = maxCycles;
+            this.path = new int[maxLength];
+            this.onPath = new boolean[successors.length];
+            this.distance = new int[successors.length];
+            this.queue = new int[successors.length];
+        }
+
+        boolean isFull() {
+            return cycles.size() >= maxCycles;
+        }
+
+        void searchFrom(int start) {
+            // Edges needed to get back to start from each node, over nodes not below start
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            distance[start] = 0;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            while (head < tail) {
+                int w = queue[head++];
+                if (distance[w] + 1 >= maxLength) {
+                    continue;
+                }
+                for (int v : predecessors[w]) {
+                    if (v > start && distance[v] == Integer.MAX_VALUE) {
+                        distance[v] = distance[w] + 1;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            path[0] = start;
+            onPath[start] = true;
+            extend(start, 1);
+            onPath[start] = false;
+        }
+
+        private void extend(int node, int length) {
+            for (int next : successors[node]) {
+                if (isFull()) {
+                    return;
+                }
+                int start = path[0];
+                if (next == start) {
+                    cycles.add(Arrays.copyOf(path, length));
+                } else if (next > start && !onPath[next] && distance[next] != Integer.MAX_VALUE
+                        && length + distance[next] <= maxLength) {
+                    path[length] = next;
+                    onPath[next] = true;
+                    extend(next, length + 1);
+                    onPath[next] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the position of every node in the Eades-Lin-Smyth order
+     */
+    private static int[] greedyOrder(int[][] successors, int[][] successorWeights, int[][] predecessors,
+                                     int[][] predecessorWeights) {
+        int size = successors.length;
+        int[] outDegree = new int[size];
+        int[] inDegree = new int[size];
+        long[] outWeight = new long[size];
+        long[] inWeight = new long[size];
+        for (int v = 0; v < size; v++) {
+            outDegree[v] = successors[v].length;
+            inDegree[v] = predecessors[v].length;
+            outWeight[v] = Arrays.stream(successorWeights[v]).asLongStream().sum();
+            inWeight[v] = Arrays.stream(predecessorWeights[v]).asLongStream().sum();
+        }
+        boolean[] removed = new boolean[size];
+        int[] position = new int[size];
+        int first = 0;
+        int last = size - 1;
+        for (int remaining = size; remaining > 0; remaining--) {
+            int sink = -1;
+            int source = -1;
+            int best = -1;
+            for (int v = 0; v < size && sink == -1; v++) {
+                if (removed[v]) {
+                    continue;
+                }
+                if (outDegree[v] == 0) {
+                    sink = v;
+                } else if (inDegree[v] == 0 && source == -1) {
+                    source = v;
+                } else if (best == -1 || outWeight[v] - inWeight[v] > outWeight[best] - inWeight[best]) {
+                    best = v;
+                }
+            }
+            int v;
+            if (sink != -1) {
+                v = sink;
+                position[v] = last--;
+            } else {
+                v = (source != -1) ? source : best;
+                position[v] = first++;
+            }
+            removed[v] = true;
+            for (int i = 0; i < successors[v].length; i++) {
+                int w = successors[v][i];
+                inDegree[w]--;
+                inWeight[w] -= successorWeights[v][i];
+            }
+            for (int i = 0; i < predecessors[v].length; i++) {
+                int u = predecessors[v][i];
+                outDegree[u]--;
+                outWeight[u] -= predecessorWeights[v][i];
+            }
+        }
+        return position;
+    }
+}
@@ -1,46 +1,90 @@
 package com.ryddlesoft.devi4j;
 
 import java.util.*;
+import java.util.function.IntFunction;
 
+/**
+ * Finds dependency cycles as the strongly connected components of a graph, using Tarjan's
+ * algorithm. The search keeps its own call stack in {@code int[]} arrays over int node ids, so
+ * its depth is not limited by the thread stack, and index, low link and on-stack flags are
+ * primitive arrays and a {@link BitSet}.
+ */
 public class CycleDetector {
 
-    private int index;
-    private final Stack<String> stack;
-    private final Map<String, Integer> ids;
-    private final Map<String, Integer> lowLink;
-    private final Map<String, Boolean> onStack;
     private final Map<String, Set<String>> graph;
-    private final List<List<String>> sccs;
 
     public CycleDetector(Map<String, Set<String>> graph) {
         this.graph = graph;
-        this.index = 0;
-        this.stack = new Stack<>();
-        this.ids = new HashMap<>();
-        this.lowLink = new HashMap<>();
-        this.onStack = new HashMap<>();
-        this.sccs = new ArrayList<>();
     }
 
     public List<List<String>> findCycles() {
         return findCycles(graph.keySet());
     }
 
+    /**
+     * @return the cycles reachable from {@code nodesToSearch}: components of more than one
+     *         node, and single nodes that depend on themselves
+     */
     public List<List<String>> findCycles(Set<String> nodesToSearch) {
-        for (String node : nodesToSearch) {
-            if (graph.containsKey(node) && !ids.containsKey(node)) {
-                dfs(node);
+        // Intern the keys first, then dependencies that are not keys themselves
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (String node : graph.keySet()) {
+            ids.put(node, names.size());
+            names.add(node);
+        }
+        int edgeCount = 0;
+        for (Set<String> neighbors : graph.values()) {
+            edgeCount += (neighbors != null) ? neighbors.size() : 0;
+        }
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int edge = 0;
+        for (Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            int origin = ids.get(entry.getKey());
+            for (String target : entry.getValue()) {
+                Integer targetId = ids.get(target);
+                if (targetId == null) {
+                    targetId = names.size();
+                    ids.put(target, targetId);
+                    names.add(target);
+                }
+                from[edge] = origin;
+                to[edge++] = targetId;
             }
         }
+        DependencyGraph.Adjacency adjacency = DependencyGraph.Adjacency.fromEdges(names.size(), from, to, edge);
+
+        int[] roots = nodesToSearch.stream()
+                .filter(graph::containsKey)
+                .mapToInt(ids::get)
+                .toArray();
+        int[] component = findComponents(adjacency, roots);
 
+        int componentCount = 0;
+        for (int c : component) {
+            componentCount = Math.max(componentCount, c + 1);
+        }
+        List<List<String>> members = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            members.add(new ArrayList<>(1));
+        }
+        for (int node = 0; node < component.length; node++) {
+            if (component[node] != -1) {
+                members.get(component[node]).add(names.get(node));
+            }
+        }
         List<List<String>> cycles = new ArrayList<>();
-        for (List<String> scc : sccs) {
+        for (List<String> scc : members) {
             if (scc.size() > 1) {
                 cycles.add(scc);
             } else {
                 // Check for self-loops
-                String node = scc.get(0);
-                if (graph.get(node) != null && graph.get(node).contains(node)) {
+                int node = ids.get(scc.get(0));
+                if (adjacency.hasEdge(node, node)) {
                     cycles.add(scc);
                 }
             }
@@ -48,34 +92,176 @@ public class CycleDetector {
         return cycles;
     }
 
-    private void dfs(String at) {
-        stack.push(at);
-        onStack.put(at, true);
-        ids.put(at, index);
-        lowLink.put(at, index);
-        index++;
-
-        Set<String> neighbors = graph.get(at);
-        if (neighbors != null) {
-            for (String to : neighbors) {
-                if (!ids.containsKey(to)) {
-                    dfs(to);
-                    lowLink.put(at, Math.min(lowLink.get(at), lowLink.get(to)));
-                } else if (onStack.get(to)) {
-                    lowLink.put(at, Math.min(lowLink.get(at), ids.get(to)));
+    /**
+     * @return the strongly connected component of every node. Components are numbered in the
+     *         order they complete, so every component a node depends on has a lower number
+     */
+    public static int[] findComponents(DependencyGraph.Adjacency adjacency) {
+        int[] roots = new int[adjacency.getNodeCount()];
+        for (int node = 0; node < roots.length; node++) {
+            roots[node] = node;
+        }
+        return findComponents(adjacency, roots);
+    }
+
+    /**
+     * @return the component of every node reachable from {@code roots}, and -1 for the others
+     */
+    static int[] findComponents(DependencyGraph.Adjacency adjacency, int[] roots) {
+        int nodeCount = adjacency.getNodeCount();
+        int[] offsets = adjacency.offsets();
+        int[] targets = adjacency.targets();
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        int[] component = new int[nodeCount];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        BitSet onStack = new BitSet(nodeCount);
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        // Explicit DFS call stack; a node is on it at most once, so its next edge is kept per node
+        int[] callStack = new int[nodeCount];
+        int[] nextEdge = new int[nodeCount];
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        for (int root : roots) {
+            if (index[root] != -1) {
+                continue;
+            }
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack.set(root);
+            nextEdge[root] = offsets[root];
+            callStack[0] = root;
+            int depth = 1;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (nextEdge[node] < offsets[node + 1]) {
+                    int target = targets[nextEdge[node]++];
+                    if (index[target] == -1) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        stack[stackSize++] = target;
+                        onStack.set(target);
+                        nextEdge[target] = offsets[target];
+                        callStack[depth++] = target;
+                    } else if (onStack.get(target)) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
                 }
+
+                depth--;
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack.clear(member);
+                        component[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                if (depth > 0) {
+                    int caller = callStack[depth - 1];
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Keeps the components of a graph across rescans, so that a changed jar or source file
+     * only updates the components its edges touch instead of rerunning Tarjan's algorithm.
+     * Nodes are matched between scans by name; a class that disappears keeps its node,
+     * without edges, in case it comes back, until such nodes outnumber the live ones and
+     * everything is recomputed once. Not thread-safe.
+     */
+    public static class ComponentTracker {
+        private static final int MIN_RECOMPUTE_GONE_NODES = 1024;
+
+        private IncrementalCondensation components;
+        private final Map<String, Integer> nodeOf = new HashMap<>();
+
+        /**
+         * @param condensation the components of {@code adjacency}, already computed for its scan
+         */
+        public ComponentTracker(IntFunction<String> nameOf, DependencyGraph.Adjacency adjacency,
+                                Condensation condensation) {
+            reset(nameOf, adjacency, condensation);
+        }
+
+        private void reset(IntFunction<String> nameOf, DependencyGraph.Adjacency adjacency, Condensation condensation) {
+            components = new IncrementalCondensation(adjacency, condensation);
+            nodeOf.clear();
+            for (int node = 0; node < adjacency.getNodeCount(); node++) {
+                nodeOf.put(nameOf.apply(node), node);
             }
         }
 
-        if (ids.get(at).equals(lowLink.get(at))) {
-            List<String> scc = new ArrayList<>();
-            while (true) {
-                String node = stack.pop();
-                onStack.put(node, false);
-                scc.add(node);
-                if (node.equals(at)) break;
+        /**
+         * Applies the difference between the tracked graph and {@code adjacency} as edge
+         * insert and delete batches, one per node whose dependencies changed.
+         *
+         * @return the components of {@code adjacency}
+         */
+        public Condensation update(IntFunction<String> nameOf, DependencyGraph.Adjacency adjacency) {
+            int nodeCount = adjacency.getNodeCount();
+            if (nodeOf.size() - nodeCount > Math.max(nodeCount, MIN_RECOMPUTE_GONE_NODES)) {
+                Condensation condensation = new Condensation(adjacency);
+                reset(nameOf, adjacency, condensation);
+                return condensation;
+            }
+            int[] nodeOfId = new int[nodeCount];
+            BitSet live = new BitSet();
+            for (int id = 0; id < nodeCount; id++) {
+                String name = nameOf.apply(id);
+                Integer node = nodeOf.get(name);
+                if (node == null) {
+                    node = components.addNode();
+                    nodeOf.put(name, node);
+                }
+                nodeOfId[id] = node;
+                live.set(node);
+            }
+            int[] none = new int[0];
+            for (int node = live.nextClearBit(0); node < components.getNodeCount(); node = live.nextClearBit(node + 1)) {
+                if (components.degree(node) > 0) {
+                    components.replaceNeighbors(node, none);
+                }
+            }
+            for (int id = 0; id < nodeCount; id++) {
+                int node = nodeOfId[id];
+                int[] targets = new int[adjacency.degree(id)];
+                boolean unchanged = targets.length == components.degree(node);
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i] = nodeOfId[adjacency.target(id, i)];
+                    unchanged = unchanged && components.hasEdge(node, targets[i]);
+                }
+                if (!unchanged) {
+                    components.replaceNeighbors(node, targets);
+                }
+            }
+
+            // Gone nodes are components of their own and are left out of the numbering
+            int[] order = components.getComponentsInOrder();
+            BitSet liveComponents = new BitSet();
+            for (int node : nodeOfId) {
+                liveComponents.set(components.getComponent(node));
+            }
+            int[] idOfComponent = new int[Arrays.stream(order).max().orElse(-1) + 1];
+            int nextId = 0;
+            for (int i = order.length - 1; i >= 0; i--) {
+                if (liveComponents.get(order[i])) {
+                    idOfComponent[order[i]] = nextId++;
+                }
+            }
+            int[] componentOf = new int[nodeCount];
+            for (int id = 0; id < nodeCount; id++) {
+                componentOf[id] = idOfComponent[components.getComponent(nodeOfId[id])];
             }
-            sccs.add(scc);
+            return new Condensation(adjacency, componentOf);
         }
     }
 }
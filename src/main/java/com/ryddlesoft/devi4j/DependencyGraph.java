@@ -0,0 +1,380 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Compact, immutable dependency graph of a scan.
+ * <p>
+ * Packages and classes are interned to dense int ids. Package ids follow the sorted package
+ * names and class ids are sorted by (package, name), so the classes of a package occupy a
+ * contiguous id range and a name can be resolved by binary search without a hash table.
+ * Edges are stored CSR-style in {@code int[]} arrays, in both directions.
+ */
+public class DependencyGraph {
+
+    private final String[] packageNames;
+    private final int[] packageClassOffsets;
+    private final String[] classNames;
+    private final int[] classPackages;
+    private final Adjacency classDependencies;
+    private final Adjacency classDependents;
+    private final Adjacency packageDependencies;
+    private final Adjacency packageDependents;
+
+    /**
+     * Compressed sparse row adjacency: the neighbors of {@code v} are
+     * {@code targets[offsets[v]] .. targets[offsets[v + 1] - 1]}, sorted ascending.
+     */
+    public static class Adjacency {
+        private final int[] offsets;
+        private final int[] targets;
+
+        Adjacency(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        int[] offsets() {
+            return offsets;
+        }
+
+        int[] targets() {
+            return targets;
+        }
+
+        public int getNodeCount() {
+            return offsets.length - 1;
+        }
+
+        public int getEdgeCount() {
+            return targets.length;
+        }
+
+        public int degree(int node) {
+            return offsets[node + 1] - offsets[node];
+        }
+
+        public int target(int node, int i) {
+            return targets[offsets[node] + i];
+        }
+
+        public int[] neighbors(int node) {
+            return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+        }
+
+        public boolean hasEdge(int from, int to) {
+            return Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to) >= 0;
+        }
+
+        public void forEachNeighbor(int node, IntConsumer action) {
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                action.accept(targets[i]);
+            }
+        }
+
+        /**
+         * Functional filter over a single edge, kept primitive to avoid boxing.
+         */
+        public interface EdgeFilter {
+            boolean test(int from, int to);
+        }
+
+        /**
+         * @return a copy holding only the edges accepted by {@code filter}
+         */
+        public Adjacency retainEdges(EdgeFilter filter) {
+            int n = getNodeCount();
+            int[] keptOffsets = new int[n + 1];
+            int[] keptTargets = new int[targets.length];
+            int write = 0;
+            for (int from = 0; from < n; from++) {
+                for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                    if (filter.test(from, targets[i])) {
+                        keptTargets[write++] = targets[i];
+                    }
+                }
+                keptOffsets[from + 1] = write;
+            }
+            return new Adjacency(keptOffsets, Arrays.copyOf(keptTargets, write));
+        }
+
+        /**
+         * @return the same edges with every direction flipped
+         */
+        public Adjacency reverse() {
+            int n = getNodeCount();
+            int[] reverseOffsets = new int[n + 1];
+            for (int target : targets) {
+                reverseOffsets[target + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                reverseOffsets[i + 1] += reverseOffsets[i];
+            }
+            int[] fill = Arrays.copyOf(reverseOffsets, n);
+            int[] reverseTargets = new int[targets.length];
+            // Visiting sources in ascending order keeps every reversed row sorted
+            for (int from = 0; from < n; from++) {
+                for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                    reverseTargets[fill[targets[i]]++] = from;
+                }
+            }
+            return new Adjacency(reverseOffsets, reverseTargets);
+        }
+
+        /**
+         * Builds a CSR adjacency from unsorted edge lists that may contain duplicates.
+         */
+        static Adjacency fromEdges(int nodeCount, int[] from, int[] to, int edgeCount) {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] fill = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                targets[fill[from[i]]++] = to[i];
+            }
+
+            // Sort and deduplicate each row, compacting in place
+            int[] compactOffsets = new int[nodeCount + 1];
+            int write = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                int start = offsets[node];
+                int end = offsets[node + 1];
+                Arrays.sort(targets, start, end);
+                for (int i = start; i < end; i++) {
+                    if (i == start || targets[i] != targets[i - 1]) {
+                        targets[write++] = targets[i];
+                    }
+                }
+                compactOffsets[node + 1] = write;
+            }
+            return new Adjacency(compactOffsets, Arrays.copyOf(targets, write));
+        }
+    }
+
+    DependencyGraph(String[] packageNames, int[] packageClassOffsets, String[] classNames,
+                            int[] classPackages, Adjacency classDependencies, Adjacency packageDependencies) {
+        this.packageNames = packageNames;
+        this.packageClassOffsets = packageClassOffsets;
+        this.classNames = classNames;
+        this.classPackages = classPackages;
+        this.classDependencies = classDependencies;
+        this.classDependents = classDependencies.reverse();
+        this.packageDependencies = packageDependencies;
+        this.packageDependents = packageDependencies.reverse();
+    }
+
+    public int getPackageCount() {
+        return packageNames.length;
+    }
+
+    public int getClassCount() {
+        return classNames.length;
+    }
+
+    public String getPackageName(int packageId) {
+        return packageNames[packageId];
+    }
+
+    public String getClassName(int classId) {
+        return classNames[classId];
+    }
+
+    public int getPackageOf(int classId) {
+        return classPackages[classId];
+    }
+
+    String[] packageNames() {
+        return packageNames;
+    }
+
+    String[] classNames() {
+        return classNames;
+    }
+
+    int[] packageClassOffsets() {
+        return packageClassOffsets;
+    }
+
+    int[] classPackages() {
+        return classPackages;
+    }
+
+    /**
+     * @return the first class id of {@code packageId}; its classes end at {@link #getClassEnd(int)}
+     */
+    public int getClassStart(int packageId) {
+        return packageClassOffsets[packageId];
+    }
+
+    public int getClassEnd(int packageId) {
+        return packageClassOffsets[packageId + 1];
+    }
+
+    /**
+     * @return the package id, or -1 if the package has no scanned classes
+     */
+    public int findPackage(String packageName) {
+        int id = Arrays.binarySearch(packageNames, packageName);
+        return id >= 0 ? id : -1;
+    }
+
+    /**
+     * @return the class id of a fully qualified class name, or -1 if it was not scanned
+     */
+    public int findClass(String className) {
+        int packageId = findPackage(packageNameOf(className));
+        if (packageId == -1) {
+            return -1;
+        }
+        int id = Arrays.binarySearch(classNames, getClassStart(packageId), getClassEnd(packageId), className);
+        return id >= 0 ? id : -1;
+    }
+
+    /**
+     * @return forward class edges: class to the classes it depends on
+     */
+    public Adjacency getClassDependencies() {
+        return classDependencies;
+    }
+
+    /**
+     * @return reverse class edges: class to the classes that depend on it
+     */
+    public Adjacency getClassDependents() {
+        return classDependents;
+    }
+
+    /**
+     * @return forward package edges, without self-loops
+     */
+    public Adjacency getPackageDependencies() {
+        return packageDependencies;
+    }
+
+    public Adjacency getPackageDependents() {
+        return packageDependents;
+    }
+
+    /**
+     * @return for every package edge, in the order of {@link Adjacency} targets, the number of
+     *         class dependencies it stands for
+     */
+    public int[] getPackageReferenceCounts() {
+        int[] counts = new int[packageDependencies.getEdgeCount()];
+        int[] offsets = packageDependencies.offsets();
+        int[] targets = packageDependencies.targets();
+        for (int from = 0; from < classNames.length; from++) {
+            int fromPackage = classPackages[from];
+            for (int i = 0; i < classDependencies.degree(from); i++) {
+                int toPackage = classPackages[classDependencies.target(from, i)];
+                if (toPackage != fromPackage) {
+                    counts[Arrays.binarySearch(targets, offsets[fromPackage], offsets[fromPackage + 1], toPackage)]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    static String packageNameOf(String className) {
+        int lastDot = className.lastIndexOf('.');
+        return (lastDot == -1) ? "(default)" : className.substring(0, lastDot);
+    }
+
+    /**
+     * Collects classes and their raw, name-based dependencies and interns them into a
+     * {@link DependencyGraph}. Dependencies on classes that were never added are dropped.
+     */
+    public static class Builder {
+        private final Map<String, Integer> classIndex = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> packages = new ArrayList<>();
+        private final List<List<String>> dependencies = new ArrayList<>();
+
+        /**
+         * Adds a class unless a class of the same name was already added, mirroring
+         * classloader semantics where the first classpath element defining it wins.
+         */
+        public boolean addClass(String className, String packageName, List<String> classDependencies) {
+            if (classIndex.putIfAbsent(className, names.size()) != null) {
+                return false;
+            }
+            names.add(className);
+            packages.add(packageName);
+            dependencies.add(classDependencies);
+            return true;
+        }
+
+        public DependencyGraph build() {
+            int classCount = names.size();
+
+            String[] packageNames = packages.stream().distinct().sorted().toArray(String[]::new);
+            Map<String, Integer> packageIds = new HashMap<>();
+            for (int i = 0; i < packageNames.length; i++) {
+                packageIds.put(packageNames[i], i);
+            }
+
+            // Order classes by (package, name) so each package is a contiguous id range
+            Integer[] order = new Integer[classCount];
+            for (int i = 0; i < classCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer, Integer>comparing(i -> packageIds.get(packages.get(i)))
+                    .thenComparing(names::get));
+            int[] newId = new int[classCount];
+            String[] classNames = new String[classCount];
+            int[] classPackages = new int[classCount];
+            int[] packageClassOffsets = new int[packageNames.length + 1];
+            for (int id = 0; id < classCount; id++) {
+                int old = order[id];
+                newId[old] = id;
+                classNames[id] = names.get(old);
+                classPackages[id] = packageIds.get(packages.get(old));
+                packageClassOffsets[classPackages[id] + 1]++;
+            }
+            for (int i = 0; i < packageNames.length; i++) {
+                packageClassOffsets[i + 1] += packageClassOffsets[i];
+            }
+
+            int edgeCount = 0;
+            for (List<String> deps : dependencies) {
+                edgeCount += deps.size();
+            }
+            int[] from = new int[edgeCount];
+            int[] to = new int[edgeCount];
+            int[] packageFrom = new int[edgeCount];
+            int[] packageTo = new int[edgeCount];
+            int classEdges = 0;
+            int packageEdges = 0;
+            for (int old = 0; old < classCount; old++) {
+                int origin = newId[old];
+                for (String dependency : dependencies.get(old)) {
+                    Integer target = classIndex.get(dependency);
+                    if (target == null || target == old) {
+                        continue;
+                    }
+                    from[classEdges] = origin;
+                    to[classEdges++] = newId[target];
+                    if (classPackages[origin] != classPackages[newId[target]]) {
+                        packageFrom[packageEdges] = classPackages[origin];
+                        packageTo[packageEdges++] = classPackages[newId[target]];
+                    }
+                }
+            }
+
+            return new DependencyGraph(packageNames, packageClassOffsets, classNames, classPackages,
+                    Adjacency.fromEdges(classCount, from, to, classEdges),
+                    Adjacency.fromEdges(packageNames.length, packageFrom, packageTo, packageEdges));
+        }
+    }
+}
@@ -2,15 +2,30 @@ package com.ryddlesoft.devi4j;
 
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassInfo;
-import io.github.classgraph.ClassInfoList;
 import io.github.classgraph.ScanResult;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 public class DependencyScanner {
 
@@ -18,98 +33,616 @@ public class DependencyScanner {
      * A container for the results of a scan.
      */
     public static class ScanResultContainer {
-        private final Map<String, Set<String>> packageDependencies = new HashMap<>();
-        private final Map<String, Set<ClassInfo>> packageContents = new TreeMap<>(); // Use TreeMap for sorted package names
-        private final ScanResult rawScanResult;
+        private final DependencyGraph graph;
+        private final ScanStatistics statistics;
+        private final Map<String, int[]> classMetrics;
+        private final String[] classOrigins;
+        private Map<String, Set<String>> packageDependencies;
+        private DependencyGraph.Adjacency classDependencyIndex;
+        private Map<String, Set<String>> classDependencies;
+        private Condensation packageCondensation;
+        private Condensation classCondensation;
+        private ReachabilityIndex packageReachability;
+        private ReachabilityIndex classReachability;
+        private String cacheWarning;
+        private CycleDetector.ComponentTracker packageComponents;
+        private CycleDetector.ComponentTracker classComponents;
 
-        public ScanResultContainer(ScanResult rawScanResult) {
-            this.rawScanResult = rawScanResult;
+        public ScanResultContainer(DependencyGraph graph, ScanStatistics statistics) {
+            this(graph, statistics, new LinkedHashMap<>());
         }
 
+        public ScanResultContainer(DependencyGraph graph, ScanStatistics statistics, Map<String, int[]> classMetrics) {
+            this(graph, statistics, classMetrics, null);
+        }
+
+        /**
+         * @param classOrigins the jar or class directory each class id was read from, or null if unknown
+         */
+        public ScanResultContainer(DependencyGraph graph, ScanStatistics statistics, Map<String, int[]> classMetrics,
+                                   String[] classOrigins) {
+            this.graph = graph;
+            this.statistics = statistics;
+            this.classMetrics = classMetrics;
+            this.classOrigins = (classOrigins != null) ? classOrigins : new String[graph.getClassCount()];
+        }
+
+        public DependencyGraph getGraph() {
+            return graph;
+        }
+
+        /**
+         * @return how many classpath elements had to be handed to ClassGraph for this result
+         */
+        public int getRescannedPathCount() {
+            return statistics.getRescannedPathCount();
+        }
+
+        public ScanStatistics getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * @return the jar or class directory the class was read from, the first on the classpath
+         *         when several define it, or null if unknown
+         */
+        public String getClassOrigin(int classId) {
+            return classOrigins[classId];
+        }
+
+        String[] getClassOrigins() {
+            return classOrigins;
+        }
+
+        /**
+         * @return why the scan index or snapshot could not be saved, or null if they were
+         */
+        public String getCacheWarning() {
+            return cacheWarning;
+        }
+
+        void setCacheWarning(String cacheWarning) {
+            this.cacheWarning = cacheWarning;
+        }
+
+        /**
+         * @return per-class metric columns by name, each indexed by class id; empty unless
+         *         the scan profile collects bytecode metrics
+         */
+        public Map<String, int[]> getClassMetrics() {
+            return classMetrics;
+        }
+
+        /**
+         * Name-keyed view of the package edges, built on first use. Packages are few compared
+         * to classes, so this stays small even for very large scans.
+         */
         public Map<String, Set<String>> getPackageDependencies() {
+            if (packageDependencies == null) {
+                Map<String, Set<String>> deps = new HashMap<>();
+                DependencyGraph.Adjacency adjacency = graph.getPackageDependencies();
+                for (int pkg = 0; pkg < graph.getPackageCount(); pkg++) {
+                    Set<String> targets = new HashSet<>();
+                    adjacency.forEachNeighbor(pkg, target -> targets.add(graph.getPackageName(target)));
+                    deps.put(graph.getPackageName(pkg), targets);
+                }
+                packageDependencies = deps;
+            }
             return packageDependencies;
         }
 
-        public Map<String, Set<ClassInfo>> getPackageContents() {
-            return packageContents;
+        /**
+         * Class-level adjacency shared by every consumer of this scan. It is built once, on
+         * first use, and drops the edges from nested classes to their directly enclosing
+         * class. A rescan produces a new container, which invalidates it.
+         */
+        public DependencyGraph.Adjacency getClassDependencyIndex() {
+            if (classDependencyIndex == null) {
+                int[] enclosingClass = new int[graph.getClassCount()];
+                for (int classId = 0; classId < enclosingClass.length; classId++) {
+                    String className = graph.getClassName(classId);
+                    int dollarIndex = className.lastIndexOf('$');
+                    enclosingClass[classId] = (dollarIndex == -1) ? -1 : graph.findClass(className.substring(0, dollarIndex));
+                }
+                classDependencyIndex = graph.getClassDependencies()
+                        .retainEdges((from, to) -> enclosingClass[from] != to);
+            }
+            return classDependencyIndex;
         }
 
-        public ScanResult getRawScanResult() {
-            return rawScanResult;
+        /**
+         * @return a read-only view of {@link #getClassDependencyIndex()} keyed by fully
+         *         qualified class name; lookups resolve ids by binary search and copy nothing
+         */
+        public Map<String, Set<String>> getClassDependencies() {
+            if (classDependencies == null) {
+                classDependencies = new ClassDependencyView(graph, getClassDependencyIndex());
+            }
+            return classDependencies;
         }
 
-        public Map<String, Set<String>> getClassDependencies() {
-            Map<String, Set<String>> classDeps = new HashMap<>();
-            java.util.function.Function<String, String> getSimpleName = fqcn -> {
-                int lastDot = fqcn.lastIndexOf('.');
-                return (lastDot == -1) ? fqcn : fqcn.substring(lastDot + 1);
+        /**
+         * @return the package cycles and the DAG between them, computed on first use
+         */
+        public Condensation getPackageCondensation() {
+            if (packageCondensation == null) {
+                packageCondensation = new Condensation(graph.getPackageDependencies());
+            }
+            return packageCondensation;
+        }
+
+        /**
+         * @return the class cycles over {@link #getClassDependencyIndex()} and the DAG between
+         *         them, computed on first use
+         */
+        public Condensation getClassCondensation() {
+            if (classCondensation == null) {
+                classCondensation = new Condensation(getClassDependencyIndex());
+            }
+            return classCondensation;
+        }
+
+        /**
+         * Derives the package and class cycles of this scan from those of an earlier scan of the
+         * same project, updating only the components whose edges changed. The earlier scan's
+         * tracking state is taken over, so it must not be continued from a second time.
+         */
+        public void continueCyclesFrom(ScanResultContainer previous) {
+            DependencyGraph previousGraph = previous.graph;
+            CycleDetector.ComponentTracker packageTracker = (previous.packageComponents != null)
+                    ? previous.packageComponents
+                    : new CycleDetector.ComponentTracker(previousGraph::getPackageName,
+                            previousGraph.getPackageDependencies(), previous.getPackageCondensation());
+            CycleDetector.ComponentTracker classTracker = (previous.classComponents != null)
+                    ? previous.classComponents
+                    : new CycleDetector.ComponentTracker(previousGraph::getClassName,
+                            previous.getClassDependencyIndex(), previous.getClassCondensation());
+            // Cleared first, so an update cut short never leaves a half-updated tracker behind
+            previous.packageComponents = null;
+            previous.classComponents = null;
+            packageCondensation = packageTracker.update(graph::getPackageName, graph.getPackageDependencies());
+            classCondensation = classTracker.update(graph::getClassName, getClassDependencyIndex());
+            packageComponents = packageTracker;
+            classComponents = classTracker;
+        }
+
+        /**
+         * @return transitive dependency queries over the packages, built on first use
+         */
+        public ReachabilityIndex getPackageReachability() {
+            if (packageReachability == null) {
+                packageReachability = new ReachabilityIndex(graph.getPackageDependencies(), getPackageCondensation());
+            }
+            return packageReachability;
+        }
+
+        /**
+         * @return transitive dependency queries over {@link #getClassDependencyIndex()}, built
+         *         on first use
+         */
+        public ReachabilityIndex getClassReachability() {
+            if (classReachability == null) {
+                classReachability = new ReachabilityIndex(getClassDependencyIndex(), getClassCondensation());
+            }
+            return classReachability;
+        }
+    }
+
+    private static class ClassDependencyView extends AbstractMap<String, Set<String>> {
+        private final DependencyGraph graph;
+        private final DependencyGraph.Adjacency adjacency;
+
+        ClassDependencyView(DependencyGraph graph, DependencyGraph.Adjacency adjacency) {
+            this.graph = graph;
+            this.adjacency = adjacency;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && graph.findClass((String) key) != -1;
+        }
+
+        @Override
+        public Set<String> get(Object key) {
+            int classId = (key instanceof String) ? graph.findClass((String) key) : -1;
+            return (classId == -1) ? null : targetsOf(classId);
+        }
+
+        @Override
+        public int size() {
+            return graph.getClassCount();
+        }
+
+        @Override
+        public Set<Entry<String, Set<String>>> entrySet() {
+            return new AbstractSet<Entry<String, Set<String>>>() {
+                @Override
+                public Iterator<Entry<String, Set<String>>> iterator() {
+                    return IntStream.range(0, graph.getClassCount())
+                            .mapToObj(classId -> (Entry<String, Set<String>>) new SimpleImmutableEntry<>(graph.getClassName(classId), targetsOf(classId)))
+                            .iterator();
+                }
+
+                @Override
+                public int size() {
+                    return graph.getClassCount();
+                }
             };
+        }
 
-            for (ClassInfo classInfo : rawScanResult.getAllClasses()) {
-                if (!isProjectPackage(classInfo.getPackageName())) {
-                    continue;
+        private Set<String> targetsOf(int classId) {
+            return new AbstractSet<String>() {
+                @Override
+                public boolean contains(Object o) {
+                    int target = (o instanceof String) ? graph.findClass((String) o) : -1;
+                    return target != -1 && adjacency.hasEdge(classId, target);
                 }
 
-                String sourceSimpleName = getSimpleName.apply(classInfo.getName());
-                classDeps.putIfAbsent(sourceSimpleName, new HashSet<>());
+                @Override
+                public Iterator<String> iterator() {
+                    return IntStream.range(0, adjacency.degree(classId))
+                            .mapToObj(i -> graph.getClassName(adjacency.target(classId, i)))
+                            .iterator();
+                }
 
-                classInfo.getClassDependencies().forEach(dep -> {
-                    if (!isProjectPackage(dep.getPackageName())) {
-                        return; // Continue for forEach
-                    }
+                @Override
+                public int size() {
+                    return adjacency.degree(classId);
+                }
+            };
+        }
+    }
 
-                    String targetSimpleName = getSimpleName.apply(dep.getName());
+    private final PackageFilter filter;
+    private final ScanProfile profile;
+    private final String configurationKey;
+    private final int scanThreads;
+    private volatile boolean cancelled;
 
-                    // Filter out dependencies from an inner class to its outer class
-                    int dollarIndex = sourceSimpleName.lastIndexOf('$');
-                    if (dollarIndex != -1) {
-                        String outerClassName = sourceSimpleName.substring(0, dollarIndex);
-                        if (outerClassName.equals(targetSimpleName)) {
-                            return; // Skip this dependency
-                        }
-                    }
+    public DependencyScanner() {
+        this(new ScanRules(), ScanProfile.FULL);
+    }
 
-                    classDeps.get(sourceSimpleName).add(targetSimpleName);
-                });
+    public DependencyScanner(ScanRules rules, ScanProfile profile) {
+        this(rules, profile, 0);
+    }
+
+    /**
+     * @param scanThreads size of the worker pool scanning jars in parallel; 0 uses one
+     *                    thread per available processor
+     */
+    public DependencyScanner(ScanRules rules, ScanProfile profile, int scanThreads) {
+        this.filter = new PackageFilter(rules);
+        this.scanThreads = scanThreads > 0 ? scanThreads : Runtime.getRuntime().availableProcessors();
+        this.profile = profile;
+        this.configurationKey = profile.name() + "|" + rules.toKey()
+                + (profile.collectsBytecodeMetrics() ? "|bytecode-metrics-v" + BytecodeMetricsAnalyzer.VERSION : "");
+    }
+
+    /**
+     * Receives progress reports. With several scan threads, reports arrive concurrently
+     * from the worker threads.
+     */
+    public interface ProgressListener {
+        void progress(ScanProgress progress);
+    }
+
+    /**
+     * Requests the running scan to stop. The scan then throws a {@link CancellationException}
+     * after the classpath element currently being scanned.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public ScanResultContainer scan(List<String> paths) {
+        return scan(paths, new ScanIndex());
+    }
+
+    public ScanResultContainer scan(List<String> paths, ScanIndex index) {
+        return scan(paths, index, progress -> { });
+    }
+
+    /**
+     * Scans {@code paths}, reusing the classes recorded in {@code index} for every jar whose
+     * size, modification time and content hash are unchanged. Only the remaining jars are
+     * scanned by ClassGraph, in parallel jar groups, reporting to {@code listener} after each
+     * jar from the worker threads; the index is updated in place and should be persisted afterwards.
+     * Jars rejected by the scan rules are skipped without being read.
+     *
+     * @throws CancellationException if {@link #cancel()} was called or the thread was interrupted
+     */
+    public ScanResultContainer scan(List<String> paths, ScanIndex index, ProgressListener listener) {
+        ScanStatistics.Recorder recorder = ScanStatistics.Recorder.start(profile);
+        long startNanos = System.nanoTime();
+        index.ensureConfiguration(configurationKey);
+        List<String> existingPaths = selectPaths(paths);
+        List<String> changedPaths = new ArrayList<>();
+        Set<String> knownPackages = new HashSet<>();
+        List<String> reusedPackages = new ArrayList<>();
+        for (String path : existingPaths) {
+            if (!isUpToDate(index, path)) {
+                changedPaths.add(path);
+            } else {
+                collectNewPackages(index.getEntry(path).getClasses(), knownPackages, reusedPackages);
             }
-            return classDeps;
         }
+        int completed = existingPaths.size() - changedPaths.size();
+        listener.progress(new ScanProgress(null, completed, existingPaths.size(), 0, 0, reusedPackages));
+
+        // Shards scan disjoint jar groups in parallel and only share the progress counters;
+        // their entries are merged into the index on this thread once all have finished.
+        List<List<String>> shards = partition(changedPaths, Math.min(scanThreads, changedPaths.size()));
+        ShardProgress shardProgress = new ShardProgress(listener, completed, existingPaths.size(), knownPackages, startNanos);
+        int threadsPerShard = Math.max(1, scanThreads / Math.max(1, shards.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, shards.size()), runnable -> {
+            Thread thread = new Thread(runnable, "devi4j-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<List<ScanIndex.JarEntry>> shardResults = new ArrayList<>();
+        try {
+            List<Future<List<ScanIndex.JarEntry>>> futures = new ArrayList<>();
+            for (List<String> shard : shards) {
+                futures.add(pool.submit(() -> scanShard(shard, threadsPerShard, shardProgress)));
+            }
+            for (Future<List<ScanIndex.JarEntry>> future : futures) {
+                shardResults.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Scan cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        for (List<ScanIndex.JarEntry> entries : shardResults) {
+            entries.forEach(index::putEntry);
+        }
+        checkCancelled();
+        index.retainPaths(existingPaths);
+
+        DependencyGraph graph = buildGraph(index, existingPaths);
+        String[] classOrigins = findClassOrigins(graph, index, existingPaths);
+        return new ScanResultContainer(graph, recorder.stop(graph.getClassCount(), changedPaths.size(), shards.size()),
+                buildMetricColumns(graph, index, existingPaths), classOrigins);
     }
 
-    public ScanResultContainer scan(List<String> paths) {
-        ScanResult scanResult = new ClassGraph()
-                .verbose()
-                .enableAllInfo()
-                .enableInterClassDependencies()
-                .overrideClasspath(paths)
-                .scan();
+    private List<ScanIndex.JarEntry> scanShard(List<String> paths, int classGraphThreads, ShardProgress progress) {
+        List<ScanIndex.JarEntry> entries = new ArrayList<>();
+        for (String path : paths) {
+            checkCancelled();
+            List<ScanIndex.ClassEntry> classes = scanPaths(Collections.singletonList(path), classGraphThreads)
+                    .getOrDefault(path, new ArrayList<>());
+            try {
+                entries.add(ScanIndex.createEntry(path, classes));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not fingerprint " + path, e);
+            }
+            progress.jarScanned(path, classes);
+        }
+        return entries;
+    }
+
+    /**
+     * Splits {@code paths} into {@code count} groups of roughly equal total file size,
+     * assigning the largest jars first to the currently lightest group.
+     */
+    private static List<List<String>> partition(List<String> paths, int count) {
+        List<List<String>> groups = new ArrayList<>();
+        if (paths.isEmpty()) {
+            return groups;
+        }
+        long[] load = new long[count];
+        for (int i = 0; i < count; i++) {
+            groups.add(new ArrayList<>());
+        }
+        List<String> bySize = new ArrayList<>(paths);
+        bySize.sort((a, b) -> Long.compare(new File(b).length(), new File(a).length()));
+        for (String path : bySize) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[lightest]) {
+                    lightest = i;
+                }
+            }
+            groups.get(lightest).add(path);
+            load[lightest] += Math.max(1, new File(path).length());
+        }
+        return groups;
+    }
+
+    /**
+     * Progress shared by all shards of a scan; reports may come from any worker thread.
+     */
+    private static class ShardProgress {
+        private final ProgressListener listener;
+        private final AtomicInteger completed;
+        private final AtomicInteger scannedClasses = new AtomicInteger();
+        private final int total;
+        private final Set<String> knownPackages;
+        private final long startNanos;
+
+        ShardProgress(ProgressListener listener, int completed, int total, Set<String> knownPackages, long startNanos) {
+            this.listener = listener;
+            this.completed = new AtomicInteger(completed);
+            this.total = total;
+            this.knownPackages = ConcurrentHashMap.newKeySet();
+            this.knownPackages.addAll(knownPackages);
+            this.startNanos = startNanos;
+        }
+
+        void jarScanned(String path, List<ScanIndex.ClassEntry> classes) {
+            List<String> discoveredPackages = new ArrayList<>();
+            collectNewPackages(classes, knownPackages, discoveredPackages);
+            listener.progress(new ScanProgress(path, completed.incrementAndGet(), total,
+                    scannedClasses.addAndGet(classes.size()), System.nanoTime() - startNanos, discoveredPackages));
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Scan cancelled");
+        }
+    }
+
+    private static void collectNewPackages(List<ScanIndex.ClassEntry> classes, Set<String> knownPackages, List<String> newPackages) {
+        for (ScanIndex.ClassEntry classEntry : classes) {
+            if (knownPackages.add(classEntry.getPackageName())) {
+                newPackages.add(classEntry.getPackageName());
+            }
+        }
+    }
+
+    /**
+     * @return the scan rules and profile in textual form; results recorded under a different
+     *         key (in the scan index or a snapshot) must not be reused
+     */
+    public String getConfigurationKey() {
+        return configurationKey;
+    }
+
+    /**
+     * @return the paths that exist and are accepted by the jar rules, in classpath order
+     */
+    public List<String> selectPaths(List<String> paths) {
+        List<String> selected = new ArrayList<>();
+        for (String path : paths) {
+            if (new File(path).exists() && filter.acceptsJar(path)) {
+                selected.add(path);
+            }
+        }
+        return selected;
+    }
 
-        ScanResultContainer resultContainer = new ScanResultContainer(scanResult);
-        processScanResult(resultContainer);
-        return resultContainer;
+    private boolean isUpToDate(ScanIndex index, String path) {
+        try {
+            return index.isUpToDate(path);
+        } catch (IOException e) {
+            return false;
+        }
     }
 
-    private void processScanResult(ScanResultContainer resultContainer) {
-        ScanResult scanResult = resultContainer.getRawScanResult();
-        ClassInfoList allClasses = scanResult.getAllClasses();
+    /**
+     * Runs ClassGraph over {@code paths} and groups the project classes found by the
+     * classpath element they were loaded from.
+     */
+    private Map<String, List<ScanIndex.ClassEntry>> scanPaths(List<String> paths, int classGraphThreads) {
+        Map<String, String> pathsByFile = new HashMap<>();
+        for (String path : paths) {
+            pathsByFile.put(new File(path).getAbsolutePath(), path);
+        }
 
-        for (ClassInfo classInfo : allClasses) {
-            String originPackage = getPackageName(classInfo);
+        // External classes make ClassGraph keep references to classes outside the scanned
+        // jars, which an incremental scan needs to link changed jars to unchanged ones.
+        ClassGraph classGraph = profile.configure(new ClassGraph())
+                .enableExternalClasses()
+                .overrideClasspath(paths);
+        if (!filter.getAcceptPackages().isEmpty()) {
+            classGraph.acceptPackages(filter.getAcceptPackages().toArray(new String[0]));
+        }
+        if (!filter.getRejectPackages().isEmpty()) {
+            classGraph.rejectPackages(filter.getRejectPackages().toArray(new String[0]));
+        }
 
-            if (isProjectPackage(originPackage)) {
-                // Populate package contents
-                resultContainer.getPackageContents().computeIfAbsent(originPackage, k -> new HashSet<>()).add(classInfo);
+        Map<String, List<ScanIndex.ClassEntry>> classesByPath = new HashMap<>();
+        BytecodeMetricsAnalyzer metricsAnalyzer = profile.collectsBytecodeMetrics() ? new BytecodeMetricsAnalyzer() : null;
+        try (ScanResult scanResult = classGraph.scan(classGraphThreads)) {
+            for (ClassInfo classInfo : scanResult.getAllClasses()) {
+                String originPackage = getPackageName(classInfo);
+                if (classInfo.isExternalClass() || !filter.acceptsPackage(originPackage)) {
+                    continue;
+                }
+                String path = pathsByFile.get(classInfo.getClasspathElementFile().getAbsolutePath());
+                if (path == null) {
+                    continue; // Pulled in through a manifest Class-Path entry
+                }
 
-                // Populate package dependencies
-                resultContainer.getPackageDependencies().putIfAbsent(originPackage, new HashSet<>());
+                List<String> dependencies = new ArrayList<>();
                 classInfo.getClassDependencies().forEach(dependency -> {
-                    String targetPackage = getPackageName(dependency);
-                    if (isProjectPackage(targetPackage) && !originPackage.equals(targetPackage)) {
-                        resultContainer.getPackageDependencies().get(originPackage).add(targetPackage);
+                    if (filter.acceptsPackage(getPackageName(dependency))) {
+                        dependencies.add(dependency.getName());
                     }
                 });
+                int[] bytecodeMetrics = (metricsAnalyzer != null) ? summarizeBytecode(metricsAnalyzer, classInfo) : null;
+                ClassInfo superclass = classInfo.getSuperclass();
+                classesByPath.computeIfAbsent(path, k -> new ArrayList<>())
+                        .add(new ScanIndex.ClassEntry(classInfo.getName(), originPackage, dependencies,
+                                superclass != null ? superclass.getName() : null, bytecodeMetrics));
+            }
+        }
+        return classesByPath;
+    }
+
+    /**
+     * Summarizes the class from the bytes of the resource ClassGraph has already opened.
+     */
+    private static int[] summarizeBytecode(BytecodeMetricsAnalyzer metricsAnalyzer, ClassInfo classInfo) {
+        try {
+            return metricsAnalyzer.summarize(classInfo.getResource().load());
+        } catch (IOException | RuntimeException e) {
+            return null; // Unreadable or malformed class file; it simply has no metrics
+        }
+    }
+
+    /**
+     * Lays the bytecode summaries out as columns by class id and adds the graph-wide OO metrics.
+     * Like the graph's edges, they come from the first definition of each class on the classpath.
+     */
+    private static Map<String, int[]> buildMetricColumns(DependencyGraph graph, ScanIndex index, List<String> paths) {
+        Map<String, int[]> columns = new LinkedHashMap<>();
+        String[] superclasses = new String[graph.getClassCount()];
+        BitSet defined = new BitSet(graph.getClassCount());
+        for (String path : paths) {
+            for (ScanIndex.ClassEntry classEntry : index.getEntry(path).getClasses()) {
+                int[] summary = classEntry.getBytecodeMetrics();
+                int classId = graph.findClass(classEntry.getName());
+                if (classId == -1 || defined.get(classId)) {
+                    continue; // A later duplicate, shadowed as in DependencyGraph.Builder.addClass
+                }
+                defined.set(classId);
+                superclasses[classId] = classEntry.getSuperclass();
+                if (summary == null) {
+                    continue;
+                }
+                for (int column = 0; column < BytecodeMetricsAnalyzer.SUMMARY_COLUMNS.length; column++) {
+                    columns.computeIfAbsent(BytecodeMetricsAnalyzer.SUMMARY_COLUMNS[column], name -> new int[graph.getClassCount()])
+                            [classId] = summary[column];
+                }
             }
         }
+        columns.putAll(OoMetricsCalculator.calculate(graph, superclasses));
+        return columns;
+    }
+
+    private DependencyGraph buildGraph(ScanIndex index, List<String> paths) {
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        for (String path : paths) {
+            for (ScanIndex.ClassEntry classEntry : index.getEntry(path).getClasses()) {
+                builder.addClass(classEntry.getName(), classEntry.getPackageName(), classEntry.getDependencies());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return for each class id, the first of {@code paths} defining it, as the graph keeps it
+     */
+    private static String[] findClassOrigins(DependencyGraph graph, ScanIndex index, List<String> paths) {
+        String[] origins = new String[graph.getClassCount()];
+        for (String path : paths) {
+            for (ScanIndex.ClassEntry classEntry : index.getEntry(path).getClasses()) {
+                int classId = graph.findClass(classEntry.getName());
+                if (classId != -1 && origins[classId] == null) {
+                    origins[classId] = path;
+                }
+            }
+        }
+        return origins;
     }
 
     private String getPackageName(ClassInfo classInfo) {
@@ -118,13 +651,4 @@ public class DependencyScanner {
         }
         return classInfo.getPackageName();
     }
-
-    private static boolean isProjectPackage(String packageName) {
-        // Simple heuristic to filter out JDK and other common libraries.
-        // This can be improved later.
-        return !packageName.startsWith("java.") &&
-               !packageName.startsWith("javax.") &&
-               !packageName.startsWith("sun.") &&
-               !packageName.startsWith("com.sun.");
-    }
-}
\ No newline at end of file
+}
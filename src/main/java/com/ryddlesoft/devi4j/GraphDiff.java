@@ -0,0 +1,359 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Differences between a baseline snapshot, such as the last release, and a current one: added
+ * and removed packages and classes, added and removed dependencies, new cycles and methods whose
+ * cyclomatic complexity grew.
+ * <p>
+ * Both graphs order their ids by name, so matching them is a single merge over the two id
+ * ranges, and the mapping from baseline to current ids preserves that order. A mapped baseline
+ * adjacency row therefore stays sorted and is merged with the current row in linear time, and
+ * the sorted methods of each matched class are merged the same way. A cycle is new unless the
+ * baseline has a cycle with exactly the same members.
+ */
+public class GraphDiff {
+
+    public static final String PACKAGE_LEVEL = "package";
+    public static final String CLASS_LEVEL = "class";
+
+    /**
+     * A dependency between two packages or classes, by name.
+     */
+    public static class Dependency {
+        private final String from;
+        private final String to;
+
+        public Dependency(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        @Override
+        public String toString() {
+            return from + " -> " + to;
+        }
+    }
+
+    /**
+     * A method of a class in both snapshots whose complexity is higher than in the baseline.
+     */
+    public static class Regression {
+        private final String className;
+        private final String methodName;
+        private final int baselineComplexity;
+        private final int complexity;
+
+        public Regression(String className, String methodName, int baselineComplexity, int complexity) {
+            this.className = className;
+            this.methodName = methodName;
+            this.baselineComplexity = baselineComplexity;
+            this.complexity = complexity;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public int getBaselineComplexity() {
+            return baselineComplexity;
+        }
+
+        public int getComplexity() {
+            return complexity;
+        }
+    }
+
+    private final List<String> addedPackages = new ArrayList<>();
+    private final List<String> removedPackages = new ArrayList<>();
+    private final List<String> addedClasses = new ArrayList<>();
+    private final List<String> removedClasses = new ArrayList<>();
+    private final List<Dependency> addedPackageDependencies = new ArrayList<>();
+    private final List<Dependency> removedPackageDependencies = new ArrayList<>();
+    private final List<Dependency> addedClassDependencies = new ArrayList<>();
+    private final List<Dependency> removedClassDependencies = new ArrayList<>();
+    private final List<List<String>> newPackageCycles = new ArrayList<>();
+    private final List<List<String>> newClassCycles = new ArrayList<>();
+    private final List<Regression> regressions = new ArrayList<>();
+
+    public static GraphDiff compare(GraphSnapshot baseline, GraphSnapshot current) {
+        return new GraphDiff(baseline, current);
+    }
+
+    private GraphDiff(GraphSnapshot baselineSnapshot, GraphSnapshot currentSnapshot) {
+        DependencyGraph baseline = baselineSnapshot.getGraph();
+        DependencyGraph current = currentSnapshot.getGraph();
+
+        int[] packageMapping = mapPackages(baseline, current);
+        int[] classMapping = mapClasses(baseline, current);
+        int[] reversePackageMapping = reverse(packageMapping, current.getPackageCount());
+        int[] reverseClassMapping = reverse(classMapping, current.getClassCount());
+        diffNodes(packageMapping, current.getPackageCount(), baseline::getPackageName, current::getPackageName,
+                addedPackages, removedPackages);
+        diffNodes(classMapping, current.getClassCount(), baseline::getClassName, current::getClassName,
+                addedClasses, removedClasses);
+        diffEdges(baseline.getPackageDependencies(), current.getPackageDependencies(), packageMapping, reversePackageMapping,
+                baseline::getPackageName, current::getPackageName, addedPackageDependencies, removedPackageDependencies);
+        diffEdges(baseline.getClassDependencies(), current.getClassDependencies(), classMapping, reverseClassMapping,
+                baseline::getClassName, current::getClassName, addedClassDependencies, removedClassDependencies);
+        diffMethods(baselineSnapshot.getMethods(), currentSnapshot.getMethods(), classMapping, current);
+
+        DependencyScanner.ScanResultContainer baselineScan = baselineSnapshot.toScanResult();
+        DependencyScanner.ScanResultContainer currentScan = currentSnapshot.toScanResult();
+        findNewCycles(baselineScan.getPackageCondensation(), currentScan.getPackageCondensation(), reversePackageMapping,
+                current::getPackageName, newPackageCycles);
+        findNewCycles(baselineScan.getClassCondensation(), currentScan.getClassCondensation(), reverseClassMapping,
+                current::getClassName, newClassCycles);
+    }
+
+    // Package ids follow the sorted package names, so equal names are found by one merge
+    private static int[] mapPackages(DependencyGraph baseline, DependencyGraph current) {
+        int[] mapping = new int[baseline.getPackageCount()];
+        Arrays.fill(mapping, -1);
+        int b = 0;
+        int c = 0;
+        while (b < baseline.getPackageCount() && c < current.getPackageCount()) {
+            int order = baseline.getPackageName(b).compareTo(current.getPackageName(c));
+            if (order == 0) {
+                mapping[b++] = c++;
+            } else if (order < 0) {
+                b++;
+            } else {
+                c++;
+            }
+        }
+        return mapping;
+    }
+
+    // Class ids are sorted by (package name, class name) in both graphs
+    private static int[] mapClasses(DependencyGraph baseline, DependencyGraph current) {
+        int[] mapping = new int[baseline.getClassCount()];
+        Arrays.fill(mapping, -1);
+        int b = 0;
+        int c = 0;
+        while (b < baseline.getClassCount() && c < current.getClassCount()) {
+            int order = baseline.getPackageName(baseline.getPackageOf(b))
+                    .compareTo(current.getPackageName(current.getPackageOf(c)));
+            if (order == 0) {
+                order = baseline.getClassName(b).compareTo(current.getClassName(c));
+            }
+            if (order == 0) {
+                mapping[b++] = c++;
+            } else if (order < 0) {
+                b++;
+            } else {
+                c++;
+            }
+        }
+        return mapping;
+    }
+
+    private static int[] reverse(int[] mapping, int currentCount) {
+        int[] reverseMapping = new int[currentCount];
+        Arrays.fill(reverseMapping, -1);
+        for (int b = 0; b < mapping.length; b++) {
+            if (mapping[b] != -1) {
+                reverseMapping[mapping[b]] = b;
+            }
+        }
+        return reverseMapping;
+    }
+
+    private static void diffNodes(int[] mapping, int currentCount, IdNames baselineNames, IdNames currentNames,
+                                  List<String> added, List<String> removed) {
+        boolean[] matched = new boolean[currentCount];
+        for (int b = 0; b < mapping.length; b++) {
+            if (mapping[b] == -1) {
+                removed.add(baselineNames.nameOf(b));
+            } else {
+                matched[mapping[b]] = true;
+            }
+        }
+        for (int c = 0; c < currentCount; c++) {
+            if (!matched[c]) {
+                added.add(currentNames.nameOf(c));
+            }
+        }
+    }
+
+    private static void diffEdges(DependencyGraph.Adjacency baseline, DependencyGraph.Adjacency current, int[] mapping,
+                                  int[] reverseMapping, IdNames baselineNames, IdNames currentNames,
+                                  List<Dependency> added, List<Dependency> removed) {
+        for (int b = 0; b < mapping.length; b++) {
+            if (mapping[b] == -1) {
+                for (int i = 0; i < baseline.degree(b); i++) {
+                    removed.add(new Dependency(baselineNames.nameOf(b), baselineNames.nameOf(baseline.target(b, i))));
+                }
+            }
+        }
+        for (int c = 0; c < current.getNodeCount(); c++) {
+            int b = reverseMapping[c];
+            int baselineDegree = (b == -1) ? 0 : baseline.degree(b);
+            int i = 0;
+            int j = 0;
+            while (i < baselineDegree || j < current.degree(c)) {
+                int baselineTarget = (i < baselineDegree) ? baseline.target(b, i) : -1;
+                // A target that no longer exists is a removed dependency right away
+                int mappedTarget = (baselineTarget == -1 || mapping[baselineTarget] == -1)
+                        ? Integer.MAX_VALUE : mapping[baselineTarget];
+                int currentTarget = (j < current.degree(c)) ? current.target(c, j) : Integer.MAX_VALUE;
+                if (baselineTarget != -1 && mappedTarget == Integer.MAX_VALUE) {
+                    removed.add(new Dependency(baselineNames.nameOf(b), baselineNames.nameOf(baselineTarget)));
+                    i++;
+                } else if (mappedTarget == currentTarget) {
+                    i++;
+                    j++;
+                } else if (mappedTarget < currentTarget) {
+                    removed.add(new Dependency(baselineNames.nameOf(b), baselineNames.nameOf(baselineTarget)));
+                    i++;
+                } else {
+                    added.add(new Dependency(currentNames.nameOf(c), currentNames.nameOf(currentTarget)));
+                    j++;
+                }
+            }
+        }
+    }
+
+    private void diffMethods(GraphSnapshot.MethodTable baseline, GraphSnapshot.MethodTable current, int[] classMapping,
+                             DependencyGraph currentGraph) {
+        for (int b = 0; b < classMapping.length; b++) {
+            int c = classMapping[b];
+            if (c == -1) {
+                continue;
+            }
+            int i = baseline.getStart(b);
+            int j = current.getStart(c);
+            while (i < baseline.getEnd(b) && j < current.getEnd(c)) {
+                int order = baseline.getKey(i).compareTo(current.getKey(j));
+                if (order == 0) {
+                    if (current.getComplexity(j) > baseline.getComplexity(i)) {
+                        regressions.add(new Regression(currentGraph.getClassName(c), current.getKey(j),
+                                baseline.getComplexity(i), current.getComplexity(j)));
+                    }
+                    i++;
+                    j++;
+                } else if (order < 0) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+        }
+    }
+
+    /**
+     * A current cycle is old if all its members map into the same baseline cycle and that
+     * cycle has as many members.
+     */
+    private static void findNewCycles(Condensation baseline, Condensation current, int[] reverseMapping,
+                                      IdNames currentNames, List<List<String>> newCycles) {
+        for (int component = 0; component < current.getComponentCount(); component++) {
+            if (!current.isCyclic(component)) {
+                continue;
+            }
+            int[] members = current.getMembers(component);
+            int baselineComponent = (reverseMapping[members[0]] == -1) ? -1 : baseline.getComponent(reverseMapping[members[0]]);
+            boolean isNew = baselineComponent == -1 || !baseline.isCyclic(baselineComponent)
+                    || baseline.getSize(baselineComponent) != members.length;
+            for (int i = 1; i < members.length && !isNew; i++) {
+                isNew = reverseMapping[members[i]] == -1 || baseline.getComponent(reverseMapping[members[i]]) != baselineComponent;
+            }
+            if (isNew) {
+                List<String> names = new ArrayList<>(members.length);
+                for (int member : members) {
+                    names.add(currentNames.nameOf(member));
+                }
+                Collections.sort(names);
+                newCycles.add(names);
+            }
+        }
+    }
+
+    private interface IdNames {
+        String nameOf(int id);
+    }
+
+    public List<String> getAddedPackages() {
+        return addedPackages;
+    }
+
+    public List<String> getRemovedPackages() {
+        return removedPackages;
+    }
+
+    public List<String> getAddedClasses() {
+        return addedClasses;
+    }
+
+    public List<String> getRemovedClasses() {
+        return removedClasses;
+    }
+
+    public List<Dependency> getAddedDependencies(String level) {
+        return level.equals(PACKAGE_LEVEL) ? addedPackageDependencies : addedClassDependencies;
+    }
+
+    public List<Dependency> getRemovedDependencies(String level) {
+        return level.equals(PACKAGE_LEVEL) ? removedPackageDependencies : removedClassDependencies;
+    }
+
+    /**
+     * @return the new cycles, each with its members sorted by name
+     */
+    public List<List<String>> getNewCycles(String level) {
+        return level.equals(PACKAGE_LEVEL) ? newPackageCycles : newClassCycles;
+    }
+
+    public List<Regression> getRegressions() {
+        return regressions;
+    }
+
+    /**
+     * @return current packages or classes that were added, gained or lost a dependency, or are
+     *         part of a new cycle, plus classes with a complexity regression
+     */
+    public Set<String> getChangedNodes(String level) {
+        Set<String> changed = new HashSet<>(level.equals(PACKAGE_LEVEL) ? addedPackages : addedClasses);
+        for (Dependency dependency : getAddedDependencies(level)) {
+            changed.add(dependency.getFrom());
+        }
+        for (Dependency dependency : getRemovedDependencies(level)) {
+            changed.add(dependency.getFrom());
+        }
+        for (List<String> cycle : getNewCycles(level)) {
+            changed.addAll(cycle);
+        }
+        if (level.equals(CLASS_LEVEL)) {
+            for (Regression regression : regressions) {
+                changed.add(regression.getClassName());
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("+%d/-%d packages, +%d/-%d classes, +%d/-%d class dependencies, %d new cycles, %d complexity regressions",
+                addedPackages.size(), removedPackages.size(), addedClasses.size(), removedClasses.size(),
+                addedClassDependencies.size(), removedClassDependencies.size(),
+                newPackageCycles.size() + newClassCycles.size(), regressions.size());
+    }
+}
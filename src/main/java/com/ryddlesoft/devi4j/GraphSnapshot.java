@@ -0,0 +1,460 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary snapshot of a scanned {@link DependencyGraph}, so a project can be reopened
+ * without running ClassGraph or parsing the JSON scan index.
+ * <p>
+ * Layout (big-endian): magic, format version, the scan configuration key and the
+ * (path, size, modification time) of every scanned jar or class directory, the latter summed
+ * and maximized over the files below it as in {@link ScanIndex}, followed by the string table
+ * (offsets into one UTF-8 blob; package names first, then class names), the package and class
+ * tables, forward class and package adjacency in CSR form, named per-class metric columns,
+ * the {@link MethodTable} of per-method complexities and, per class, the index of the jar it
+ * was read from (-1 if unknown).
+ * Snapshots are read into memory in one go, which turns loading into bulk array copies and
+ * leaves no mapping open that would keep a later save from replacing the file. Every length,
+ * offset and id is range-checked while reading, so a damaged or foreign file is rejected as a
+ * whole.
+ * A snapshot copied elsewhere, e.g. at a release, serves as the baseline of a {@link GraphDiff}.
+ */
+public class GraphSnapshot {
+
+    private static final int MAGIC = 0x44563453; // "DV4S"
+    public static final int FORMAT_VERSION = 4;
+
+    private final DependencyGraph graph;
+    private final Map<String, int[]> classMetrics;
+    private final MethodTable methods;
+    private final String[] classOrigins;
+
+    public GraphSnapshot(DependencyGraph graph, Map<String, int[]> classMetrics) {
+        this(graph, classMetrics, MethodTable.empty(graph.getClassCount()));
+    }
+
+    public GraphSnapshot(DependencyGraph graph, Map<String, int[]> classMetrics, MethodTable methods) {
+        this(graph, classMetrics, methods, new String[graph.getClassCount()]);
+    }
+
+    /**
+     * @param classOrigins the jar or class directory each class id was read from; null entries are unknown
+     */
+    public GraphSnapshot(DependencyGraph graph, Map<String, int[]> classMetrics, MethodTable methods,
+                         String[] classOrigins) {
+        this.graph = graph;
+        this.classMetrics = classMetrics;
+        this.methods = methods;
+        this.classOrigins = classOrigins;
+    }
+
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return cached per-class metric columns by name, each indexed by class id
+     */
+    public Map<String, int[]> getClassMetrics() {
+        return classMetrics;
+    }
+
+    public MethodTable getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return the jar or class directory of each class id, null where unknown
+     */
+    public String[] getClassOrigins() {
+        return classOrigins;
+    }
+
+    /**
+     * @return the snapshot as a scan result, for comparing it with another one; its statistics
+     *         only hold the class count
+     */
+    public DependencyScanner.ScanResultContainer toScanResult() {
+        ScanStatistics statistics = new ScanStatistics(ScanProfile.DEPENDENCIES_ONLY, 0, 0, 0,
+                graph.getClassCount(), 0, 0, true);
+        return new DependencyScanner.ScanResultContainer(graph, statistics, classMetrics, classOrigins);
+    }
+
+    /**
+     * Cyclomatic complexity of every method, grouped by class id like an adjacency list. The
+     * methods of a class are sorted by key, which is the method name followed by its erased
+     * parameter types, e.g. {@code put(java.lang.Object,int)}, so that adding or reordering
+     * overloads leaves the keys of the others alone. Methods whose parameter types are unknown
+     * are keyed by name, followed by {@code #n} for the n-th of a name after the first.
+     */
+    public static class MethodTable {
+        private final int[] offsets;
+        private final String[] keys;
+        private final int[] complexities;
+
+        MethodTable(int[] offsets, String[] keys, int[] complexities) {
+            this.offsets = offsets;
+            this.keys = keys;
+            this.complexities = complexities;
+        }
+
+        public static MethodTable empty(int classCount) {
+            return new MethodTable(new int[classCount + 1], new String[0], new int[0]);
+        }
+
+        /**
+         * @param metrics source or bytecode metrics; classes that are not in {@code graph} are left out
+         */
+        public static MethodTable of(DependencyGraph graph, Collection<ClassMetrics> metrics) {
+            List<List<MethodMetrics>> methodsById = new ArrayList<>(Collections.nCopies(graph.getClassCount(), null));
+            int methodCount = 0;
+            for (ClassMetrics classMetrics : metrics) {
+                int classId = graph.findClass(classMetrics.getFullyQualifiedName());
+                if (classId != -1) {
+                    methodsById.set(classId, classMetrics.getMethodMetrics());
+                    methodCount += classMetrics.getMethodMetrics().size();
+                }
+            }
+            int[] offsets = new int[graph.getClassCount() + 1];
+            String[] keys = new String[methodCount];
+            int[] complexities = new int[methodCount];
+            for (int classId = 0; classId < methodsById.size(); classId++) {
+                List<MethodMetrics> methods = methodsById.get(classId);
+                int start = offsets[classId];
+                int end = start;
+                if (methods != null) {
+                    Map<String, Integer> occurrences = new HashMap<>();
+                    Integer[] order = new Integer[methods.size()];
+                    String[] rowKeys = new String[methods.size()];
+                    for (int i = 0; i < order.length; i++) {
+                        MethodMetrics method = methods.get(i);
+                        String key = (method.getParameterTypes() != null)
+                                ? method.getMethodName() + "(" + method.getParameterTypes() + ")"
+                                : method.getMethodName();
+                        int occurrence = occurrences.merge(key, 1, Integer::sum);
+                        rowKeys[i] = (occurrence == 1) ? key : key + "#" + occurrence;
+                        order[i] = i;
+                    }
+                    Arrays.sort(order, Comparator.comparing(i -> rowKeys[i]));
+                    for (int i : order) {
+                        keys[end] = rowKeys[i];
+                        complexities[end++] = methods.get(i).getCyclomaticComplexity();
+                    }
+                }
+                offsets[classId + 1] = end;
+            }
+            return new MethodTable(offsets, keys, complexities);
+        }
+
+        public int getClassCount() {
+            return offsets.length - 1;
+        }
+
+        public int getStart(int classId) {
+            return offsets[classId];
+        }
+
+        public int getEnd(int classId) {
+            return offsets[classId + 1];
+        }
+
+        public String getKey(int method) {
+            return keys[method];
+        }
+
+        public int getComplexity(int method) {
+            return complexities[method];
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and then moves it into place, so a crash
+     * while writing never leaves a truncated snapshot behind.
+     */
+    public void write(File file, String configurationKey, List<String> paths) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, configurationKey);
+            out.writeInt(paths.size());
+            for (String path : paths) {
+                ScanIndex.Fingerprint fingerprint = ScanIndex.Fingerprint.of(new File(path));
+                writeString(out, path);
+                out.writeLong(fingerprint.getSize());
+                out.writeLong(fingerprint.getLastModified());
+            }
+
+            String[] packageNames = graph.packageNames();
+            String[] classNames = graph.classNames();
+            out.writeInt(packageNames.length);
+            out.writeInt(classNames.length);
+            writeStringTable(out, packageNames, classNames);
+            writeInts(out, graph.packageClassOffsets());
+            writeInts(out, graph.classPackages());
+            writeAdjacency(out, graph.getClassDependencies());
+            writeAdjacency(out, graph.getPackageDependencies());
+
+            out.writeInt(classMetrics.size());
+            for (Map.Entry<String, int[]> column : classMetrics.entrySet()) {
+                writeString(out, column.getKey());
+                writeInts(out, column.getValue());
+            }
+            writeInts(out, methods.offsets);
+            writeStringTable(out, methods.keys, new String[0]);
+            writeInts(out, methods.complexities);
+            Map<String, Integer> pathIndexes = new HashMap<>();
+            for (int i = 0; i < paths.size(); i++) {
+                pathIndexes.putIfAbsent(paths.get(i), i);
+            }
+            int[] originIndexes = new int[classNames.length];
+            for (int classId = 0; classId < originIndexes.length; classId++) {
+                Integer pathIndex = (classOrigins[classId] != null) ? pathIndexes.get(classOrigins[classId]) : null;
+                originIndexes[classId] = (pathIndex != null) ? pathIndex : -1;
+            }
+            writeInts(out, originIndexes);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens a snapshot if it was written by this format version, under the same scan
+     * configuration and from jars and class directories whose size and modification time are
+     * unchanged.
+     *
+     * @return the snapshot, or null if it is missing, stale or unreadable
+     */
+    public static GraphSnapshot read(File file, String configurationKey, List<String> paths) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !readString(buffer).equals(configurationKey)) {
+                return null;
+            }
+            int pathCount = buffer.getInt();
+            if (pathCount != paths.size()) {
+                return null;
+            }
+            for (String path : paths) {
+                if (!readString(buffer).equals(path)) {
+                    return null;
+                }
+                ScanIndex.Fingerprint fingerprint = ScanIndex.Fingerprint.of(new File(path));
+                if (buffer.getLong() != fingerprint.getSize() || buffer.getLong() != fingerprint.getLastModified()) {
+                    return null;
+                }
+            }
+            return readContent(buffer, paths);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null; // Truncated or corrupt
+        }
+    }
+
+    /**
+     * Opens a snapshot as a baseline, whatever configuration and jars it was written from.
+     *
+     * @return the snapshot, or null if the file is no snapshot of this format version
+     */
+    public static GraphSnapshot readBaseline(File file) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            readString(buffer);
+            int pathCount = buffer.getInt();
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < pathCount; i++) {
+                paths.add(readString(buffer));
+                buffer.getLong();
+                buffer.getLong();
+            }
+            return readContent(buffer, paths);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static GraphSnapshot readContent(ByteBuffer buffer, List<String> paths) {
+        int packageCount = buffer.getInt();
+        int classCount = buffer.getInt();
+        String[] strings = readStringTable(buffer, packageCount + classCount);
+        String[] packageNames = new String[packageCount];
+        String[] classNames = new String[classCount];
+        System.arraycopy(strings, 0, packageNames, 0, packageCount);
+        System.arraycopy(strings, packageCount, classNames, 0, classCount);
+        int[] packageClassOffsets = readInts(buffer);
+        checkOffsets(packageClassOffsets, packageCount, classCount, "Package class table");
+        int[] classPackages = readInts(buffer);
+        if (classPackages.length != classCount) {
+            throw new IllegalArgumentException("Class package table size mismatch");
+        }
+        for (int packageId = 0; packageId < packageCount; packageId++) {
+            for (int classId = packageClassOffsets[packageId]; classId < packageClassOffsets[packageId + 1]; classId++) {
+                if (classPackages[classId] != packageId) {
+                    throw new IllegalArgumentException("Class package table does not match the package class table");
+                }
+            }
+        }
+        DependencyGraph.Adjacency classDependencies = readAdjacency(buffer, classCount);
+        DependencyGraph.Adjacency packageDependencies = readAdjacency(buffer, packageCount);
+
+        Map<String, int[]> classMetrics = new LinkedHashMap<>();
+        int columnCount = buffer.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString(buffer);
+            int[] column = readInts(buffer);
+            if (column.length != classCount) {
+                throw new IllegalArgumentException("Metric column size mismatch: " + name);
+            }
+            classMetrics.put(name, column);
+        }
+        int[] methodOffsets = readInts(buffer);
+        if (methodOffsets.length != classCount + 1) {
+            throw new IllegalArgumentException("Method table size mismatch");
+        }
+        String[] methodKeys = readStringTable(buffer, methodOffsets[classCount]);
+        int[] methodComplexities = readInts(buffer);
+        checkOffsets(methodOffsets, classCount, methodComplexities.length, "Method table");
+        int[] originIndexes = readInts(buffer);
+        if (originIndexes.length != classCount) {
+            throw new IllegalArgumentException("Class origin table size mismatch");
+        }
+        String[] classOrigins = new String[classCount];
+        for (int classId = 0; classId < classCount; classId++) {
+            if (originIndexes[classId] >= paths.size()) {
+                throw new IllegalArgumentException("Class origin out of range");
+            }
+            classOrigins[classId] = (originIndexes[classId] >= 0) ? paths.get(originIndexes[classId]) : null;
+        }
+        DependencyGraph graph = new DependencyGraph(packageNames, packageClassOffsets, classNames, classPackages,
+                classDependencies, packageDependencies);
+        return new GraphSnapshot(graph, classMetrics, new MethodTable(methodOffsets, methodKeys, methodComplexities),
+                classOrigins);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[checkLength(buffer, buffer.getInt(), 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStringTable(DataOutputStream out, String[] first, String[] second) throws IOException {
+        byte[][] encoded = new byte[first.length + second.length][];
+        int[] offsets = new int[encoded.length + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            String value = (i < first.length) ? first[i] : second[i - first.length];
+            encoded[i] = value.getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        writeInts(out, offsets);
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readStringTable(ByteBuffer buffer, int count) {
+        int[] offsets = readInts(buffer);
+        if (count < 0 || offsets.length != count + 1) {
+            throw new IllegalArgumentException("String table size mismatch");
+        }
+        checkOffsets(offsets, count, checkLength(buffer, offsets[count], 1), "String table");
+        byte[] blob = new byte[offsets[count]];
+        buffer.get(blob);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static void writeAdjacency(DataOutputStream out, DependencyGraph.Adjacency adjacency) throws IOException {
+        writeInts(out, adjacency.offsets());
+        writeInts(out, adjacency.targets());
+    }
+
+    /**
+     * Checks the invariants the graph relies on, so that a damaged file fails here rather than
+     * with an index out of bounds once the graph is in use: offsets as for
+     * {@link #checkOffsets}, and the targets of every node in {@code [0, nodeCount)} and
+     * strictly ascending.
+     */
+    private static DependencyGraph.Adjacency readAdjacency(ByteBuffer buffer, int nodeCount) {
+        int[] offsets = readInts(buffer);
+        int[] targets = readInts(buffer);
+        checkOffsets(offsets, nodeCount, targets.length, "Adjacency");
+        for (int node = 0; node < nodeCount; node++) {
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                if (targets[i] < 0 || targets[i] >= nodeCount || (i > offsets[node] && targets[i] <= targets[i - 1])) {
+                    throw new IllegalArgumentException("Adjacency target out of range or order");
+                }
+            }
+        }
+        return new DependencyGraph.Adjacency(offsets, targets);
+    }
+
+    /**
+     * Requires {@code count + 1} offsets that start at 0, never decrease and end at {@code end}.
+     */
+    private static void checkOffsets(int[] offsets, int count, int end, String table) {
+        if (count < 0 || offsets.length != count + 1 || offsets[0] != 0 || offsets[count] != end) {
+            throw new IllegalArgumentException(table + " size mismatch");
+        }
+        for (int i = 0; i < count; i++) {
+            if (offsets[i + 1] < offsets[i]) {
+                throw new IllegalArgumentException(table + " offsets decrease");
+            }
+        }
+    }
+
+    /**
+     * @return {@code length}, if that many elements of {@code elementBytes} bytes remain in
+     *         the buffer; a damaged length would otherwise allocate an arbitrarily large array
+     */
+    private static int checkLength(ByteBuffer buffer, int length, int elementBytes) {
+        if (length < 0 || length > buffer.remaining() / elementBytes) {
+            throw new IllegalArgumentException("Length " + length + " exceeds the snapshot");
+        }
+        return length;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[checkLength(buffer, buffer.getInt(), Integer.BYTES)];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+}
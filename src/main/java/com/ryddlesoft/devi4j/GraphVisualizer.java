@@ -12,8 +12,12 @@ import org.graphstream.ui.view.Viewer;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class GraphVisualizer extends JPanel {
@@ -36,6 +40,18 @@ public class GraphVisualizer extends JPanel {
         "node.package { " +
         "   fill-color: #B0E0E6; " +
         "} " +
+        "node.added { " +
+        "   fill-color: #90EE90; " +
+        "   stroke-color: #2E8B57; " +
+        "} " +
+        "node.changed { " +
+        "   fill-color: #FFD27F; " +
+        "   stroke-color: #CC8400; " +
+        "} " +
+        "node.related { " +
+        "   fill-color: #EEEEEE; " +
+        "   stroke-mode: dashes; " +
+        "} " +
         "node.cycle { " +
         "   fill-color: red; " +
         "   text-color: white; " +
@@ -45,8 +61,20 @@ public class GraphVisualizer extends JPanel {
         "   arrow-shape: arrow;" +
         "   arrow-size: 8px, 5px;" +
         "}" +
+        "edge.added { " +
+        "   fill-color: #2E8B57; " +
+        "   size: 2px; " +
+        "}" +
         "edge.cycle { " +
         "   fill-color: red; " +
+        "}" +
+        "edge.cut { " +
+        "   fill-color: #FF8C00; " +
+        "   size: 3px; " +
+        "}" +
+        "edge.violation { " +
+        "   fill-color: #8B008B; " +
+        "   size: 3px; " +
         "}";
 
     public GraphVisualizer() {
@@ -127,29 +155,83 @@ public class GraphVisualizer extends JPanel {
         }
     }
 
-     private void highlightCycles(Graph graph, List<List<String>> cycles) {
-        for (List<String> cycle : cycles) {
-            for (String pkg : cycle) {
-                Node node = graph.getNode(pkg);
+    /**
+     * Marks the members of each cycle and the edges between members of the same cycle. Cycles
+     * are strongly connected components, so exactly those edges lie on a cycle. Edges breaking
+     * an architecture rule keep that mark.
+     */
+    private void highlightCycles(Graph graph, List<List<String>> cycles) {
+        Map<String, Integer> cycleOf = new HashMap<>();
+        for (int i = 0; i < cycles.size(); i++) {
+            for (String member : cycles.get(i)) {
+                cycleOf.put(member, i);
+                Node node = graph.getNode(member);
                 if (node != null) {
                     node.setAttribute("ui.class", "cycle");
                 }
             }
-            // Highlight edges within the cycle
-            for (int i = 0; i < cycle.size(); i++) {
-                String from = cycle.get(i);
-                String to = cycle.get((i + 1) % cycle.size()); // Next node in cycle
-                // This is an approximation, we need to check if the edge actually exists
-                // in the original graph to be precise.
-                if (graph.getNode(from) != null && graph.getEdge(from + "->" + to) != null) {
-                     graph.getEdge(from + "->" + to).setAttribute("ui.class", "cycle");
-                }
+        }
+        graph.edges().forEach(edge -> {
+            Integer cycle = cycleOf.get(edge.getSourceNode().getId());
+            if (cycle != null && cycle.equals(cycleOf.get(edge.getTargetNode().getId()))
+                    && !"violation".equals(edge.getAttribute("ui.class"))) {
+                edge.setAttribute("ui.class", "cycle");
+            }
+        });
+    }
+
+    private void highlightCuts(Graph graph, Collection<String> cutEdgeIds) {
+        for (String edgeId : cutEdgeIds) {
+            if (graph.getEdge(edgeId) != null) {
+                graph.getEdge(edgeId).setAttribute("ui.class", "cut");
+            }
+        }
+    }
+
+    /**
+     * Marks the nodes and edges that changed since a baseline; cycle highlighting applied
+     * afterwards by {@link #updateGraph} takes precedence.
+     *
+     * @param level {@link GraphDiff#PACKAGE_LEVEL} or {@link GraphDiff#CLASS_LEVEL}, matching the graph's nodes
+     */
+    public void highlightChanges(Graph graph, GraphDiff diff, String level) {
+        Set<String> added = new HashSet<>(level.equals(GraphDiff.PACKAGE_LEVEL) ? diff.getAddedPackages() : diff.getAddedClasses());
+        Set<String> changed = diff.getChangedNodes(level);
+        for (Node node : graph) {
+            if (added.contains(node.getId())) {
+                node.setAttribute("ui.class", "added");
+            } else if (changed.contains(node.getId())) {
+                node.setAttribute("ui.class", "changed");
+            }
+        }
+        for (GraphDiff.Dependency dependency : diff.getAddedDependencies(level)) {
+            if (graph.getEdge(dependency.getFrom() + "->" + dependency.getTo()) != null) {
+                graph.getEdge(dependency.getFrom() + "->" + dependency.getTo()).setAttribute("ui.class", "added");
+            }
+        }
+    }
+
+    /**
+     * Marks the edges that break architecture rules, or lie on a forbidden chain of them.
+     */
+    public void highlightViolations(Graph graph, Collection<String> violationEdgeIds) {
+        for (String edgeId : violationEdgeIds) {
+            if (graph.getEdge(edgeId) != null) {
+                graph.getEdge(edgeId).setAttribute("ui.class", "violation");
             }
         }
     }
 
     public void updateGraph(Graph graph, List<List<String>> cycles) {
+        updateGraph(graph, cycles, Collections.emptyList());
+    }
+
+    /**
+     * @param cutEdgeIds ids ({@code from->to}) of edges suggested for removal to break cycles
+     */
+    public void updateGraph(Graph graph, List<List<String>> cycles, Collection<String> cutEdgeIds) {
         highlightCycles(graph, cycles);
+        highlightCuts(graph, cutEdgeIds);
 
         // Clean up previous view if it exists
         if (viewer != null) {
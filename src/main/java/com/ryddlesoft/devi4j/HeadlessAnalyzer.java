@@ -0,0 +1,642 @@
+package com.ryddlesoft.devi4j;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntFunction;
+
+/**
+ * Command line entry point for CI: scans a project without any AWT initialization and streams
+ * the results as NDJSON records of type {@code package}, {@code class}, {@code cycle},
+ * {@code cycle-break} (ranked dependencies to remove), {@code metric}, {@code rollup} (per package, subpackages included, and {@code ""} for the
+ * whole project), {@code diff} (against a baseline snapshot), {@code violation} (including
+ * broken architecture rules from the project file or {@code --rule}), {@code reachability} and
+ * {@code path} (answers to dependency queries) and a final {@code summary}.
+ * <p>
+ * Exit codes: {@value #EXIT_OK} on success, {@value #EXIT_ERROR} on usage or I/O errors or a
+ * query naming neither a scanned class nor package, and
+ * {@value #EXIT_THRESHOLD} when a configured threshold was violated.
+ */
+public class HeadlessAnalyzer {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_ERROR = 1;
+    public static final int EXIT_THRESHOLD = 2;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: devi4j [options] <project.devi4j | jar-or-class-dir...>",
+            "  --sources <dir>           add a source root for metrics (repeatable)",
+            "  --output <file>           write NDJSON to a file instead of standard output",
+            "  --no-classes              omit per-class records",
+            "  --no-metrics              skip source metrics",
+            "  --fail-on-cycles          fail if any package cycle exists",
+            "  --baseline <file.ndjson>  fail only on cycles missing from an earlier run's output",
+            "  --max-complexity <n>      fail if a method's cyclomatic complexity exceeds n",
+            "  --cycle-breaks            rank the dependencies to remove to break every cycle",
+            "  --rule <rule>             fail on dependencies the rule forbids, in addition to the",
+            "                            project's rules (repeatable), e.g.",
+            "                            \"..web.. must not transitively depend on ..persistence..\"",
+            "  --dependents-of <name>    list what transitively depends on a class or package",
+            "                            (repeatable)",
+            "  --dependencies-of <name>  list what a class or package transitively depends on",
+            "                            (repeatable)",
+            "  --depth <n>               follow at most n dependencies for the two options above",
+            "  --path <from> <to>        find a shortest dependency path between two classes or",
+            "                            packages (repeatable)",
+            "  --compare <file>          report changes since a baseline snapshot; fail on new cycles",
+            "                            and methods whose complexity grew",
+            "  --save-baseline <file>    save this scan and its metrics as a baseline snapshot");
+
+    private final List<String> inputs = new ArrayList<>();
+    private final List<String> sourcePaths = new ArrayList<>();
+    private String outputPath;
+    private boolean classRecords = true;
+    private boolean metrics = true;
+    private boolean failOnCycles;
+    private String baselinePath;
+    private int maxComplexity = -1;
+    private boolean cycleBreaks;
+    private final List<ArchitectureRule> architectureRules = new ArrayList<>();
+    private final List<String> dependentsOf = new ArrayList<>();
+    private final List<String> dependenciesOf = new ArrayList<>();
+    private int queryDepth = ReachabilityIndex.UNLIMITED;
+    private final List<String[]> pathQueries = new ArrayList<>();
+    private boolean unresolvedQuery;
+    private String comparePath;
+    private String saveBaselinePath;
+
+    // Method metrics of this run, kept only to compare with or save as a baseline
+    private final Queue<ClassMetrics> analyzedMetrics = new ConcurrentLinkedQueue<>();
+
+    private int violations;
+
+    public static boolean isHeadlessInvocation(String[] args) {
+        return args.length > 0;
+    }
+
+    public static int run(String[] args, PrintStream err) {
+        HeadlessAnalyzer analyzer = new HeadlessAnalyzer();
+        try {
+            analyzer.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_ERROR;
+        }
+        return analyzer.analyze(err);
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sources":
+                    sourcePaths.add(requireValue(args, ++i));
+                    break;
+                case "--output":
+                    outputPath = requireValue(args, ++i);
+                    break;
+                case "--no-classes":
+                    classRecords = false;
+                    break;
+                case "--no-metrics":
+                    metrics = false;
+                    break;
+                case "--fail-on-cycles":
+                    failOnCycles = true;
+                    break;
+                case "--baseline":
+                    baselinePath = requireValue(args, ++i);
+                    failOnCycles = true;
+                    break;
+                case "--max-complexity":
+                    try {
+                        maxComplexity = Integer.parseInt(requireValue(args, ++i));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--max-complexity expects a number");
+                    }
+                    break;
+                case "--cycle-breaks":
+                    cycleBreaks = true;
+                    break;
+                case "--rule":
+                    architectureRules.add(ArchitectureRule.parse(requireValue(args, ++i)));
+                    break;
+                case "--dependents-of":
+                    dependentsOf.add(requireValue(args, ++i));
+                    break;
+                case "--dependencies-of":
+                    dependenciesOf.add(requireValue(args, ++i));
+                    break;
+                case "--depth":
+                    try {
+                        queryDepth = Integer.parseInt(requireValue(args, ++i));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--depth expects a number");
+                    }
+                    if (queryDepth < 1) {
+                        throw new IllegalArgumentException("--depth must be at least 1");
+                    }
+                    break;
+                case "--path":
+                    pathQueries.add(new String[]{requireValue(args, ++i), requireValue(args, ++i)});
+                    break;
+                case "--compare":
+                    comparePath = requireValue(args, ++i);
+                    break;
+                case "--save-baseline":
+                    saveBaselinePath = requireValue(args, ++i);
+                    break;
+                case "--help":
+                    throw new IllegalArgumentException("devi4j headless analysis");
+                default:
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No project file or jar given");
+        }
+    }
+
+    /**
+     * @return the message of an exception, followed by that of its cause if it adds anything
+     */
+    private static String describe(Throwable e) {
+        String message = (e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName();
+        Throwable cause = e.getCause();
+        if (cause != null && cause.getMessage() != null && !message.contains(cause.getMessage())) {
+            message += ": " + cause.getMessage();
+        }
+        return message;
+    }
+
+    private static String requireValue(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " expects a value");
+        }
+        return args[i];
+    }
+
+    private int analyze(PrintStream err) {
+        ProjectManager projectManager = new ProjectManager();
+        Project project;
+        Set<String> baselineCycles;
+        GraphSnapshot baseline;
+        try {
+            project = createProject(projectManager);
+            baselineCycles = (baselinePath != null) ? readBaselineCycles(baselinePath) : null;
+            baseline = (comparePath != null) ? projectManager.loadBaseline(new File(comparePath)) : null;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+
+        try (NdjsonWriter out = openOutput()) {
+            DependencyScanner scanner = new DependencyScanner(project.getScanRules(), project.getScanProfile(), project.getScanThreads());
+            DependencyScanner.ScanResultContainer result = projectManager.scanProject(project, scanner, progress -> { });
+            err.println("Scanned " + result.getStatistics());
+            if (result.getCacheWarning() != null) {
+                err.println("Warning: " + result.getCacheWarning());
+            }
+
+            writeGraph(out, result.getGraph(), result.getClassMetrics());
+            int cycleCount = writeCycles(out, "package", cycles(result.getPackageCondensation(), result.getGraph()::getPackageName), baselineCycles);
+            cycleCount += writeCycles(out, "class", cycles(result.getClassCondensation(), result.getGraph()::getClassName), baselineCycles);
+            if (cycleBreaks) {
+                DependencyGraph graph = result.getGraph();
+                writeCycleBreaks(out, "package", new CycleBreaker(graph.getPackageDependencies(),
+                        result.getPackageCondensation(), graph.getPackageReferenceCounts()), graph::getPackageName, err);
+                writeCycleBreaks(out, "class", new CycleBreaker(result.getClassDependencyIndex(),
+                        result.getClassCondensation(), null), graph::getClassName, err);
+            }
+            List<ArchitectureRule> rules = new ArrayList<>(project.getArchitectureRules());
+            rules.addAll(architectureRules);
+            if (!rules.isEmpty()) {
+                writeRuleViolations(out, rules, new ArchitectureChecker(rules).check(result), err);
+            }
+            writeQueries(out, result, err);
+            out.flush();
+            MetricsStatistics metricsStatistics = metrics ? writeMetrics(out, project, projectManager.openMetricsCache(project), err) : null;
+            if (baseline != null) {
+                GraphSnapshot current = new GraphSnapshot(result.getGraph(), result.getClassMetrics(),
+                        GraphSnapshot.MethodTable.of(result.getGraph(), analyzedMetrics));
+                GraphDiff diff = GraphDiff.compare(baseline, current);
+                err.println("Compared with baseline: " + diff);
+                writeDiff(out, diff);
+            }
+            if (saveBaselinePath != null) {
+                projectManager.saveBaseline(project, new File(saveBaselinePath), result.getGraph(), result.getClassMetrics(),
+                        analyzedMetrics);
+            }
+
+            Map<String, Object> summary = NdjsonWriter.record("summary");
+            summary.put("packages", result.getGraph().getPackageCount());
+            summary.put("classes", result.getGraph().getClassCount());
+            summary.put("cycles", cycleCount);
+            if (metricsStatistics != null) {
+                summary.put("analyzedFiles", metricsStatistics.getFileCount());
+                summary.put("failedFiles", metricsStatistics.getFailedFileCount());
+                summary.put("metricsMillis", metricsStatistics.getDurationMillis());
+            }
+            summary.put("scanMillis", result.getStatistics().getDurationMillis());
+            summary.put("violations", violations);
+            out.write(summary);
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        } catch (RuntimeException e) {
+            // Unreadable jars, fingerprinting and worker failures, cancellation
+            err.println("Error: " + describe(e));
+            return EXIT_ERROR;
+        }
+        if (unresolvedQuery) {
+            return EXIT_ERROR;
+        }
+        return violations > 0 ? EXIT_THRESHOLD : EXIT_OK;
+    }
+
+    private Project createProject(ProjectManager projectManager) throws IOException {
+        Project project;
+        if (inputs.size() == 1 && inputs.get(0).endsWith(".devi4j")) {
+            project = projectManager.loadProject(inputs.get(0));
+            if (project == null) {
+                throw new IOException("Not a devi4j project: " + inputs.get(0));
+            }
+            project.setProjectFilePath(inputs.get(0));
+        } else {
+            project = new Project("headless");
+            for (String input : inputs) {
+                if (!new File(input).exists()) {
+                    throw new IOException("No such file: " + input);
+                }
+                project.addJarPath(input);
+            }
+        }
+        for (String sourcePath : sourcePaths) {
+            project.addSourcePath(sourcePath);
+        }
+        return project;
+    }
+
+    private NdjsonWriter openOutput() throws IOException {
+        if (outputPath == null) {
+            return new NdjsonWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() throws IOException {
+                    flush(); // Leave standard output open
+                }
+            });
+        }
+        return new NdjsonWriter(Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.UTF_8));
+    }
+
+    private void writeGraph(NdjsonWriter out, DependencyGraph graph, Map<String, int[]> classMetrics) throws IOException {
+        for (int pkg = 0; pkg < graph.getPackageCount(); pkg++) {
+            Map<String, Object> record = NdjsonWriter.record("package");
+            record.put("name", graph.getPackageName(pkg));
+            record.put("classes", graph.getClassEnd(pkg) - graph.getClassStart(pkg));
+            record.put("dependencies", names(graph.getPackageDependencies().neighbors(pkg), graph::getPackageName));
+            out.write(record);
+        }
+        if (!classRecords) {
+            return;
+        }
+        for (int cls = 0; cls < graph.getClassCount(); cls++) {
+            Map<String, Object> record = NdjsonWriter.record("class");
+            record.put("name", graph.getClassName(cls));
+            record.put("package", graph.getPackageName(graph.getPackageOf(cls)));
+            record.put("dependencies", names(graph.getClassDependencies().neighbors(cls), graph::getClassName));
+            record.put("fanIn", graph.getClassDependents().degree(cls));
+            record.put("fanOut", graph.getClassDependencies().degree(cls));
+            for (Map.Entry<String, int[]> column : classMetrics.entrySet()) {
+                record.put(column.getKey(), column.getValue()[cls]);
+            }
+            out.write(record);
+        }
+    }
+
+    private static List<String> names(int[] ids, IntFunction<String> nameOf) {
+        List<String> names = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            names.add(nameOf.apply(id));
+        }
+        return names;
+    }
+
+    private static List<List<String>> cycles(Condensation condensation, IntFunction<String> nameOf) {
+        List<List<String>> cycles = new ArrayList<>();
+        for (int component : condensation.getCyclicComponents()) {
+            cycles.add(names(condensation.getMembers(component), nameOf));
+        }
+        return cycles;
+    }
+
+    private int writeCycles(NdjsonWriter out, String level, List<List<String>> cycles, Set<String> baselineCycles) throws IOException {
+        for (List<String> cycle : cycles) {
+            List<String> members = new ArrayList<>(cycle);
+            Collections.sort(members);
+            Map<String, Object> record = NdjsonWriter.record("cycle");
+            record.put("level", level);
+            record.put("members", members);
+            out.write(record);
+
+            // Without a baseline only package cycles fail the build; with one, any cycle it lacks does
+            boolean isNew = baselineCycles != null && !baselineCycles.contains(cycleKey(level, members));
+            if (failOnCycles && (isNew || (baselineCycles == null && level.equals("package")))) {
+                Map<String, Object> violation = NdjsonWriter.record("violation");
+                violation.put("rule", isNew ? "new-cycle" : "cycle");
+                violation.put("level", level);
+                violation.put("members", members);
+                out.write(violation);
+                violations++;
+            }
+        }
+        return cycles.size();
+    }
+
+    private static void writeCycleBreaks(NdjsonWriter out, String level, CycleBreaker breaker, IntFunction<String> nameOf,
+                                         PrintStream err) throws IOException {
+        CycleBreaker.Result result = breaker.analyze(CycleBreaker.DEFAULT_MAX_LENGTH, CycleBreaker.DEFAULT_MAX_CYCLES);
+        err.println("Enumerated " + result.getCycles().size() + " " + level + " cycles"
+                + (result.isTruncated() ? " (limit reached)" : "") + ", " + result.getCuts().size() + " dependencies to cut");
+        int rank = 1;
+        for (CycleBreaker.Cut cut : result.getCuts()) {
+            Map<String, Object> record = NdjsonWriter.record("cycle-break");
+            record.put("level", level);
+            record.put("rank", rank++);
+            record.put("from", nameOf.apply(cut.getFrom()));
+            record.put("to", nameOf.apply(cut.getTo()));
+            record.put("weight", cut.getWeight());
+            record.put("cycles", cut.getCycles());
+            out.write(record);
+        }
+    }
+
+    private static String cycleKey(String level, List<String> sortedMembers) {
+        return level + ":" + String.join(",", sortedMembers);
+    }
+
+    private static Set<String> readBaselineCycles(String path) throws IOException {
+        Set<String> cycles = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                if (record.has("type") && record.get("type").getAsString().equals("cycle")) {
+                    List<String> members = new ArrayList<>();
+                    for (JsonElement member : record.getAsJsonArray("members")) {
+                        members.add(member.getAsString());
+                    }
+                    Collections.sort(members);
+                    cycles.add(cycleKey(record.get("level").getAsString(), members));
+                }
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Streams metric records while the batch analysis runs, from its pool threads.
+     */
+    private MetricsStatistics writeMetrics(NdjsonWriter out, Project project, MetricsCache cache, PrintStream err) throws IOException {
+        BatchMetricsAnalyzer analyzer = new BatchMetricsAnalyzer(project.getSourcePaths(), project.getScanThreads(),
+                BatchMetricsAnalyzer.DEFAULT_CHUNK_SIZE, cache);
+        MetricsRollup rollup = new MetricsRollup();
+        MetricsStatistics statistics;
+        try {
+            statistics = analyzer.analyze(classMetrics -> {
+                rollup.update(classMetrics);
+                if (comparePath != null || saveBaselinePath != null) {
+                    analyzedMetrics.add(classMetrics);
+                }
+                synchronized (out) {
+                    try {
+                        writeClassMetrics(out, classMetrics);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }, (completedFiles, totalFiles, analyzedClasses) -> { });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        err.println("Analyzed " + statistics);
+        writeRollups(out, rollup);
+        return statistics;
+    }
+
+    private void writeQueries(NdjsonWriter out, DependencyScanner.ScanResultContainer result, PrintStream err)
+            throws IOException {
+        for (String name : dependentsOf) {
+            writeReachability(out, result, name, true, err);
+        }
+        for (String name : dependenciesOf) {
+            writeReachability(out, result, name, false, err);
+        }
+        for (String[] query : pathQueries) {
+            writePath(out, result, query[0], query[1], err);
+        }
+    }
+
+    private void writeReachability(NdjsonWriter out, DependencyScanner.ScanResultContainer result, String name,
+                                   boolean dependents, PrintStream err) throws IOException {
+        DependencyGraph graph = result.getGraph();
+        boolean classLevel = graph.findClass(name) != -1;
+        int id = classLevel ? graph.findClass(name) : graph.findPackage(name);
+        if (id == -1) {
+            err.println("Error: no scanned class or package named " + name);
+            unresolvedQuery = true;
+            return;
+        }
+        ReachabilityIndex index = classLevel ? result.getClassReachability() : result.getPackageReachability();
+        BitSet of = new BitSet();
+        of.set(id);
+        BitSet nodes = dependents ? index.getDependents(of, queryDepth) : index.getDependencies(of, queryDepth);
+
+        Map<String, Object> record = NdjsonWriter.record("reachability");
+        record.put("level", classLevel ? GraphDiff.CLASS_LEVEL : GraphDiff.PACKAGE_LEVEL);
+        record.put("of", name);
+        record.put("direction", dependents ? "dependents" : "dependencies");
+        if (queryDepth != ReachabilityIndex.UNLIMITED) {
+            record.put("depth", queryDepth);
+        }
+        record.put("nodes", names(nodes.stream().toArray(), classLevel ? graph::getClassName : graph::getPackageName));
+        out.write(record);
+    }
+
+    private void writePath(NdjsonWriter out, DependencyScanner.ScanResultContainer result, String from, String to,
+                           PrintStream err) throws IOException {
+        DependencyGraph graph = result.getGraph();
+        boolean classLevel = graph.findClass(from) != -1 && graph.findClass(to) != -1;
+        int fromId = classLevel ? graph.findClass(from) : graph.findPackage(from);
+        int toId = classLevel ? graph.findClass(to) : graph.findPackage(to);
+        if (fromId == -1 || toId == -1) {
+            err.println("Error: " + from + " and " + to + " are not both scanned classes or both packages");
+            unresolvedQuery = true;
+            return;
+        }
+        ReachabilityIndex index = classLevel ? result.getClassReachability() : result.getPackageReachability();
+        int[] path = index.findShortestPath(fromId, toId);
+
+        Map<String, Object> record = NdjsonWriter.record("path");
+        record.put("level", classLevel ? GraphDiff.CLASS_LEVEL : GraphDiff.PACKAGE_LEVEL);
+        record.put("from", from);
+        record.put("to", to);
+        if (path != null) {
+            record.put("path", names(path, classLevel ? graph::getClassName : graph::getPackageName));
+        }
+        out.write(record);
+    }
+
+    private void writeRuleViolations(NdjsonWriter out, List<ArchitectureRule> rules, List<ArchitectureChecker.Violation> ruleViolations,
+                                     PrintStream err) throws IOException {
+        err.println("Checked " + rules.size() + " architecture rules: " + ruleViolations.size() + " violations");
+        for (ArchitectureChecker.Violation ruleViolation : ruleViolations) {
+            Map<String, Object> violation = NdjsonWriter.record("violation");
+            violation.put("rule", "architecture");
+            violation.put("definition", ruleViolation.getRule().toString());
+            violation.put("level", ruleViolation.getRule().getLevel());
+            violation.put("from", ruleViolation.getFrom());
+            violation.put("to", ruleViolation.getTo());
+            if (ruleViolation.getPath().size() > 2) {
+                violation.put("path", ruleViolation.getPath());
+            }
+            out.write(violation);
+            violations++;
+        }
+    }
+
+    private void writeDiff(NdjsonWriter out, GraphDiff diff) throws IOException {
+        for (String level : new String[]{GraphDiff.PACKAGE_LEVEL, GraphDiff.CLASS_LEVEL}) {
+            boolean packageLevel = level.equals(GraphDiff.PACKAGE_LEVEL);
+            writeNodeChanges(out, "added", level, packageLevel ? diff.getAddedPackages() : diff.getAddedClasses());
+            writeNodeChanges(out, "removed", level, packageLevel ? diff.getRemovedPackages() : diff.getRemovedClasses());
+            writeDependencyChanges(out, "added-dependency", level, diff.getAddedDependencies(level));
+            writeDependencyChanges(out, "removed-dependency", level, diff.getRemovedDependencies(level));
+            for (List<String> cycle : diff.getNewCycles(level)) {
+                Map<String, Object> record = NdjsonWriter.record("diff");
+                record.put("change", "new-cycle");
+                record.put("level", level);
+                record.put("members", cycle);
+                out.write(record);
+
+                Map<String, Object> violation = NdjsonWriter.record("violation");
+                violation.put("rule", "new-cycle");
+                violation.put("level", level);
+                violation.put("members", cycle);
+                out.write(violation);
+                violations++;
+            }
+        }
+        for (GraphDiff.Regression regression : diff.getRegressions()) {
+            Map<String, Object> record = NdjsonWriter.record("diff");
+            record.put("change", "complexity-regression");
+            record.put("class", regression.getClassName());
+            record.put("method", regression.getMethodName());
+            record.put("baselineValue", regression.getBaselineComplexity());
+            record.put("value", regression.getComplexity());
+            out.write(record);
+
+            Map<String, Object> violation = NdjsonWriter.record("violation");
+            violation.put("rule", "complexity-regression");
+            violation.put("class", regression.getClassName());
+            violation.put("method", regression.getMethodName());
+            violation.put("value", regression.getComplexity());
+            violation.put("limit", regression.getBaselineComplexity());
+            out.write(violation);
+            violations++;
+        }
+    }
+
+    private static void writeNodeChanges(NdjsonWriter out, String change, String level, List<String> names) throws IOException {
+        for (String name : names) {
+            Map<String, Object> record = NdjsonWriter.record("diff");
+            record.put("change", change);
+            record.put("level", level);
+            record.put("name", name);
+            out.write(record);
+        }
+    }
+
+    private static void writeDependencyChanges(NdjsonWriter out, String change, String level,
+                                               List<GraphDiff.Dependency> dependencies) throws IOException {
+        for (GraphDiff.Dependency dependency : dependencies) {
+            Map<String, Object> record = NdjsonWriter.record("diff");
+            record.put("change", change);
+            record.put("level", level);
+            record.put("from", dependency.getFrom());
+            record.put("to", dependency.getTo());
+            out.write(record);
+        }
+    }
+
+    private static void writeRollups(NdjsonWriter out, MetricsRollup rollup) throws IOException {
+        for (String packageName : rollup.getPackageNames()) {
+            Map<String, Object> record = NdjsonWriter.record("rollup");
+            record.put("package", packageName);
+            for (int metric = 0; metric < MetricsRollup.METRIC_NAMES.length; metric++) {
+                MetricSummary summary = rollup.getSummary(packageName, metric);
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("count", summary.getCount());
+                values.put("sum", summary.getSum());
+                values.put("mean", Math.round(summary.getMean() * 100) / 100.0);
+                values.put("p50", summary.getP50());
+                values.put("p90", summary.getP90());
+                values.put("p99", summary.getP99());
+                values.put("max", summary.getMax());
+                record.put(MetricsRollup.METRIC_NAMES[metric], values);
+            }
+            out.write(record);
+        }
+    }
+
+    private void writeClassMetrics(NdjsonWriter out, ClassMetrics classMetrics) throws IOException {
+        for (MethodMetrics method : classMetrics.getMethodMetrics()) {
+            Map<String, Object> record = NdjsonWriter.record("metric");
+            record.put("class", classMetrics.getFullyQualifiedName());
+            record.put("method", method.getMethodName());
+            record.put("cyclomaticComplexity", method.getCyclomaticComplexity());
+            record.put("parameterCount", method.getParameterCount());
+            record.put("lineCount", method.getLineCount());
+            out.write(record);
+
+            if (maxComplexity >= 0 && method.getCyclomaticComplexity() > maxComplexity) {
+                Map<String, Object> violation = NdjsonWriter.record("violation");
+                violation.put("rule", "max-complexity");
+                violation.put("class", classMetrics.getFullyQualifiedName());
+                violation.put("method", method.getMethodName());
+                violation.put("value", method.getCyclomaticComplexity());
+                violation.put("limit", maxComplexity);
+                out.write(violation);
+                violations++;
+            }
+        }
+    }
+}
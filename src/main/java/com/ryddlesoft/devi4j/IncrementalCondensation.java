@@ -0,0 +1,618 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Strongly connected components of a graph that changes by batches of edge inserts and
+ * deletes, so a changed jar or source file updates the cycles without a full Tarjan pass.
+ * <p>
+ * Components are kept in a topological order (Pearce and Kelly): every edge leads from a lower
+ * to a higher order value. Inserting an edge that agrees with the order changes nothing.
+ * Otherwise only the components between its endpoints in the order are searched, forward from
+ * the target and backward from the source; the two searches either reorder just those
+ * components or, when they meet, merge the components on the new cycle. Deleting edges can only
+ * split the component they lie in, and only if a removed edge's source no longer reaches its
+ * target; then Tarjan's algorithm reruns on the members of that component, and the pieces take
+ * order values in the gap after the old one. Order values are
+ * spaced {@value #ORDER_GAP} apart and respaced when a gap runs out.
+ * <p>
+ * Component ids are reused and do not stay valid across updates. Not thread-safe.
+ */
+public class IncrementalCondensation {
+
+    private static final long ORDER_GAP = 1 << 20;
+
+    private int nodeCount;
+    private int[][] successors;
+    private int[] successorCount;
+    private int[][] predecessors;
+    private int[] predecessorCount;
+
+    private int[] componentOf;
+    private int[][] members;
+    private int[] memberCount;
+    private long[] order;
+    private final BitSet cyclic = new BitSet();
+    private final TreeMap<Long, Integer> componentsByOrder = new TreeMap<>();
+    private int componentCapacity;
+    private int[] freeComponents = new int[16];
+    private int freeCount;
+
+    private int[] mark;
+    private int markStamp;
+    private int[] forwardMark;
+    private int[] backwardMark;
+    private int nodeMarkStamp;
+    private long visitedEdges;
+
+    public IncrementalCondensation(DependencyGraph.Adjacency adjacency) {
+        this(adjacency, new Condensation(adjacency));
+    }
+
+    /**
+     * @param condensation the components of {@code adjacency}, when they are already known
+     */
+    public IncrementalCondensation(DependencyGraph.Adjacency adjacency, Condensation condensation) {
+        nodeCount = adjacency.getNodeCount();
+        successors = new int[nodeCount][];
+        successorCount = new int[nodeCount];
+        predecessors = new int[nodeCount][];
+        predecessorCount = new int[nodeCount];
+        int[] inDegree = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            successors[node] = adjacency.neighbors(node);
+            successorCount[node] = successors[node].length;
+            for (int target : successors[node]) {
+                inDegree[target]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            predecessors[node] = new int[Math.max(1, inDegree[node])];
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            for (int target : successors[node]) {
+                predecessors[target][predecessorCount[target]++] = node; // Ascending, as nodes are
+            }
+        }
+
+        int componentCount = condensation.getComponentCount();
+        componentOf = new int[nodeCount];
+        members = new int[componentCount][];
+        memberCount = new int[componentCount];
+        order = new long[componentCount];
+        componentCapacity = componentCount;
+        for (int component = 0; component < componentCount; component++) {
+            members[component] = condensation.getMembers(component);
+            memberCount[component] = members[component].length;
+            for (int member : members[component]) {
+                componentOf[member] = component;
+            }
+            if (condensation.isCyclic(component)) {
+                cyclic.set(component);
+            }
+            // Condensation edges lead to lower ids, so the order runs the other way
+            order[component] = (componentCount - 1 - component) * ORDER_GAP;
+            componentsByOrder.put(order[component], component);
+        }
+        mark = new int[componentCount];
+        forwardMark = new int[nodeCount];
+        backwardMark = new int[nodeCount];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getComponentCount() {
+        return componentsByOrder.size();
+    }
+
+    public int getComponent(int node) {
+        return componentOf[node];
+    }
+
+    public boolean isCyclic(int component) {
+        return cyclic.get(component);
+    }
+
+    /**
+     * @return the nodes of a component, ascending
+     */
+    public int[] getMembers(int component) {
+        int[] sorted = Arrays.copyOf(members[component], memberCount[component]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @return the current cyclic components, in topological order
+     */
+    public int[] getCyclicComponents() {
+        return componentsByOrder.values().stream().mapToInt(Integer::intValue).filter(cyclic::get).toArray();
+    }
+
+    /**
+     * @return the current components in topological order: every edge leads to a later one
+     */
+    public int[] getComponentsInOrder() {
+        return componentsByOrder.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public int degree(int node) {
+        return successorCount[node];
+    }
+
+    /**
+     * @return the current successors of a node, ascending
+     */
+    public int[] neighbors(int node) {
+        return Arrays.copyOf(successors[node], successorCount[node]);
+    }
+
+    public boolean hasEdge(int from, int to) {
+        return Arrays.binarySearch(successors[from], 0, successorCount[from], to) >= 0;
+    }
+
+    /**
+     * @return the current edges, e.g. to check against a full recomputation
+     */
+    public DependencyGraph.Adjacency toAdjacency() {
+        int[] offsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] = offsets[node] + successorCount[node];
+        }
+        int[] targets = new int[offsets[nodeCount]];
+        for (int node = 0; node < nodeCount; node++) {
+            System.arraycopy(successors[node], 0, targets, offsets[node], successorCount[node]);
+        }
+        return new DependencyGraph.Adjacency(offsets, targets);
+    }
+
+    /**
+     * @return edges followed by the searches of all updates so far, a measure of their cost
+     */
+    public long getVisitedEdges() {
+        return visitedEdges;
+    }
+
+    /**
+     * Adds an isolated node, e.g. for a class that was not scanned before.
+     *
+     * @return its id
+     */
+    public int addNode() {
+        int node = nodeCount++;
+        if (node == successors.length) {
+            int capacity = Math.max(16, 2 * node);
+            successors = Arrays.copyOf(successors, capacity);
+            successorCount = Arrays.copyOf(successorCount, capacity);
+            predecessors = Arrays.copyOf(predecessors, capacity);
+            predecessorCount = Arrays.copyOf(predecessorCount, capacity);
+            componentOf = Arrays.copyOf(componentOf, capacity);
+        }
+        successors[node] = new int[1];
+        predecessors[node] = new int[1];
+        int component = newComponent();
+        members[component] = new int[]{node};
+        memberCount[component] = 1;
+        componentOf[node] = component;
+        setOrder(component, componentsByOrder.isEmpty() ? 0 : componentsByOrder.lastKey() + ORDER_GAP);
+        return node;
+    }
+
+    public void addEdges(int[] from, int[] to, int count) {
+        for (int i = 0; i < count; i++) {
+            addEdge(from[i], to[i]);
+        }
+    }
+
+    /**
+     * Removes the edges. A component that lost inner edges stays whole if each removed edge's
+     * source still reaches its target inside it, which a search usually confirms after a few
+     * steps; otherwise the component is recomputed, once per batch.
+     */
+    public void removeEdges(int[] from, int[] to, int count) {
+        Map<Integer, List<int[]>> affected = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (remove(successors, successorCount, from[i], to[i])) {
+                remove(predecessors, predecessorCount, to[i], from[i]);
+                if (componentOf[from[i]] == componentOf[to[i]]) {
+                    affected.computeIfAbsent(componentOf[from[i]], component -> new ArrayList<>()).add(new int[]{from[i], to[i]});
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<int[]>> entry : affected.entrySet()) {
+            int component = entry.getKey();
+            if (memberCount[component] == 1) {
+                int node = members[component][0];
+                cyclic.set(component, hasEdge(node, node));
+            } else if (!stillReached(component, entry.getValue())) {
+                split(component);
+            }
+        }
+    }
+
+    /**
+     * Replaces the dependencies of a node, e.g. for a recompiled class. Only the difference is
+     * applied, new edges first, so an edge that stays or a cycle that survives through a new
+     * edge splits nothing.
+     */
+    public void replaceNeighbors(int node, int[] targets) {
+        int[] sorted = Arrays.stream(targets).distinct().sorted().toArray();
+        int[] current = neighbors(node);
+        int[] addFrom = new int[sorted.length];
+        int[] addTo = new int[sorted.length];
+        int added = 0;
+        for (int target : sorted) {
+            if (Arrays.binarySearch(current, target) < 0) {
+                addFrom[added] = node;
+                addTo[added++] = target;
+            }
+        }
+        int[] removeFrom = new int[current.length];
+        int[] removeTo = new int[current.length];
+        int removed = 0;
+        for (int target : current) {
+            if (Arrays.binarySearch(sorted, target) < 0) {
+                removeFrom[removed] = node;
+                removeTo[removed++] = target;
+            }
+        }
+        addEdges(addFrom, addTo, added);
+        removeEdges(removeFrom, removeTo, removed);
+    }
+
+    private void addEdge(int from, int to) {
+        if (!insert(successors, successorCount, from, to)) {
+            return;
+        }
+        insert(predecessors, predecessorCount, to, from);
+        int source = componentOf[from];
+        int target = componentOf[to];
+        if (source == target) {
+            if (from == to) {
+                cyclic.set(source);
+            }
+            return;
+        }
+        if (order[source] < order[target]) {
+            return; // Agrees with the order
+        }
+
+        // Components reachable from the target that are not after the source in the order,
+        // and components reaching the source that are not before the target
+        List<Integer> forward = search(target, order[source], true);
+        boolean closesCycle = isMarked(source);
+        List<Integer> backward = search(source, order[target], false);
+        BitSet inBoth = new BitSet();
+        if (closesCycle) {
+            markAll(forward);
+            for (int component : backward) {
+                if (isMarked(component)) {
+                    inBoth.set(component);
+                }
+            }
+        }
+
+        long[] orders = new long[forward.size() + backward.size()];
+        int used = 0;
+        for (int component : forward) {
+            orders[used++] = order[component];
+        }
+        for (int component : backward) {
+            if (!inBoth.get(component)) {
+                orders[used++] = order[component];
+            }
+        }
+        Arrays.sort(orders, 0, used);
+        for (int i = 0; i < used; i++) {
+            componentsByOrder.remove(orders[i]);
+        }
+
+        // What reaches the source takes the lowest values and what the target reaches the
+        // highest, so neither moves past a neighbor outside the searches; a merged cycle only
+        // has neighbors outside the window and takes any value in between
+        Comparator<Integer> byOrder = Comparator.comparingLong(component -> order[component]);
+        forward.sort(byOrder);
+        backward.sort(byOrder);
+        int next = 0;
+        for (int component : backward) {
+            if (!inBoth.get(component)) {
+                setOrder(component, orders[next++]);
+            }
+        }
+        if (closesCycle) {
+            setOrder(merge(inBoth), orders[next]);
+        }
+        int last = used;
+        for (int i = forward.size() - 1; i >= 0; i--) {
+            if (!inBoth.get(forward.get(i))) {
+                setOrder(forward.get(i), orders[--last]);
+            }
+        }
+    }
+
+    /**
+     * Depth-first search over components, following edges forward or backward and staying
+     * within {@code bound} in the order; marks and returns the visited components.
+     */
+    private List<Integer> search(int start, long bound, boolean forward) {
+        nextMarkStamp();
+        List<Integer> visited = new ArrayList<>();
+        int[] stack = new int[16];
+        int depth = 0;
+        stack[depth++] = start;
+        mark[start] = markStamp;
+        while (depth > 0) {
+            int component = stack[--depth];
+            visited.add(component);
+            for (int m = 0; m < memberCount[component]; m++) {
+                int node = members[component][m];
+                int[] row = forward ? successors[node] : predecessors[node];
+                int degree = forward ? successorCount[node] : predecessorCount[node];
+                visitedEdges += degree;
+                for (int i = 0; i < degree; i++) {
+                    int next = componentOf[row[i]];
+                    boolean inWindow = forward ? order[next] <= bound : order[next] >= bound;
+                    if (mark[next] != markStamp && inWindow) {
+                        mark[next] = markStamp;
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, 2 * depth);
+                        }
+                        stack[depth++] = next;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    private boolean stillReached(int component, List<int[]> removed) {
+        for (int[] edge : removed) {
+            if (edge[0] != edge[1] && !reaches(edge[0], edge[1], component)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bidirectional breadth-first search from one member of a component to another, staying
+     * inside it and always growing the smaller frontier.
+     */
+    private boolean reaches(int from, int to, int component) {
+        if (forwardMark.length < nodeCount) {
+            forwardMark = Arrays.copyOf(forwardMark, successors.length);
+            backwardMark = Arrays.copyOf(backwardMark, successors.length);
+        }
+        nodeMarkStamp++;
+        int[] forwardQueue = {from};
+        int forwardSize = 1;
+        int[] backwardQueue = {to};
+        int backwardSize = 1;
+        forwardMark[from] = nodeMarkStamp;
+        backwardMark[to] = nodeMarkStamp;
+        while (forwardSize > 0 && backwardSize > 0) {
+            boolean forward = forwardSize <= backwardSize;
+            int[] queue = forward ? forwardQueue : backwardQueue;
+            int size = forward ? forwardSize : backwardSize;
+            int[][] rows = forward ? successors : predecessors;
+            int[] counts = forward ? successorCount : predecessorCount;
+            int[] seen = forward ? forwardMark : backwardMark;
+            int[] other = forward ? backwardMark : forwardMark;
+            int[] nextQueue = new int[Math.max(4, size)];
+            int nextSize = 0;
+            for (int q = 0; q < size; q++) {
+                int node = queue[q];
+                visitedEdges += counts[node];
+                for (int i = 0; i < counts[node]; i++) {
+                    int next = rows[node][i];
+                    if (other[next] == nodeMarkStamp) {
+                        return true;
+                    }
+                    if (seen[next] != nodeMarkStamp && componentOf[next] == component) {
+                        seen[next] = nodeMarkStamp;
+                        if (nextSize == nextQueue.length) {
+                            nextQueue = Arrays.copyOf(nextQueue, 2 * nextSize);
+                        }
+                        nextQueue[nextSize++] = next;
+                    }
+                }
+            }
+            if (forward) {
+                forwardQueue = nextQueue;
+                forwardSize = nextSize;
+            } else {
+                backwardQueue = nextQueue;
+                backwardSize = nextSize;
+            }
+        }
+        return false;
+    }
+
+    private boolean isMarked(int component) {
+        return mark[component] == markStamp;
+    }
+
+    private void markAll(List<Integer> components) {
+        nextMarkStamp();
+        for (int component : components) {
+            mark[component] = markStamp;
+        }
+    }
+
+    private void nextMarkStamp() {
+        if (mark.length < componentCapacity) {
+            mark = Arrays.copyOf(mark, componentCapacity);
+        }
+        markStamp++;
+    }
+
+    /**
+     * Merges components into the largest of them, which becomes cyclic.
+     */
+    private int merge(BitSet components) {
+        int largest = components.nextSetBit(0);
+        for (int component = components.nextSetBit(0); component >= 0; component = components.nextSetBit(component + 1)) {
+            if (memberCount[component] > memberCount[largest]) {
+                largest = component;
+            }
+        }
+        for (int component = components.nextSetBit(0); component >= 0; component = components.nextSetBit(component + 1)) {
+            if (component == largest) {
+                continue;
+            }
+            for (int m = 0; m < memberCount[component]; m++) {
+                int node = members[component][m];
+                componentOf[node] = largest;
+                if (memberCount[largest] == members[largest].length) {
+                    members[largest] = Arrays.copyOf(members[largest], 2 * memberCount[largest]);
+                }
+                members[largest][memberCount[largest]++] = node;
+            }
+            releaseComponent(component);
+        }
+        cyclic.set(largest);
+        return largest;
+    }
+
+    /**
+     * Reruns Tarjan's algorithm on the members of a component that lost inner edges.
+     */
+    private void split(int component) {
+        int[] nodes = getMembers(component);
+        int size = nodes.length;
+        int edgeCount = 0;
+        for (int node : nodes) {
+            edgeCount += successorCount[node];
+        }
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int edges = 0;
+        boolean selfLoop = false;
+        for (int v = 0; v < size; v++) {
+            int node = nodes[v];
+            visitedEdges += successorCount[node];
+            for (int i = 0; i < successorCount[node]; i++) {
+                int target = successors[node][i];
+                if (componentOf[target] == component) {
+                    from[edges] = v;
+                    to[edges++] = Arrays.binarySearch(nodes, target);
+                    selfLoop |= target == node;
+                }
+            }
+        }
+        DependencyGraph.Adjacency local = DependencyGraph.Adjacency.fromEdges(size, from, to, edges);
+        int[] piece = CycleDetector.findComponents(local);
+        int pieceCount = 0;
+        for (int p : piece) {
+            pieceCount = Math.max(pieceCount, p + 1);
+        }
+        if (pieceCount == 1) {
+            cyclic.set(component, size > 1 || selfLoop);
+            return;
+        }
+
+        // Pieces complete in reverse topological order, so the last one comes first
+        long start = order[component];
+        Long following = componentsByOrder.higherKey(start);
+        if (following != null && following - start < pieceCount) {
+            respaceOrder();
+            start = order[component];
+            following = componentsByOrder.higherKey(start);
+        }
+        long step = (following == null) ? ORDER_GAP : (following - start) / pieceCount;
+        int[] pieceComponent = new int[pieceCount];
+        int[] pieceSize = new int[pieceCount];
+        for (int p : piece) {
+            pieceSize[p]++;
+        }
+        componentsByOrder.remove(start);
+        for (int p = 0; p < pieceCount; p++) {
+            pieceComponent[p] = (p == pieceCount - 1) ? component : newComponent();
+            members[pieceComponent[p]] = new int[pieceSize[p]];
+            memberCount[pieceComponent[p]] = 0;
+            setOrder(pieceComponent[p], start + (pieceCount - 1 - p) * step);
+        }
+        for (int v = 0; v < size; v++) {
+            int c = pieceComponent[piece[v]];
+            members[c][memberCount[c]++] = nodes[v];
+            componentOf[nodes[v]] = c;
+        }
+        for (int p = 0; p < pieceCount; p++) {
+            int c = pieceComponent[p];
+            boolean isCyclic = memberCount[c] > 1 || hasEdge(members[c][0], members[c][0]);
+            cyclic.set(c, isCyclic);
+        }
+    }
+
+    private void respaceOrder() {
+        List<Integer> components = new ArrayList<>(componentsByOrder.values());
+        componentsByOrder.clear();
+        for (int i = 0; i < components.size(); i++) {
+            setOrder(components.get(i), i * ORDER_GAP);
+        }
+    }
+
+    private void setOrder(int component, long value) {
+        order[component] = value;
+        componentsByOrder.put(value, component);
+    }
+
+    private int newComponent() {
+        if (freeCount > 0) {
+            return freeComponents[--freeCount];
+        }
+        int component = componentCapacity++;
+        if (component == members.length) {
+            int capacity = Math.max(16, 2 * component);
+            members = Arrays.copyOf(members, capacity);
+            memberCount = Arrays.copyOf(memberCount, capacity);
+            order = Arrays.copyOf(order, capacity);
+        }
+        return component;
+    }
+
+    private void releaseComponent(int component) {
+        members[component] = null;
+        memberCount[component] = 0;
+        cyclic.clear(component);
+        if (freeCount == freeComponents.length) {
+            freeComponents = Arrays.copyOf(freeComponents, 2 * freeCount);
+        }
+        freeComponents[freeCount++] = component;
+    }
+
+    // Sorted insert into a row; false if the value is already there
+    private static boolean insert(int[][] rows, int[] counts, int row, int value) {
+        int position = Arrays.binarySearch(rows[row], 0, counts[row], value);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (counts[row] == rows[row].length) {
+            rows[row] = Arrays.copyOf(rows[row], Math.max(1, 2 * counts[row]));
+        }
+        System.arraycopy(rows[row], position, rows[row], position + 1, counts[row] - position);
+        rows[row][position] = value;
+        counts[row]++;
+        return true;
+    }
+
+    private static boolean remove(int[][] rows, int[] counts, int row, int value) {
+        int position = Arrays.binarySearch(rows[row], 0, counts[row], value);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(rows[row], position + 1, rows[row], position, counts[row] - position - 1);
+        counts[row]--;
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of non-negative int values kept as bucket counts, so values can be added and
+ * removed again in constant time and percentiles are read without storing the values. Values
+ * below {@value #EXACT_LIMIT} have a bucket each; above that every power of two is split into
+ * 16 buckets, which bounds the error of a percentile to 1/16 of its value. Not thread-safe.
+ */
+public class IntHistogram {
+
+    private static final int EXACT_BITS = 7;
+    public static final int EXACT_LIMIT = 1 << EXACT_BITS;
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private int[] counts = new int[0]; // Grown to the highest bucket used
+    private long count;
+    private long sum;
+
+    public void add(int value) {
+        value = Math.max(0, value);
+        int bucket = bucketOf(value);
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(bucket + 1, Math.min(2 * counts.length, EXACT_LIMIT)));
+        }
+        counts[bucket]++;
+        count++;
+        sum += value;
+    }
+
+    /**
+     * Removes one occurrence of a value that was added before.
+     */
+    public void remove(int value) {
+        value = Math.max(0, value);
+        int bucket = bucketOf(value);
+        if (bucket >= counts.length || counts[bucket] == 0) {
+            throw new IllegalStateException("Value was never added: " + value);
+        }
+        counts[bucket]--;
+        count--;
+        sum -= value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest value that at least {@code percentile}% of the values do not exceed,
+     *         rounded up to the end of its bucket, or 0 if empty
+     */
+    public int getPercentile(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return highestValueOf(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the largest value, rounded up to the end of its bucket, or 0 if empty
+     */
+    public int getMax() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] > 0) {
+                return highestValueOf(bucket);
+            }
+        }
+        return 0;
+    }
+
+    public MetricSummary summarize() {
+        return new MetricSummary(count, sum, getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+
+    static int bucketOf(int value) {
+        if (value < EXACT_LIMIT) {
+            return value;
+        }
+        int magnitude = 31 - Integer.numberOfLeadingZeros(value);
+        int subBucket = (value >>> (magnitude - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return EXACT_LIMIT + ((magnitude - EXACT_BITS) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    static int highestValueOf(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int offset = bucket - EXACT_LIMIT;
+        int magnitude = (offset >>> SUB_BUCKET_BITS) + EXACT_BITS;
+        long lowest = (1L << magnitude) | ((long) (offset & ((1 << SUB_BUCKET_BITS) - 1)) << (magnitude - SUB_BUCKET_BITS));
+        return (int) Math.min(Integer.MAX_VALUE, lowest + (1L << (magnitude - SUB_BUCKET_BITS)) - 1);
+    }
+}
@@ -8,6 +8,10 @@ import com.formdev.flatlaf.FlatLightLaf;
 public class Main {
 
     public static void main(String[] args) {
+        if (HeadlessAnalyzer.isHeadlessInvocation(args)) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(HeadlessAnalyzer.run(args, System.err));
+        }
         SwingUtilities.invokeLater(() -> {
             //FlatLightLaf.setup();
             FlatDarkLaf.setup();
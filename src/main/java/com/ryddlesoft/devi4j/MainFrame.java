@@ -1,6 +1,5 @@
 package com.ryddlesoft.devi4j;
 
-import io.github.classgraph.ClassInfo;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.implementations.SingleGraph;
 
@@ -22,6 +21,9 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -30,6 +32,9 @@ public class MainFrame extends JFrame {
 
     private enum VisualizationMode {PACKAGE, CLASS}
 
+    // What the graph shows besides the selected nodes
+    private enum SelectionScope {SELECTION, DEPENDENCIES, DEPENDENTS}
+
     private Project currentProject;
     private final ProjectManager projectManager;
     private DependencyScanner.ScanResultContainer scanResult;
@@ -37,12 +42,47 @@ public class MainFrame extends JFrame {
     private JTree fileTree;
     private GraphVisualizer graphVisualizer;
     private VisualizationMode currentMode = VisualizationMode.CLASS;
+    private SelectionScope currentScope = SelectionScope.SELECTION;
+    private JSpinner depthSpinner;
     private JMenu recentProjectsMenu;
     private static final int MAX_RECENT_PROJECTS = 10;
+    private static final int MAX_HOTSPOTS = 50;
+    private static final int MAX_LIST_ENTRIES = 100;
+    private static final Map<String, String> METRIC_LABELS = Map.of(
+            "methods", "Methods (bytecode)",
+            "wmc", "WMC (Weighted Methods per Class)",
+            "maxComplexity", "Max Method Complexity",
+            "instructions", "Bytecode Instructions",
+            "lcom", "LCOM (Lack of Cohesion in Methods)",
+            "rfc", "RFC (Response For a Class)",
+            OoMetricsCalculator.DIT, "DIT (Depth of Inheritance Tree)",
+            OoMetricsCalculator.NOC, "NOC (Number of Children)",
+            OoMetricsCalculator.CBO, "CBO (Coupling Between Objects)");
+
+    private static final String[] ROLLUP_LABELS = {"Method complexity", "Method statements", "Class complexity (WMC)"};
 
     private JTabbedPane rightTabbedPane;
     private JTextArea metricsTextArea;
     private CodeMetricsAnalyzer codeMetricsAnalyzer;
+    private final StreamingMetricsAnalyzer streamingMetricsAnalyzer = new StreamingMetricsAnalyzer();
+    private final Set<File> pendingSourceAnalyses = new HashSet<>();
+    private MetricsEngine metricsEngine;
+    private MetricsStore metricsStore = new MetricsStore();
+    private MetricsWorker currentMetricsRun;
+    private MetricsCache metricsCache;
+    private JLabel statusLabel;
+    private JProgressBar scanProgressBar;
+    private JButton cancelScanButton;
+    private ScanWorker currentScan;
+    private boolean rescanPending;
+    private ProjectWatcher projectWatcher;
+    private JToggleButton watchToggleButton;
+    private Map<String, DefaultMutableTreeNode> discoveredPackageNodes;
+    private File baselineFile;
+    private GraphDiff baselineDiff;
+    private VisualizationMode cycleBreakMode;
+    private Set<String> cycleBreakEdges = Collections.emptySet();
+    private List<ArchitectureChecker.Violation> ruleViolations = Collections.emptyList();
 
     public MainFrame() {
         this.projectManager = new ProjectManager();
@@ -99,6 +139,32 @@ public class MainFrame extends JFrame {
         editProjectItem.addActionListener(this::onEditProject);
         editMenu.add(editProjectItem);
         menuBar.add(editMenu);
+        JMenu analyzeMenu = new JMenu("Analyze");
+        JMenuItem computeMetricsItem = new JMenuItem("Compute All Metrics");
+        computeMetricsItem.addActionListener(this::onComputeAllMetrics);
+        analyzeMenu.add(computeMetricsItem);
+        analyzeMenu.addSeparator();
+        JMenuItem saveBaselineItem = new JMenuItem("Save Baseline...");
+        saveBaselineItem.addActionListener(this::onSaveBaseline);
+        analyzeMenu.add(saveBaselineItem);
+        JMenuItem compareBaselineItem = new JMenuItem("Compare with Baseline...");
+        compareBaselineItem.addActionListener(this::onCompareWithBaseline);
+        analyzeMenu.add(compareBaselineItem);
+        JMenuItem clearBaselineItem = new JMenuItem("Clear Baseline Comparison");
+        clearBaselineItem.addActionListener(e -> {
+            baselineFile = null;
+            baselineDiff = null;
+            updateGraphFromSelection();
+        });
+        analyzeMenu.add(clearBaselineItem);
+        analyzeMenu.addSeparator();
+        JMenuItem cycleBreaksItem = new JMenuItem("Suggest Cycle Breaks");
+        cycleBreaksItem.addActionListener(this::onSuggestCycleBreaks);
+        analyzeMenu.add(cycleBreaksItem);
+        JMenuItem checkRulesItem = new JMenuItem("Check Architecture Rules");
+        checkRulesItem.addActionListener(e -> onCheckArchitectureRules());
+        analyzeMenu.add(checkRulesItem);
+        menuBar.add(analyzeMenu);
         JMenu aboutMenu = new JMenu("About");
         JMenuItem aboutItem = new JMenuItem("About DeVi4J...");
         aboutItem.addActionListener(this::onAbout);
@@ -123,6 +189,43 @@ public class MainFrame extends JFrame {
         toolBar.add(classModeButton);
         toolBar.add(packageModeButton);
 
+        toolBar.addSeparator();
+        ButtonGroup scopeGroup = new ButtonGroup();
+        JToggleButton selectionScopeButton = new JToggleButton("Selection");
+        selectionScopeButton.setActionCommand(SelectionScope.SELECTION.name());
+        selectionScopeButton.setToolTipText("Show only the selected packages or classes");
+        selectionScopeButton.setSelected(true);
+        JToggleButton dependenciesScopeButton = new JToggleButton("Dependencies");
+        dependenciesScopeButton.setActionCommand(SelectionScope.DEPENDENCIES.name());
+        dependenciesScopeButton.setToolTipText("Also show what the selection transitively depends on");
+        JToggleButton dependentsScopeButton = new JToggleButton("Dependents");
+        dependentsScopeButton.setActionCommand(SelectionScope.DEPENDENTS.name());
+        dependentsScopeButton.setToolTipText("Also show what transitively depends on the selection");
+        for (JToggleButton button : new JToggleButton[]{selectionScopeButton, dependenciesScopeButton, dependentsScopeButton}) {
+            scopeGroup.add(button);
+            toolBar.add(button);
+            button.addActionListener(e -> {
+                currentScope = SelectionScope.valueOf(e.getActionCommand());
+                updateGraphFromSelection();
+            });
+        }
+        toolBar.add(new JLabel(" Depth: "));
+        depthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 99, 1));
+        depthSpinner.setToolTipText("How many dependencies to follow from the selection; 0 follows all of them");
+        depthSpinner.setMaximumSize(depthSpinner.getPreferredSize());
+        depthSpinner.addChangeListener(e -> {
+            if (currentScope != SelectionScope.SELECTION) {
+                updateGraphFromSelection();
+            }
+        });
+        toolBar.add(depthSpinner);
+
+        toolBar.addSeparator();
+        watchToggleButton = new JToggleButton("Watch");
+        watchToggleButton.setToolTipText("Rescan automatically when jars or sources change");
+        watchToggleButton.addActionListener(this::onToggleWatch);
+        toolBar.add(watchToggleButton);
+
         // Agregar un "glue" que empuja todo lo siguiente a la derecha
         toolBar.add(Box.createHorizontalGlue());
 
@@ -156,6 +259,7 @@ public class MainFrame extends JFrame {
     private void setupMainView() {
         DefaultMutableTreeNode root = new DefaultMutableTreeNode("No project loaded");
         fileTree = new JTree(root);
+        ToolTipManager.sharedInstance().registerComponent(fileTree); // Package rollup tooltips
         fileTree.getSelectionModel().addTreeSelectionListener(this::onTreeSelectionChanged);
         JScrollPane treeScrollPane = new JScrollPane(fileTree);
 
@@ -173,6 +277,30 @@ public class MainFrame extends JFrame {
         splitPane.setDividerLocation(350);
 
         add(splitPane, BorderLayout.CENTER);
+
+        add(createStatusBar(), BorderLayout.SOUTH);
+    }
+
+    private JPanel createStatusBar() {
+        JPanel statusBar = new JPanel(new BorderLayout(6, 0));
+        statusBar.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        statusLabel = new JLabel(" ");
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+
+        JPanel scanControls = new JPanel(new BorderLayout(6, 0));
+        scanProgressBar = new JProgressBar();
+        scanProgressBar.setStringPainted(true);
+        cancelScanButton = new JButton("Cancel");
+        cancelScanButton.addActionListener(e -> onCancelScan());
+        scanControls.add(scanProgressBar, BorderLayout.CENTER);
+        scanControls.add(cancelScanButton, BorderLayout.EAST);
+        scanControls.setVisible(false);
+        statusBar.add(scanControls, BorderLayout.EAST);
+        return statusBar;
+    }
+
+    private void setScanControlsVisible(boolean visible) {
+        scanProgressBar.getParent().setVisible(visible);
     }
 
     private void onNewProject(ActionEvent e) {
@@ -222,16 +350,609 @@ public class MainFrame extends JFrame {
     }
 
     private void loadProject(Project project) {
+        // A project opened mid-scan replaces the running scan instead of queueing behind it
+        if (currentScan != null) {
+            currentScan.abort();
+        }
+        stopWatching();
+        if (currentMetricsRun != null) {
+            currentMetricsRun.abort();
+            currentMetricsRun = null;
+        }
+        metricsStore = new MetricsStore();
+        metricsCache = projectManager.openMetricsCache(project);
         this.currentProject = project;
+        this.scanResult = null;
+        baselineFile = null;
+        baselineDiff = null;
+        cycleBreakEdges = Collections.emptySet();
+        ruleViolations = Collections.emptyList();
         setTitle("DeVi4J - " + currentProject.getName());
-        DependencyScanner scanner = new DependencyScanner();
-        this.scanResult = scanner.scan(project.getJarPaths());
-        updateFileTree();
+
+        discoveredPackageNodes = new HashMap<>();
+        fileTree.setModel(new DefaultTreeModel(new DefaultMutableTreeNode(currentProject.getName())));
         graphVisualizer.updateGraph(new SingleGraph("Empty"), Collections.emptyList()); // Clear graph
+        statusLabel.setText("Scanning " + currentProject.getName() + "...");
+        startScan(false);
+        startMetricsEngine();
+        watchToggleButton.setSelected(project.isWatchEnabled());
+        if (project.isWatchEnabled()) {
+            startWatching();
+        }
+
         addProjectToRecentList(project.getProjectFilePath());
         updateRecentProjectsMenu();
     }
 
+    /**
+     * Builds the project's source model in the background; until it is ready, metrics fall
+     * back to parsing the selected class's file on its own.
+     */
+    private void startMetricsEngine() {
+        if (metricsEngine != null) {
+            metricsEngine.shutdown();
+        }
+        MetricsEngine engine = new MetricsEngine(currentProject.getSourcePaths());
+        metricsEngine = engine;
+        engine.build(() -> onMetricsEngineReady(engine));
+    }
+
+    private void onMetricsEngineReady(MetricsEngine engine) {
+        SwingUtilities.invokeLater(() -> {
+            if (metricsEngine != engine) {
+                return; // Superseded by another project or a later rebuild
+            }
+            if (engine.getFailure() != null) {
+                statusLabel.setText("Could not build source model: " + engine.getFailure().getMessage());
+            }
+            updateMetricsFromSelection();
+        });
+    }
+
+    /**
+     * Computes the metrics of every class in the project sources and lists the hotspots.
+     * Shares the status bar's progress controls with scanning, so it waits for a running scan.
+     */
+    private void onComputeAllMetrics(ActionEvent e) {
+        if (currentProject == null) {
+            JOptionPane.showMessageDialog(this, "Open a project first.", "Compute All Metrics", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if ((currentScan != null && !currentScan.isDone()) || (currentMetricsRun != null && !currentMetricsRun.isDone())) {
+            JOptionPane.showMessageDialog(this, "Wait for the running analysis to finish.", "Compute All Metrics", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        scanProgressBar.setValue(0);
+        scanProgressBar.setString(null);
+        setScanControlsVisible(true);
+        statusLabel.setText("Computing metrics...");
+
+        MetricsStore store = metricsStore;
+        MetricsWorker run = new MetricsWorker(currentProject, store, metricsCache, new MetricsWorker.Callback() {
+            @Override
+            public void metricsProgress(int completedFiles, int totalFiles, int analyzedClasses) {
+                scanProgressBar.setMaximum(Math.max(1, totalFiles));
+                scanProgressBar.setValue(completedFiles);
+                scanProgressBar.setString(completedFiles + " / " + totalFiles + " files");
+                statusLabel.setText("Computing metrics - " + analyzedClasses + " classes");
+                fileTree.repaint(); // Rollup badges grow as results stream in
+            }
+
+            @Override
+            public void metricsFinished(MetricsStatistics statistics) {
+                setScanControlsVisible(false);
+                statusLabel.setText("Metrics: " + statistics);
+                fileTree.repaint();
+                metricsTextArea.setText(formatHotspots(store.getHotspots(MAX_HOTSPOTS), statistics));
+                metricsTextArea.setCaretPosition(0);
+                rightTabbedPane.setSelectedIndex(1);
+            }
+
+            @Override
+            public void metricsFailed(Throwable error) {
+                setScanControlsVisible(false);
+                statusLabel.setText("Metrics analysis failed.");
+                JOptionPane.showMessageDialog(MainFrame.this, "Error computing metrics: " + error.getMessage(), "Metrics Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        currentMetricsRun = run;
+        run.execute();
+    }
+
+    /**
+     * Saves the current scan with the metrics computed so far, so that later scans can be
+     * compared with it. Run "Compute All Metrics" first to include every method.
+     */
+    private void onSaveBaseline(ActionEvent e) {
+        if (scanResult == null) {
+            JOptionPane.showMessageDialog(this, "Wait for the project scan to finish.", "Save Baseline", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save Baseline");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("DeVi4J Snapshots (*.snapshot)", "snapshot"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        if (!file.getName().endsWith(".snapshot")) {
+            file = new File(file.getPath() + ".snapshot");
+        }
+        // Building the method table and fingerprinting every jar and class directory takes a while
+        Project project = currentProject;
+        DependencyScanner.ScanResultContainer result = scanResult;
+        // Copied here, since the store keeps changing on the EDT
+        List<ClassMetrics> metrics = new ArrayList<>(metricsStore.getAll());
+        File baseline = file;
+        statusLabel.setText("Saving baseline " + baseline.getName() + "...");
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                projectManager.saveBaseline(project, baseline, result.getGraph(), result.getClassMetrics(), metrics);
+                return metrics.size();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    statusLabel.setText("Saved baseline with metrics of " + get() + " classes to " + baseline.getName());
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("Baseline not saved.");
+                    Throwable cause = (ex.getCause() != null) ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(MainFrame.this, "Error saving baseline: " + cause.getMessage(),
+                            "Save Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void onCompareWithBaseline(ActionEvent e) {
+        if (scanResult == null) {
+            JOptionPane.showMessageDialog(this, "Wait for the project scan to finish.", "Compare with Baseline", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Compare with Baseline");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("DeVi4J Snapshots (*.snapshot)", "snapshot"));
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            baselineFile = fileChooser.getSelectedFile();
+            compareWithBaseline();
+        }
+    }
+
+    /**
+     * Diffs the current scan and metrics against {@link #baselineFile} in the background, then
+     * shows the changes and highlights them in the graph. Rescans repeat the comparison.
+     */
+    private void compareWithBaseline() {
+        DependencyScanner.ScanResultContainer result = scanResult;
+        File file = baselineFile;
+        MetricsStore store = metricsStore;
+        statusLabel.setText("Comparing with baseline " + file.getName() + "...");
+        new SwingWorker<GraphDiff, Void>() {
+            @Override
+            protected GraphDiff doInBackground() throws IOException {
+                GraphSnapshot current = new GraphSnapshot(result.getGraph(), result.getClassMetrics(),
+                        GraphSnapshot.MethodTable.of(result.getGraph(), store.getAll()));
+                return GraphDiff.compare(projectManager.loadBaseline(file), current);
+            }
+
+            @Override
+            protected void done() {
+                if (scanResult != result || baselineFile != file) {
+                    return; // Rescanned or another baseline chosen meanwhile
+                }
+                try {
+                    baselineDiff = get();
+                    statusLabel.setText("Compared with " + file.getName() + ": " + baselineDiff);
+                    metricsTextArea.setText(formatBaselineDiff(baselineDiff, file));
+                    metricsTextArea.setCaretPosition(0);
+                    rightTabbedPane.setSelectedIndex(1);
+                    updateGraphFromSelection();
+                } catch (InterruptedException | ExecutionException ex) {
+                    baselineFile = null;
+                    statusLabel.setText("Baseline comparison failed.");
+                    JOptionPane.showMessageDialog(MainFrame.this, "Error comparing with baseline: " + ex.getMessage(),
+                            "Compare Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void onCheckArchitectureRules() {
+        if (scanResult == null) {
+            JOptionPane.showMessageDialog(this, "Wait for the project scan to finish.", "Check Architecture Rules", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (currentProject.getArchitectureRules().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "The project has no architecture rules. Add them under Edit > Edit Project...",
+                    "Check Architecture Rules", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        checkArchitectureRules(true);
+    }
+
+    /**
+     * Checks the project's architecture rules against the current scan and marks the violating
+     * dependencies in the graph.
+     *
+     * @param showReport true to also list the violations in the metrics tab
+     */
+    private void checkArchitectureRules(boolean showReport) {
+        DependencyScanner.ScanResultContainer result = scanResult;
+        List<ArchitectureRule> rules = new ArrayList<>(currentProject.getArchitectureRules());
+        new SwingWorker<List<ArchitectureChecker.Violation>, Void>() {
+            @Override
+            protected List<ArchitectureChecker.Violation> doInBackground() {
+                return new ArchitectureChecker(rules).check(result);
+            }
+
+            @Override
+            protected void done() {
+                if (scanResult != result) {
+                    return;
+                }
+                try {
+                    ruleViolations = get();
+                    statusLabel.setText(String.format("%d architecture rules, %d violations", rules.size(), ruleViolations.size()));
+                    if (showReport) {
+                        StringBuilder sb = new StringBuilder();
+                        sb.append(String.format("%d architecture rules checked, %d violations.\n", rules.size(), ruleViolations.size()));
+                        appendListSection(sb, "Package violations", ruleViolations.stream()
+                                .filter(v -> v.getRule().getLevel().equals(GraphDiff.PACKAGE_LEVEL)).collect(Collectors.toList()));
+                        appendListSection(sb, "Class violations", ruleViolations.stream()
+                                .filter(v -> v.getRule().getLevel().equals(GraphDiff.CLASS_LEVEL)).collect(Collectors.toList()));
+                        metricsTextArea.setText(sb.toString());
+                        metricsTextArea.setCaretPosition(0);
+                        rightTabbedPane.setSelectedIndex(1);
+                    }
+                    updateGraphFromSelection();
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("Architecture rule check failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @return ids of the edges breaking a rule at the given level, or lying on a forbidden chain
+     */
+    private Set<String> getViolationEdgeIds(String level) {
+        Set<String> edgeIds = new HashSet<>();
+        for (ArchitectureChecker.Violation violation : ruleViolations) {
+            if (violation.getRule().getLevel().equals(level)) {
+                edgeIds.addAll(violation.getEdgeIds());
+            }
+        }
+        return edgeIds;
+    }
+
+    /**
+     * Ranks the dependencies to remove to break every cycle at the level of the current view,
+     * then marks them in the graph.
+     */
+    private void onSuggestCycleBreaks(ActionEvent e) {
+        if (scanResult == null) {
+            JOptionPane.showMessageDialog(this, "Wait for the project scan to finish.", "Suggest Cycle Breaks", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        DependencyScanner.ScanResultContainer result = scanResult;
+        VisualizationMode mode = currentMode;
+        statusLabel.setText("Enumerating cycles...");
+        new SwingWorker<CycleBreaker.Result, Void>() {
+            @Override
+            protected CycleBreaker.Result doInBackground() {
+                DependencyGraph graph = result.getGraph();
+                CycleBreaker breaker = (mode == VisualizationMode.PACKAGE)
+                        ? new CycleBreaker(graph.getPackageDependencies(), result.getPackageCondensation(), graph.getPackageReferenceCounts())
+                        : new CycleBreaker(result.getClassDependencyIndex(), result.getClassCondensation(), null);
+                return breaker.analyze(CycleBreaker.DEFAULT_MAX_LENGTH, CycleBreaker.DEFAULT_MAX_CYCLES);
+            }
+
+            @Override
+            protected void done() {
+                if (scanResult != result) {
+                    return;
+                }
+                try {
+                    CycleBreaker.Result breaks = get();
+                    DependencyGraph graph = result.getGraph();
+                    IntFunction<String> nameOf = (mode == VisualizationMode.PACKAGE) ? graph::getPackageName : graph::getClassName;
+                    List<String> cuts = new ArrayList<>();
+                    cycleBreakEdges = new HashSet<>();
+                    for (CycleBreaker.Cut cut : breaks.getCuts()) {
+                        cuts.add(String.format("%s -> %s  (weight %d, on %d cycles)", nameOf.apply(cut.getFrom()),
+                                nameOf.apply(cut.getTo()), cut.getWeight(), cut.getCycles()));
+                        cycleBreakEdges.add(nameOf.apply(cut.getFrom()) + "->" + nameOf.apply(cut.getTo()));
+                    }
+                    cycleBreakMode = mode;
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(String.format("Removing %d %s dependencies breaks every cycle.\n", cuts.size(),
+                            (mode == VisualizationMode.PACKAGE) ? "package" : "class"));
+                    sb.append(String.format("%d elementary cycles of up to %d dependencies enumerated%s.\n",
+                            breaks.getCycles().size(), CycleBreaker.DEFAULT_MAX_LENGTH, breaks.isTruncated() ? " (limit reached)" : ""));
+                    appendListSection(sb, "Cut first", cuts);
+                    metricsTextArea.setText(sb.toString());
+                    metricsTextArea.setCaretPosition(0);
+                    rightTabbedPane.setSelectedIndex(1);
+                    statusLabel.setText(cuts.size() + " dependencies suggested to break cycles");
+                    updateGraphFromSelection();
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("Cycle analysis failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @param refresh true to rescan in place after files changed: the current tree and graph
+     *                stay visible and are updated once the scan finishes
+     */
+    private void startScan(boolean refresh) {
+        scanProgressBar.setValue(0);
+        scanProgressBar.setString(null);
+        setScanControlsVisible(true);
+
+        // A refresh updates the cycles of the scan it replaces instead of recomputing them
+        ScanWorker scan = new ScanWorker(currentProject, projectManager, refresh ? scanResult : null, new ScanWorker.Callback() {
+            @Override
+            public void scanProgress(ScanProgress progress) {
+                onScanProgress(progress, refresh);
+            }
+
+            @Override
+            public void scanFinished(DependencyScanner.ScanResultContainer result) {
+                onScanFinished(result, refresh);
+            }
+
+            @Override
+            public void scanFailed(Throwable error) {
+                setScanControlsVisible(false);
+                statusLabel.setText("Scan failed.");
+                JOptionPane.showMessageDialog(MainFrame.this, "Error scanning project: " + error.getMessage(), "Scan Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        currentScan = scan;
+        scan.execute();
+    }
+
+    private void onToggleWatch(ActionEvent e) {
+        if (currentProject == null) {
+            watchToggleButton.setSelected(false);
+            return;
+        }
+        currentProject.setWatchEnabled(watchToggleButton.isSelected());
+        try {
+            projectManager.saveProject(currentProject);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error saving project: " + ex.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
+        }
+        if (watchToggleButton.isSelected()) {
+            startWatching();
+        } else {
+            stopWatching();
+        }
+    }
+
+    private void startWatching() {
+        stopWatching();
+        try {
+            projectWatcher = new ProjectWatcher(currentProject, new ProjectWatcher.Listener() {
+                @Override
+                public void filesChanged(Set<String> jars, Set<java.nio.file.Path> sources) {
+                    SwingUtilities.invokeLater(() -> onWatchedFilesChanged(jars, sources));
+                }
+
+                @Override
+                public void watchingStopped(String reason) {
+                    SwingUtilities.invokeLater(() -> onWatchingStopped(reason));
+                }
+            });
+            projectWatcher.start();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error watching project files: " + ex.getMessage(), "Watch Error", JOptionPane.ERROR_MESSAGE);
+            watchToggleButton.setSelected(false);
+        }
+    }
+
+    private void stopWatching() {
+        if (projectWatcher != null) {
+            projectWatcher.close();
+            projectWatcher = null;
+        }
+    }
+
+    private void onWatchingStopped(String reason) {
+        if (projectWatcher == null) {
+            return;
+        }
+        // The project keeps its watch setting, so that reopening it tries again
+        stopWatching();
+        watchToggleButton.setSelected(false);
+        statusLabel.setText(reason);
+    }
+
+    private void onWatchedFilesChanged(Set<String> changedJars, Set<java.nio.file.Path> changedSources) {
+        if (projectWatcher == null) {
+            return; // Watching was switched off while the notification was queued
+        }
+        if (!changedJars.isEmpty()) {
+            if (currentScan != null && !currentScan.isDone()) {
+                rescanPending = true;
+            } else {
+                statusLabel.setText("Rescanning " + changedJars.size() + " changed jar(s)...");
+                startScan(true);
+            }
+        }
+        if (!changedSources.isEmpty()) {
+            if (metricsEngine != null) {
+                MetricsEngine engine = metricsEngine;
+                engine.update(changedSources, () -> onMetricsEngineReady(engine));
+            } else {
+                startMetricsEngine();
+            }
+            if (metricsStore.size() > 0) {
+                // Only the changed files are analyzed again; the rollups move by their classes alone
+                for (java.nio.file.Path changedSource : changedSources) {
+                    analyzeSourceFileInBackground(changedSource.toFile());
+                }
+            }
+        }
+        DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) fileTree.getLastSelectedPathComponent();
+        if (selectedNode != null && selectedNode.getUserObject() instanceof ClassNode) {
+            Optional<File> sourceFile = findSourceFileForClass((ClassNode) selectedNode.getUserObject());
+            if (sourceFile.isPresent() && changedSources.contains(sourceFile.get().toPath().toAbsolutePath().normalize())) {
+                updateMetricsFromSelection();
+            }
+        }
+    }
+
+    private void onScanProgress(ScanProgress progress, boolean refresh) {
+        scanProgressBar.setMaximum(Math.max(1, progress.getTotalPaths()));
+        scanProgressBar.setValue(progress.getCompletedPaths());
+        scanProgressBar.setString(progress.getCompletedPaths() + " / " + progress.getTotalPaths() + " jars");
+        if (progress.getCurrentPath() != null) {
+            statusLabel.setText(String.format("Scanned %s - %d classes, %.0f classes/s",
+                    new File(progress.getCurrentPath()).getName(), progress.getScannedClasses(), progress.getClassesPerSecond()));
+        }
+        if (!refresh) {
+            addDiscoveredPackages(progress.getDiscoveredPackages());
+        }
+    }
+
+    private void onScanFinished(DependencyScanner.ScanResultContainer result, boolean refresh) {
+        this.scanResult = result;
+        cycleBreakEdges = Collections.emptySet(); // Suggested for the previous scan
+        setScanControlsVisible(false);
+        statusLabel.setText("Scanned " + scanResult.getStatistics()
+                + ((scanResult.getCacheWarning() != null) ? "; " + scanResult.getCacheWarning() : ""));
+        if (refresh) {
+            // Rebuilding the tree and restoring the selection re-renders the graph and its cycles
+            TreeState treeState = captureTreeState();
+            updateFileTree();
+            restoreTreeState(treeState);
+        } else {
+            updateFileTree();
+        }
+        if (baselineFile != null) {
+            compareWithBaseline();
+        }
+        if (!currentProject.getArchitectureRules().isEmpty()) {
+            checkArchitectureRules(false);
+        }
+        if (rescanPending) {
+            rescanPending = false;
+            startScan(true);
+        }
+    }
+
+    /**
+     * Expanded and selected tree nodes, identified by package or class name so that they can
+     * be found again in a rebuilt tree.
+     */
+    private static class TreeState {
+        private final Set<String> expanded = new HashSet<>();
+        private final List<String> selected = new ArrayList<>();
+    }
+
+    private static String getTreeKey(DefaultMutableTreeNode node) {
+        Object userObject = node.getUserObject();
+        if (node.isRoot()) {
+            return "";
+        }
+        return (userObject instanceof ClassNode) ? ((ClassNode) userObject).getName() : String.valueOf(userObject);
+    }
+
+    private TreeState captureTreeState() {
+        TreeState state = new TreeState();
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) fileTree.getModel().getRoot();
+        Enumeration<TreePath> expandedPaths = fileTree.getExpandedDescendants(new TreePath(root));
+        while (expandedPaths != null && expandedPaths.hasMoreElements()) {
+            state.expanded.add(getTreeKey((DefaultMutableTreeNode) expandedPaths.nextElement().getLastPathComponent()));
+        }
+        TreePath[] selectionPaths = fileTree.getSelectionPaths();
+        if (selectionPaths != null) {
+            for (TreePath path : selectionPaths) {
+                state.selected.add(getTreeKey((DefaultMutableTreeNode) path.getLastPathComponent()));
+            }
+        }
+        return state;
+    }
+
+    private void restoreTreeState(TreeState state) {
+        Map<String, TreePath> pathsByKey = new HashMap<>();
+        Enumeration<?> nodes = ((DefaultMutableTreeNode) fileTree.getModel().getRoot()).breadthFirstEnumeration();
+        while (nodes.hasMoreElements()) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) nodes.nextElement();
+            String key = getTreeKey(node);
+            if (state.expanded.contains(key) || state.selected.contains(key)) {
+                pathsByKey.put(key, new TreePath(node.getPath()));
+            }
+        }
+        for (String key : state.expanded) {
+            if (pathsByKey.containsKey(key)) {
+                fileTree.expandPath(pathsByKey.get(key));
+            }
+        }
+        fileTree.setSelectionPaths(state.selected.stream()
+                .map(pathsByKey::get)
+                .filter(Objects::nonNull)
+                .toArray(TreePath[]::new));
+    }
+
+    private void onCancelScan() {
+        if (currentMetricsRun != null && !currentMetricsRun.isDone()) {
+            currentMetricsRun.abort();
+            currentMetricsRun = null;
+            setScanControlsVisible(false);
+            statusLabel.setText("Metrics analysis cancelled.");
+            return;
+        }
+        if (currentScan != null) {
+            currentScan.abort();
+            currentScan = null;
+        }
+        setScanControlsVisible(false);
+        statusLabel.setText("Scan cancelled. The tree shows the packages discovered so far.");
+    }
+
+    /**
+     * Adds package nodes to the partial tree shown while a scan is running. A package is
+     * placed under its parent package once that one is discovered, like in the final tree.
+     */
+    private void addDiscoveredPackages(java.util.List<String> packageNames) {
+        DefaultTreeModel model = (DefaultTreeModel) fileTree.getModel();
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
+        for (String packageName : packageNames) {
+            DefaultMutableTreeNode packageNode = new DefaultMutableTreeNode(packageName);
+            discoveredPackageNodes.put(packageName, packageNode);
+
+            // Adopt already discovered subpackages that were waiting at the root
+            for (int i = root.getChildCount() - 1; i >= 0; i--) {
+                DefaultMutableTreeNode child = (DefaultMutableTreeNode) root.getChildAt(i);
+                String childName = (String) child.getUserObject();
+                if (childName.lastIndexOf('.') == packageName.length() && childName.startsWith(packageName)) {
+                    model.removeNodeFromParent(child);
+                    insertSorted(model, packageNode, child);
+                }
+            }
+
+            int lastDot = packageName.lastIndexOf('.');
+            DefaultMutableTreeNode parentNode = (lastDot == -1) ? null : discoveredPackageNodes.get(packageName.substring(0, lastDot));
+            insertSorted(model, parentNode != null ? parentNode : root, packageNode);
+        }
+    }
+
+    private static void insertSorted(DefaultTreeModel model, DefaultMutableTreeNode parent, DefaultMutableTreeNode child) {
+        String name = (String) child.getUserObject();
+        int index = 0;
+        while (index < parent.getChildCount()
+                && ((String) ((DefaultMutableTreeNode) parent.getChildAt(index)).getUserObject()).compareTo(name) < 0) {
+            index++;
+        }
+        model.insertNodeInto(child, parent, index);
+    }
+
     private void loadProject(String projectPath) {
         try {
             Project project = projectManager.loadProject(projectPath);
@@ -248,11 +969,10 @@ public class MainFrame extends JFrame {
         DefaultMutableTreeNode root = new DefaultMutableTreeNode(currentProject.getName());
         Map<String, DefaultMutableTreeNode> packageNodes = new HashMap<>();
 
-        // Sort package names to ensure parents are created before children
-        java.util.List<String> sortedPackageNames = new ArrayList<>(scanResult.getPackageContents().keySet());
-        Collections.sort(sortedPackageNames);
-
-        for (String packageName : sortedPackageNames) {
+        // Package ids follow the sorted package names, so parents are created before children
+        DependencyGraph dependencyGraph = scanResult.getGraph();
+        for (int packageId = 0; packageId < dependencyGraph.getPackageCount(); packageId++) {
+            String packageName = dependencyGraph.getPackageName(packageId);
             // Find parent node
             int lastDot = packageName.lastIndexOf('.');
             DefaultMutableTreeNode parentNode;
@@ -274,11 +994,12 @@ public class MainFrame extends JFrame {
         }
 
         // Add class nodes to their respective packages
-        for (Map.Entry<String, Set<ClassInfo>> entry : scanResult.getPackageContents().entrySet()) {
-            String packageName = entry.getKey();
+        for (int packageId = 0; packageId < dependencyGraph.getPackageCount(); packageId++) {
+            String packageName = dependencyGraph.getPackageName(packageId);
             DefaultMutableTreeNode packageNode = packageNodes.get(packageName);
             if (packageNode != null) {
-                for (ClassInfo classInfo : entry.getValue()) {
+                for (int classId = dependencyGraph.getClassStart(packageId); classId < dependencyGraph.getClassEnd(packageId); classId++) {
+                    ClassNode classInfo = new ClassNode(classId, dependencyGraph.getClassName(classId), packageName);
                     DefaultMutableTreeNode classNode = new DefaultMutableTreeNode(classInfo);
                     packageNode.add(classNode);
                 }
@@ -290,9 +1011,21 @@ public class MainFrame extends JFrame {
             @Override
             public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus) {
                 super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
-                Object userObject = ((DefaultMutableTreeNode) value).getUserObject();
-                if (userObject instanceof ClassInfo) {
-                    setText(((ClassInfo) userObject).getSimpleName());
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) value;
+                Object userObject = node.getUserObject();
+                if (userObject instanceof ClassNode) {
+                    setText(((ClassNode) userObject).getSimpleName());
+                    setToolTipText(null);
+                } else {
+                    // Badge of the package's rolled up method complexity, subpackages included
+                    String packageName = node.isRoot() ? "" : String.valueOf(userObject);
+                    MetricSummary summary = metricsStore.getRollup().getSummary(packageName, MetricsRollup.METHOD_COMPLEXITY);
+                    if (summary != null) {
+                        setText(getText() + "  (CC p90 " + summary.getP90() + ", max " + summary.getMax() + ")");
+                        setToolTipText("<html>" + formatRollup(packageName, "<br>") + "</html>");
+                    } else {
+                        setToolTipText(null);
+                    }
                 }
                 return this;
             }
@@ -341,10 +1074,19 @@ public class MainFrame extends JFrame {
             }
         }
 
+        DependencyGraph dependencyGraph = scanResult.getGraph();
+        BitSet selectedIds = new BitSet(dependencyGraph.getPackageCount());
+        for (String pkgName : selectedPackages) {
+            selectedIds.set(dependencyGraph.findPackage(pkgName));
+        }
+        BitSet relatedIds = findRelated(scanResult::getPackageReachability, selectedIds);
+        selectedIds.or(relatedIds);
+        relatedIds.stream().forEach(pkg -> selectedPackages.add(dependencyGraph.getPackageName(pkg)));
+
         for (String pkgName : selectedPackages) {
             org.graphstream.graph.Node node = graph.addNode(pkgName);
             node.setAttribute("ui.label", pkgName);
-            node.setAttribute("ui.class", "package");
+            node.setAttribute("ui.class", relatedIds.get(dependencyGraph.findPackage(pkgName)) ? "related" : "package");
         }
 
         for (String origin : selectedPackages) {
@@ -355,129 +1097,302 @@ public class MainFrame extends JFrame {
             }
         }
 
-        CycleDetector cycleDetector = new CycleDetector(allDeps);
-        java.util.List<java.util.List<String>> cycles = cycleDetector.findCycles(selectedPackages);
+        java.util.List<java.util.List<String>> cycles = findSelectedCycles(scanResult.getPackageCondensation(), selectedIds,
+                dependencyGraph::getPackageName);
 
+        if (baselineDiff != null) {
+            graphVisualizer.highlightChanges(graph, baselineDiff, GraphDiff.PACKAGE_LEVEL);
+        }
+        graphVisualizer.highlightViolations(graph, getViolationEdgeIds(GraphDiff.PACKAGE_LEVEL));
         graphVisualizer.applyHeuristicLayout(graph);
-        graphVisualizer.updateGraph(graph, cycles);
+        graphVisualizer.updateGraph(graph, cycles, (cycleBreakMode == currentMode) ? cycleBreakEdges : Collections.emptySet());
     }
 
     private void visualizeClasses(TreePath[] selectionPaths) {
         Graph graph = graphVisualizer.createStyledGraph("ClassGraph");
-        Set<ClassInfo> selectedClasses = new HashSet<>();
-
-        // Helper function to get the correct simple name, especially for anonymous classes
-        java.util.function.Function<ClassInfo, String> getCorrectSimpleName = ci -> {
-            String fqcn = ci.getName();
-            int lastDot = fqcn.lastIndexOf('.');
-            return (lastDot == -1) ? fqcn : fqcn.substring(lastDot + 1);
-        };
+        DependencyGraph dependencyGraph = scanResult.getGraph();
+        BitSet selectedClasses = new BitSet(dependencyGraph.getClassCount());
 
         for (TreePath path : selectionPaths) {
             DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) path.getLastPathComponent();
             if (selectedNode.isRoot()) {
-                scanResult.getPackageContents().values().forEach(selectedClasses::addAll);
+                selectedClasses.set(0, dependencyGraph.getClassCount());
                 break;
             }
             Object userObject = selectedNode.getUserObject();
             if (userObject instanceof String) { // Package selected
                 String selectedPackageName = (String) userObject;
-                for (Map.Entry<String, Set<ClassInfo>> entry : scanResult.getPackageContents().entrySet()) {
-                    if (entry.getKey().equals(selectedPackageName) || entry.getKey().startsWith(selectedPackageName + ".")) {
-                        selectedClasses.addAll(entry.getValue());
+                for (int packageId = 0; packageId < dependencyGraph.getPackageCount(); packageId++) {
+                    String packageName = dependencyGraph.getPackageName(packageId);
+                    if (packageName.equals(selectedPackageName) || packageName.startsWith(selectedPackageName + ".")) {
+                        selectedClasses.set(dependencyGraph.getClassStart(packageId), dependencyGraph.getClassEnd(packageId));
                     }
                 }
-            } else if (userObject instanceof ClassInfo) { // Class selected
-                selectedClasses.add((ClassInfo) userObject);
+            } else if (userObject instanceof ClassNode) { // Class selected
+                selectedClasses.set(((ClassNode) userObject).getId());
             }
         }
 
-        Map<String, ClassInfo> classMap = selectedClasses.stream().collect(Collectors.toMap(ClassInfo::getName, c -> c));
-
-        // Create nodes with correct names
-        for(ClassInfo ci : selectedClasses) {
-            String nodeName = getCorrectSimpleName.apply(ci);
-            org.graphstream.graph.Node node = graph.addNode(nodeName);
-            node.setAttribute("ui.label", nodeName);
-        }
-
-        // Create edges with filtering
-        for (ClassInfo origin : selectedClasses) {
-            String originNodeName = getCorrectSimpleName.apply(origin);
+        BitSet relatedClasses = findRelated(scanResult::getClassReachability, selectedClasses);
+        selectedClasses.or(relatedClasses);
 
-            for (ClassInfo target : origin.getClassDependencies()) {
-                if (classMap.containsKey(target.getName())) {
-                    String targetNodeName = getCorrectSimpleName.apply(target);
-
-                    // Skip self-references
-                    if (originNodeName.equals(targetNodeName)) {
-                        continue;
-                    }
-
-                    // **** FIX: Filter out dependency from inner class to its outer class ****
-                    int dollarIndex = originNodeName.lastIndexOf('$');
-                    if (dollarIndex != -1) {
-                        String outerClassName = originNodeName.substring(0, dollarIndex);
-                        if (outerClassName.equals(targetNodeName)) {
-                            continue; // Skip this dependency
-                        }
-                    }
+        // Nodes are keyed by fully qualified name so that a.Foo and b.Foo stay distinct
+        selectedClasses.stream().forEach(classId -> {
+            String className = dependencyGraph.getClassName(classId);
+            org.graphstream.graph.Node node = graph.addNode(className);
+            node.setAttribute("ui.label", getDisplayName(className));
+            if (relatedClasses.get(classId)) {
+                node.setAttribute("ui.class", "related");
+            }
+        });
 
-                    if(graph.getNode(originNodeName) != null && graph.getNode(targetNodeName) != null) {
-                        graph.addEdge(originNodeName + "->" + targetNodeName, originNodeName, targetNodeName, true);
-                    }
+        // The shared index already excludes edges from inner classes to their outer class
+        DependencyGraph.Adjacency adjacency = scanResult.getClassDependencyIndex();
+        selectedClasses.stream().forEach(origin -> {
+            String originName = dependencyGraph.getClassName(origin);
+            for (int i = 0; i < adjacency.degree(origin); i++) {
+                int target = adjacency.target(origin, i);
+                if (selectedClasses.get(target)) {
+                    String targetName = dependencyGraph.getClassName(target);
+                    graph.addEdge(originName + "->" + targetName, originName, targetName, true);
                 }
             }
+        });
+
+        java.util.List<java.util.List<String>> cycles = findSelectedCycles(scanResult.getClassCondensation(), selectedClasses,
+                dependencyGraph::getClassName);
+
+        if (baselineDiff != null) {
+            graphVisualizer.highlightChanges(graph, baselineDiff, GraphDiff.CLASS_LEVEL);
         }
+        graphVisualizer.highlightViolations(graph, getViolationEdgeIds(GraphDiff.CLASS_LEVEL));
+        graphVisualizer.applyHeuristicLayout(graph);
+        graphVisualizer.updateGraph(graph, cycles, (cycleBreakMode == currentMode) ? cycleBreakEdges : Collections.emptySet());
+    }
 
-        // Create a map for cycle detection using the correct simple names
-        Map<String, Set<String>> classDependencies = new HashMap<>();
-        for (ClassInfo origin : selectedClasses) {
-            String originName = getCorrectSimpleName.apply(origin);
-            Set<String> deps = origin.getClassDependencies().stream()
-                    .filter(c -> classMap.containsKey(c.getName()))
-                    .map(getCorrectSimpleName)
-                    .collect(Collectors.toSet());
-            classDependencies.put(originName, deps);
+    /**
+     * @return the nodes the current scope adds to the selection: what it depends on, or what
+     *         depends on it, up to the chosen depth; the index is only looked up if needed
+     */
+    private BitSet findRelated(Supplier<ReachabilityIndex> index, BitSet selection) {
+        int depth = (Integer) depthSpinner.getValue();
+        int maxDepth = (depth == 0) ? ReachabilityIndex.UNLIMITED : depth;
+        BitSet related;
+        switch (currentScope) {
+            case DEPENDENCIES:
+                related = index.get().getDependencies(selection, maxDepth);
+                break;
+            case DEPENDENTS:
+                related = index.get().getDependents(selection, maxDepth);
+                break;
+            default:
+                return new BitSet();
         }
-        CycleDetector cycleDetector = new CycleDetector(classDependencies);
-        java.util.List<java.util.List<String>> cycles = cycleDetector.findCycles();
+        related.andNot(selection);
+        return related;
+    }
 
-        graphVisualizer.applyHeuristicLayout(graph);
-        graphVisualizer.updateGraph(graph, cycles);
+    /**
+     * Groups the selected nodes that lie on a cycle by their precomputed component, in time
+     * proportional to the selection. Members outside the selection are not drawn and left out.
+     */
+    private static List<List<String>> findSelectedCycles(Condensation condensation, BitSet selection, IntFunction<String> nameOf) {
+        Map<Integer, List<String>> cycles = new LinkedHashMap<>();
+        selection.stream().forEach(node -> {
+            int component = condensation.getComponent(node);
+            if (condensation.isCyclic(component)) {
+                cycles.computeIfAbsent(component, c -> new ArrayList<>()).add(nameOf.apply(node));
+            }
+        });
+        return new ArrayList<>(cycles.values());
+    }
+
+    // Class name without its package, keeping the outer class for nested and anonymous classes
+    private static String getDisplayName(String className) {
+        int lastDot = className.lastIndexOf('.');
+        return (lastDot == -1) ? className : className.substring(lastDot + 1);
     }
 
     private void updateMetricsFromSelection() {
         DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) fileTree.getLastSelectedPathComponent();
 
-        if (selectedNode == null || !(selectedNode.getUserObject() instanceof ClassInfo)) {
+        if (selectedNode == null) {
             metricsTextArea.setText("");
             return;
         }
+        if (!(selectedNode.getUserObject() instanceof ClassNode)) {
+            String packageName = selectedNode.isRoot() ? "" : String.valueOf(selectedNode.getUserObject());
+            metricsTextArea.setText(formatRollup(packageName, "\n"));
+            metricsTextArea.setCaretPosition(0);
+            return;
+        }
 
-        ClassInfo classInfo = (ClassInfo) selectedNode.getUserObject();
-        Optional<File> sourceFile = findSourceFileForClass(classInfo);
-
-        if (sourceFile.isPresent()) {
-            ClassMetrics metrics = codeMetricsAnalyzer.analyze(sourceFile.get().getAbsolutePath());
+        ClassNode classInfo = (ClassNode) selectedNode.getUserObject();
+        ClassMetrics storedMetrics = metricsStore.get(classInfo.getName());
+        if (storedMetrics != null) {
+            metricsTextArea.setText(formatMetrics(storedMetrics));
+            metricsTextArea.setCaretPosition(0);
+            return;
+        }
+        if (metricsEngine != null && metricsEngine.isReady()) {
+            ClassMetrics metrics = metricsEngine.getClassMetrics(classInfo.getName());
             if (metrics != null) {
                 metricsTextArea.setText(formatMetrics(metrics));
                 metricsTextArea.setCaretPosition(0);
-                //rightTabbedPane.setSelectedIndex(1); // Switch to metrics tab
-            } else {
-                metricsTextArea.setText("Could not analyze file: ".concat(sourceFile.get().getName()));
+                return;
             }
+        }
+        Optional<File> sourceFile = findSourceFileForClass(classInfo);
+
+        List<ClassMetrics> fileMetrics = null;
+        if (sourceFile.isPresent()) {
+            // Show a quick estimate now; the cached or precise metrics replace it once they are read
+            fileMetrics = estimateSourceMetrics(sourceFile.get());
+            analyzeSourceFileInBackground(sourceFile.get());
+        }
+        ClassMetrics sourceMetrics = (fileMetrics != null) ? findClassMetrics(fileMetrics, classInfo.getName()) : null;
+        if (sourceMetrics != null) {
+            metricsTextArea.setText("Approximate metrics, precise analysis running...\n\n" + formatMetrics(sourceMetrics));
+            metricsTextArea.setCaretPosition(0);
+            //rightTabbedPane.setSelectedIndex(1); // Switch to metrics tab
         } else {
-            metricsTextArea.setText("Source file not found for class: ".concat(classInfo.getSimpleName()));
+            // Jar-only classes still get metrics, read from their class file
+            metricsTextArea.setText("Reading bytecode of " + classInfo.getSimpleName() + "...");
+            analyzeBytecodeInBackground(classInfo);
+        }
+    }
+
+    private void analyzeBytecodeInBackground(ClassNode classInfo) {
+        // Only the jar the scan read the class from is opened
+        String origin = scanResult.getClassOrigin(classInfo.getId());
+        new SwingWorker<ClassMetrics, Void>() {
+            @Override
+            protected ClassMetrics doInBackground() throws IOException {
+                return (origin != null)
+                        ? new BytecodeMetricsAnalyzer().analyze(Collections.singletonList(origin), classInfo.getName())
+                        : null;
+            }
+
+            @Override
+            protected void done() {
+                DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) fileTree.getLastSelectedPathComponent();
+                if (selectedNode == null || selectedNode.getUserObject() != classInfo) {
+                    return; // The selection moved on meanwhile
+                }
+                ClassMetrics metrics;
+                try {
+                    metrics = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    metrics = null;
+                }
+                if (metrics != null) {
+                    metricsTextArea.setText("Computed from bytecode (no source file found)\n\n" + formatMetrics(metrics));
+                    metricsTextArea.setCaretPosition(0);
+                } else {
+                    metricsTextArea.setText("Source file not found for class: ".concat(classInfo.getSimpleName()));
+                }
+            }
+        }.execute();
+    }
+
+    private List<ClassMetrics> estimateSourceMetrics(File sourceFile) {
+        try {
+            return streamingMetricsAnalyzer.analyzeFile(sourceFile.toPath());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a file with Spoon off the event thread, caches its metrics and replaces those of
+     * its classes in the metrics store. One parse covers every type in the file, so nested
+     * classes of an analyzed file are served from the cache.
+     */
+    private void analyzeSourceFileInBackground(File sourceFile) {
+        if (!pendingSourceAnalyses.add(sourceFile)) {
+            return;
+        }
+        MetricsCache cache = metricsCache;
+        new SwingWorker<List<ClassMetrics>, Void>() {
+            @Override
+            protected List<ClassMetrics> doInBackground() throws IOException {
+                if (!sourceFile.isFile()) {
+                    return Collections.emptyList(); // Deleted, so its classes are dropped
+                }
+                // A file whose current content was analyzed before is not parsed again
+                String cacheKey = cache.key(sourceFile.toPath());
+                List<ClassMetrics> cachedMetrics = cache.get(cacheKey);
+                if (cachedMetrics != null) {
+                    return cachedMetrics;
+                }
+                List<ClassMetrics> fileMetrics = codeMetricsAnalyzer.analyzeFile(sourceFile.getAbsolutePath());
+                if (fileMetrics != null) {
+                    cache.put(cacheKey, fileMetrics);
+                }
+                return fileMetrics;
+            }
+
+            @Override
+            protected void done() {
+                pendingSourceAnalyses.remove(sourceFile);
+                try {
+                    // Without a result the estimate stays, rather than retrying on every selection
+                    List<ClassMetrics> fileMetrics = get();
+                    if (fileMetrics == null || metricsCache != cache) {
+                        return;
+                    }
+                    String topLevelClassName = getTopLevelClassName(sourceFile);
+                    if (topLevelClassName != null) {
+                        metricsStore.replaceFile(topLevelClassName, fileMetrics);
+                        fileTree.repaint();
+                    }
+                    updateMetricsFromSelection();
+                } catch (InterruptedException | ExecutionException e) {
+                    statusLabel.setText("Could not analyze " + sourceFile.getName() + ": " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @return the metrics of the type with binary name {@code className}, or null if the file
+     *         does not declare it
+     */
+    private static ClassMetrics findClassMetrics(List<ClassMetrics> fileMetrics, String className) {
+        return fileMetrics.stream()
+                .filter(metrics -> metrics.getFullyQualifiedName().equals(className))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @return the top-level class name that a source file's path stands for, or null if the
+     *         file is outside the project's source roots
+     */
+    private String getTopLevelClassName(File sourceFile) {
+        java.nio.file.Path file = sourceFile.toPath().toAbsolutePath().normalize();
+        for (String sourceRootPath : currentProject.getSourcePaths()) {
+            java.nio.file.Path sourceRoot = new File(sourceRootPath).toPath().toAbsolutePath().normalize();
+            String relativePath = sourceRoot.relativize(file).toString();
+            if (file.startsWith(sourceRoot) && relativePath.endsWith(".java")) {
+                return relativePath.substring(0, relativePath.length() - ".java".length()).replace(File.separatorChar, '.');
+            }
         }
+        return null;
     }
 
-    private Optional<File> findSourceFileForClass(ClassInfo classInfo) {
+    private Optional<File> findSourceFileForClass(ClassNode classInfo) {
         if (currentProject == null || currentProject.getSourcePaths() == null) {
             return Optional.empty();
         }
 
-        String relativePath = classInfo.getName().replace('.', File.separatorChar) + ".java";
+        // Nested, local and anonymous classes live in the file of their top-level class
+        String topLevelName = classInfo.getName();
+        int dollarIndex = topLevelName.indexOf('$', topLevelName.lastIndexOf('.') + 1);
+        if (dollarIndex > 0) {
+            topLevelName = topLevelName.substring(0, dollarIndex);
+        }
+        String relativePath = topLevelName.replace('.', File.separatorChar) + ".java";
 
         for (String sourceRootPath : currentProject.getSourcePaths()) {
             File sourceFile = new File(sourceRootPath, relativePath);
@@ -491,6 +1406,21 @@ public class MainFrame extends JFrame {
     private String formatMetrics(ClassMetrics metrics) {
         StringBuilder sb = new StringBuilder();
         sb.append("Metrics for class: ").append(metrics.getFullyQualifiedName()).append("\n\n");
+        int classId = (scanResult != null) ? scanResult.getGraph().findClass(metrics.getFullyQualifiedName()) : -1;
+        if (classId != -1) {
+            DependencyGraph dependencyGraph = scanResult.getGraph();
+            sb.append("----------------------------------------\n");
+            sb.append("CLASS\n");
+            sb.append("----------------------------------------\n");
+            sb.append(String.format("Methods: %d\n", metrics.getMethodMetrics().size()));
+            sb.append(String.format("Fan-in (dependent classes): %d\n", dependencyGraph.getClassDependents().degree(classId)));
+            sb.append(String.format("Fan-out (dependencies): %d\n", dependencyGraph.getClassDependencies().degree(classId)));
+            for (Map.Entry<String, int[]> column : scanResult.getClassMetrics().entrySet()) {
+                sb.append(String.format("%s: %d\n", METRIC_LABELS.getOrDefault(column.getKey(), column.getKey()),
+                        column.getValue()[classId]));
+            }
+            sb.append("\n");
+        }
         sb.append("----------------------------------------\n");
         sb.append("METHODS\n");
         sb.append("----------------------------------------\n");
@@ -503,12 +1433,79 @@ public class MainFrame extends JFrame {
                 sb.append(String.format("  - Cyclomatic Complexity: %d\n", method.getCyclomaticComplexity()));
                 sb.append(String.format("  - Lines of Code (Statements): %d\n", method.getLineCount()));
                 sb.append(String.format("  - Parameters: %d\n", method.getParameterCount()));
+                if (method.getInstructionCount() > 0) {
+                    sb.append(String.format("  - Bytecode Instructions: %d\n", method.getInstructionCount()));
+                }
                 sb.append("\n");
             }
         }
         return sb.toString();
     }
 
+    /**
+     * @param lineSeparator "\n" for the metrics panel, "<br>" for tooltips
+     */
+    private String formatRollup(String packageName, String lineSeparator) {
+        MetricsRollup rollup = metricsStore.getRollup();
+        MetricSummary classSummary = rollup.getSummary(packageName, MetricsRollup.CLASS_COMPLEXITY);
+        if (classSummary == null) {
+            return "No metrics computed for " + (packageName.isEmpty() ? "this project" : packageName) + " yet.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Metrics for ").append(packageName.isEmpty() ? "the project" : packageName + " and its subpackages")
+                .append(" (").append(classSummary.getCount()).append(" classes analyzed)").append(lineSeparator);
+        for (int metric = 0; metric < MetricsRollup.METRIC_NAMES.length; metric++) {
+            sb.append(lineSeparator).append(ROLLUP_LABELS[metric]).append(": ")
+                    .append(rollup.getSummary(packageName, metric));
+        }
+        return sb.toString();
+    }
+
+    private String formatHotspots(List<ClassMetrics> hotspots, MetricsStatistics statistics) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Hotspots (").append(statistics).append(")\n\n");
+        sb.append(String.format("%-8s %-8s %-8s %s\n", "Max CC", "Total CC", "Methods", "Class"));
+        sb.append("----------------------------------------\n");
+        for (ClassMetrics metrics : hotspots) {
+            sb.append(String.format("%-8d %-8d %-8d %s\n", metrics.getMaxCyclomaticComplexity(),
+                    metrics.getTotalCyclomaticComplexity(), metrics.getMethodMetrics().size(), metrics.getFullyQualifiedName()));
+        }
+        return sb.toString();
+    }
+
+    private String formatBaselineDiff(GraphDiff diff, File file) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Changes since baseline ").append(file.getName()).append("\n").append(diff).append("\n");
+        appendListSection(sb, "Complexity regressions", diff.getRegressions().stream()
+                .map(r -> String.format("%s.%s: %d -> %d", r.getClassName(), r.getMethodName(),
+                        r.getBaselineComplexity(), r.getComplexity()))
+                .collect(Collectors.toList()));
+        appendListSection(sb, "New package cycles", diff.getNewCycles(GraphDiff.PACKAGE_LEVEL));
+        appendListSection(sb, "New class cycles", diff.getNewCycles(GraphDiff.CLASS_LEVEL));
+        appendListSection(sb, "Added packages", diff.getAddedPackages());
+        appendListSection(sb, "Removed packages", diff.getRemovedPackages());
+        appendListSection(sb, "Added package dependencies", diff.getAddedDependencies(GraphDiff.PACKAGE_LEVEL));
+        appendListSection(sb, "Removed package dependencies", diff.getRemovedDependencies(GraphDiff.PACKAGE_LEVEL));
+        appendListSection(sb, "Added classes", diff.getAddedClasses());
+        appendListSection(sb, "Removed classes", diff.getRemovedClasses());
+        appendListSection(sb, "Added class dependencies", diff.getAddedDependencies(GraphDiff.CLASS_LEVEL));
+        appendListSection(sb, "Removed class dependencies", diff.getRemovedDependencies(GraphDiff.CLASS_LEVEL));
+        return sb.toString();
+    }
+
+    private static void appendListSection(StringBuilder sb, String title, List<?> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        sb.append("\n").append(title).append(" (").append(entries.size()).append(")\n");
+        for (Object entry : entries.subList(0, Math.min(MAX_LIST_ENTRIES, entries.size()))) {
+            sb.append("  ").append(entry).append("\n");
+        }
+        if (entries.size() > MAX_LIST_ENTRIES) {
+            sb.append("  ... and ").append(entries.size() - MAX_LIST_ENTRIES).append(" more\n");
+        }
+    }
+
     private List<String> getRecentProjects() {
         Preferences prefs = Preferences.userNodeForPackage(MainFrame.class);
         return IntStream.range(0, MAX_RECENT_PROJECTS)
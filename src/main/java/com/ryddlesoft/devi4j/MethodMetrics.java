@@ -5,6 +5,8 @@ public class MethodMetrics {
     private int cyclomaticComplexity;
     private int parameterCount;
     private int lineCount;
+    private int instructionCount;
+    private String parameterTypes;
 
     public MethodMetrics(String methodName) {
         this.methodName = methodName;
@@ -42,4 +44,27 @@ public class MethodMetrics {
     public void setLineCount(int lineCount) {
         this.lineCount = lineCount;
     }
+
+    /**
+     * @return bytecode instructions; only known for metrics computed from class files
+     */
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    public void setInstructionCount(int instructionCount) {
+        this.instructionCount = instructionCount;
+    }
+
+    /**
+     * @return the erased parameter types as binary names separated by commas, e.g.
+     *         {@code int,java.lang.String[]}, or null if unknown, as for lambdas and estimates
+     */
+    public String getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public void setParameterTypes(String parameterTypes) {
+        this.parameterTypes = parameterTypes;
+    }
 }
@@ -0,0 +1,55 @@
+package com.ryddlesoft.devi4j;
+
+/**
+ * Count, total and distribution of one metric over a set of methods or classes.
+ */
+public class MetricSummary {
+    private final long count;
+    private final long sum;
+    private final int p50;
+    private final int p90;
+    private final int p99;
+    private final int max;
+
+    public MetricSummary(long count, long sum, int p50, int p90, int p99, int max) {
+        this.count = count;
+        this.sum = sum;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return (count == 0) ? 0 : (double) sum / count;
+    }
+
+    public int getP50() {
+        return p50;
+    }
+
+    public int getP90() {
+        return p90;
+    }
+
+    public int getP99() {
+        return p99;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, sum=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d", count, sum, getMean(), p50, p90, p99, max);
+    }
+}
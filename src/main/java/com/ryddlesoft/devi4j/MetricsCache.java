@@ -0,0 +1,131 @@
+package com.ryddlesoft.devi4j;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two-tier cache of source file metrics keyed by the file's content hash and the
+ * {@link CodeMetricsAnalyzer#VERSION analyzer version}: an in-memory LRU tier in front of one
+ * JSON file per key on disk. An unchanged file is never parsed again, not even after a restart;
+ * a changed file or a new analyzer version simply misses.
+ * <p>
+ * Each entry holds the metrics of every type declared in the file. Without a directory the
+ * cache only keeps the memory tier. Safe for concurrent use.
+ */
+public class MetricsCache {
+
+    public static final int DEFAULT_MEMORY_ENTRIES = 4096;
+
+    private static final Type ENTRY_TYPE = new TypeToken<List<ClassMetrics>>() { }.getType();
+
+    private final File directory;
+    private final Map<String, List<ClassMetrics>> memory;
+    private final Gson gson = new Gson();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public MetricsCache(File directory, int memoryEntries) {
+        this.directory = directory;
+        this.memory = new LinkedHashMap<String, List<ClassMetrics>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<ClassMetrics>> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cache key of a source file in its current state
+     */
+    public String key(Path sourceFile) throws IOException {
+        return ScanIndex.contentHash(sourceFile.toFile()) + "-v" + CodeMetricsAnalyzer.VERSION;
+    }
+
+    /**
+     * @return the cached metrics, or null on a miss
+     */
+    public List<ClassMetrics> get(String key) {
+        List<ClassMetrics> metrics;
+        synchronized (memory) {
+            metrics = memory.get(key);
+        }
+        if (metrics == null) {
+            metrics = readEntry(key);
+            if (metrics != null) {
+                synchronized (memory) {
+                    memory.put(key, metrics);
+                }
+            }
+        }
+        (metrics != null ? hits : misses).incrementAndGet();
+        return metrics;
+    }
+
+    public void put(String key, List<ClassMetrics> metrics) {
+        synchronized (memory) {
+            memory.put(key, metrics);
+        }
+        writeEntry(key, metrics);
+    }
+
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    private File entryFile(String key) {
+        // Fan out over subdirectories so no single directory grows to every file of a large project
+        return new File(new File(directory, key.substring(0, 2)), key + ".json");
+    }
+
+    private List<ClassMetrics> readEntry(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = entryFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, ENTRY_TYPE);
+        } catch (IOException | JsonParseException e) {
+            file.delete(); // Recomputed on the next put
+            return null;
+        }
+    }
+
+    private void writeEntry(String key, List<ClassMetrics> metrics) {
+        if (directory == null) {
+            return;
+        }
+        File file = entryFile(key);
+        File tempFile = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(metrics, ENTRY_TYPE, writer);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tempFile.delete(); // The memory tier still has it; only a restart pays for this
+        }
+    }
+}
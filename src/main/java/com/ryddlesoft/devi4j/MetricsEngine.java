@@ -0,0 +1,228 @@
+package com.ryddlesoft.devi4j;
+
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtType;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Project-level metrics: builds a single Spoon model over all source paths of a project in
+ * the background and answers per-class queries from it. Types are resolved across files, and
+ * the metrics of each class are computed once and then kept.
+ * <p>
+ * The model is built and updated on one background thread, so builds never overlap. Changed
+ * files only replace the types they declare, parsed on their own like
+ * {@link CodeMetricsAnalyzer#analyzeFile(String)} does.
+ */
+public class MetricsEngine {
+
+    private final List<String> sourcePaths;
+    private final CodeMetricsAnalyzer analyzer = new CodeMetricsAnalyzer();
+    private final Map<String, ClassMetrics> classMetrics = new ConcurrentHashMap<>();
+    private volatile Map<String, CtType<?>> types;
+    private volatile Throwable failure;
+    // Names of the types each source file declares; only touched on the model thread
+    private final Map<Path, List<String>> typeNamesByFile = new HashMap<>();
+    private final Set<Path> pendingChanges = new LinkedHashSet<>();
+    private final ExecutorService modelThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "devi4j-model");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsEngine(List<String> sourcePaths) {
+        this.sourcePaths = (sourcePaths != null) ? new ArrayList<>(sourcePaths) : Collections.emptyList();
+    }
+
+    /**
+     * Builds the model on a background thread and runs {@code onReady} on that thread once
+     * queries can be answered, or once building failed.
+     */
+    public void build(Runnable onReady) {
+        modelThread.execute(() -> {
+            try {
+                buildModel();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            onReady.run();
+        });
+    }
+
+    /**
+     * Parses the changed files again on the background thread and replaces the types they
+     * declared, after any build or update still in progress. Changes reported before that
+     * update started are merged into it, and {@code onReady} then runs once for all of them.
+     */
+    public void update(Collection<Path> changedFiles, Runnable onReady) {
+        synchronized (pendingChanges) {
+            boolean scheduled = !pendingChanges.isEmpty();
+            for (Path changedFile : changedFiles) {
+                pendingChanges.add(changedFile.toAbsolutePath().normalize());
+            }
+            if (scheduled) {
+                return;
+            }
+        }
+        modelThread.execute(() -> {
+            List<Path> files;
+            synchronized (pendingChanges) {
+                files = new ArrayList<>(pendingChanges);
+                pendingChanges.clear();
+            }
+            try {
+                if (types == null) {
+                    buildModel(); // The first build failed; there is nothing to update
+                } else {
+                    updateModel(files);
+                }
+                failure = null;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            onReady.run();
+        });
+    }
+
+    /**
+     * Stops building; queries keep answering from the model built so far.
+     */
+    public void shutdown() {
+        modelThread.shutdownNow();
+    }
+
+    /**
+     * Builds the model on the calling thread.
+     */
+    public void buildModel() {
+        Launcher launcher = CodeMetricsAnalyzer.createLauncher();
+        boolean hasSources = false;
+        for (String sourcePath : sourcePaths) {
+            if (new File(sourcePath).exists()) {
+                launcher.addInputResource(sourcePath);
+                hasSources = true;
+            }
+        }
+        Map<String, CtType<?>> typesByName = new HashMap<>();
+        typeNamesByFile.clear();
+        if (hasSources) {
+            addTypes(launcher.buildModel(), typesByName);
+        }
+        types = typesByName;
+    }
+
+    private void updateModel(List<Path> files) {
+        Launcher launcher = CodeMetricsAnalyzer.createLauncher();
+        boolean hasSources = false;
+        for (Path file : files) {
+            if (Files.isRegularFile(file)) {
+                launcher.addInputResource(file.toString());
+                hasSources = true;
+            }
+        }
+        // Parsed before anything is dropped, so a file that fails to parse keeps its old types
+        CtModel model = hasSources ? launcher.buildModel() : null;
+        Map<String, CtType<?>> typesByName = new HashMap<>(types);
+        List<String> replacedNames = new ArrayList<>();
+        for (Path file : files) {
+            List<String> oldNames = typeNamesByFile.remove(file);
+            if (oldNames != null) {
+                for (String oldName : oldNames) {
+                    typesByName.remove(oldName);
+                    replacedNames.add(oldName);
+                }
+            }
+        }
+        if (model != null) {
+            replacedNames.addAll(addTypes(model, typesByName));
+        }
+        // Published before the metrics are dropped; see getClassMetrics
+        types = typesByName;
+        for (String replacedName : replacedNames) {
+            classMetrics.remove(replacedName);
+        }
+    }
+
+    /**
+     * @return the names of the added types
+     */
+    private List<String> addTypes(CtModel model, Map<String, CtType<?>> typesByName) {
+        List<String> added = new ArrayList<>();
+        for (CtType<?> topLevelType : model.getAllTypes()) {
+            File file = topLevelType.getPosition().isValidPosition() ? topLevelType.getPosition().getFile() : null;
+            List<String> fileTypeNames = (file != null)
+                    ? typeNamesByFile.computeIfAbsent(file.toPath().toAbsolutePath().normalize(), f -> new ArrayList<>())
+                    : new ArrayList<>();
+            for (CtType<?> type : CodeMetricsAnalyzer.getAllTypes(topLevelType)) {
+                typesByName.put(type.getQualifiedName(), type);
+                fileTypeNames.add(type.getQualifiedName());
+                added.add(type.getQualifiedName());
+            }
+        }
+        return added;
+    }
+
+    public boolean isReady() {
+        return types != null;
+    }
+
+    /**
+     * @return the error that stopped the model from being built, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the type declared in the project sources under this binary name
+     *         ({@code Outer$Inner} for nested types), or null if unknown or not built yet
+     */
+    public CtType<?> getType(String className) {
+        Map<String, CtType<?>> currentTypes = types;
+        return (currentTypes != null) ? currentTypes.get(className) : null;
+    }
+
+    public int getTypeCount() {
+        Map<String, CtType<?>> currentTypes = types;
+        return (currentTypes != null) ? currentTypes.size() : 0;
+    }
+
+    /**
+     * @return the metrics of a class, or null if it is not part of the built model
+     */
+    public ClassMetrics getClassMetrics(String className) {
+        while (true) {
+            ClassMetrics metrics = classMetrics.get(className);
+            if (metrics != null) {
+                return metrics;
+            }
+            Map<String, CtType<?>> currentTypes = types;
+            CtType<?> type = (currentTypes != null) ? currentTypes.get(className) : null;
+            if (type == null) {
+                return null;
+            }
+            metrics = analyzer.analyze(type);
+            classMetrics.put(className, metrics);
+            // An update publishes its types before dropping metrics, so if the types are still
+            // the ones analyzed, any later update drops these metrics itself
+            if (types == currentTypes) {
+                return metrics;
+            }
+            classMetrics.remove(className, metrics); // Possibly of a replaced type; analyze again
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolls class and method metrics up the package hierarchy. Every package keeps one
+ * {@link IntHistogram} per metric over its own classes and those of all its subpackages, and the
+ * root package {@code ""} covers the whole project. Replacing the metrics of a class only moves
+ * that class's values along the path from its package to the root, so rollups stay current while
+ * a batch analysis streams in or single files are re-analyzed. Safe for concurrent use.
+ */
+public class MetricsRollup {
+
+    // Indexes of the rolled up metrics
+    public static final int METHOD_COMPLEXITY = 0;
+    public static final int METHOD_STATEMENTS = 1;
+    public static final int CLASS_COMPLEXITY = 2;
+    public static final String[] METRIC_NAMES = {"methodComplexity", "methodStatements", "classComplexity"};
+
+    private final Map<String, IntHistogram[]> packages = new HashMap<>();
+    // The values each class contributed, to take them out again when it is replaced
+    private final Map<String, int[][]> classValues = new HashMap<>();
+
+    public synchronized void update(ClassMetrics metrics) {
+        String className = metrics.getFullyQualifiedName();
+        int[][] values = valuesOf(metrics);
+        int[][] previous = classValues.put(className, values);
+        if (previous != null) {
+            apply(getPackageName(className), previous, false);
+        }
+        apply(getPackageName(className), values, true);
+    }
+
+    public synchronized void remove(String className) {
+        int[][] previous = classValues.remove(className);
+        if (previous != null) {
+            apply(getPackageName(className), previous, false);
+        }
+    }
+
+    public synchronized void clear() {
+        packages.clear();
+        classValues.clear();
+    }
+
+    /**
+     * @param packageName a package, or {@code ""} for the whole project
+     * @return the metric over the package and its subpackages, or null if none of their classes
+     *         has metrics
+     */
+    public synchronized MetricSummary getSummary(String packageName, int metric) {
+        IntHistogram[] histograms = packages.get(packageName);
+        return (histograms != null) ? histograms[metric].summarize() : null;
+    }
+
+    /**
+     * @return the packages with metrics, including the parents they roll up into, sorted by name
+     */
+    public synchronized List<String> getPackageNames() {
+        List<String> names = new ArrayList<>(packages.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    private void apply(String packageName, int[][] values, boolean add) {
+        for (String name = packageName; name != null; name = getParentPackageName(name)) {
+            IntHistogram[] histograms = packages.computeIfAbsent(name, n -> newHistograms());
+            for (int metric = 0; metric < values.length; metric++) {
+                for (int value : values[metric]) {
+                    if (add) {
+                        histograms[metric].add(value);
+                    } else {
+                        histograms[metric].remove(value);
+                    }
+                }
+            }
+            if (histograms[CLASS_COMPLEXITY].getCount() == 0) {
+                packages.remove(name);
+            }
+        }
+    }
+
+    private static IntHistogram[] newHistograms() {
+        IntHistogram[] histograms = new IntHistogram[METRIC_NAMES.length];
+        for (int metric = 0; metric < histograms.length; metric++) {
+            histograms[metric] = new IntHistogram();
+        }
+        return histograms;
+    }
+
+    private static int[][] valuesOf(ClassMetrics metrics) {
+        List<MethodMetrics> methods = metrics.getMethodMetrics();
+        int[][] values = new int[METRIC_NAMES.length][];
+        values[METHOD_COMPLEXITY] = new int[methods.size()];
+        values[METHOD_STATEMENTS] = new int[methods.size()];
+        for (int i = 0; i < methods.size(); i++) {
+            values[METHOD_COMPLEXITY][i] = methods.get(i).getCyclomaticComplexity();
+            values[METHOD_STATEMENTS][i] = methods.get(i).getLineCount();
+        }
+        values[CLASS_COMPLEXITY] = new int[]{metrics.getTotalCyclomaticComplexity()};
+        return values;
+    }
+
+    /**
+     * @return the package as the scanned graph names it, so the default package is
+     *         {@code "(default)"} and not the root {@code ""}
+     */
+    static String getPackageName(String className) {
+        return DependencyGraph.packageNameOf(className);
+    }
+
+    /**
+     * @return the enclosing package, {@code ""} for a top-level package and the default package,
+     *         or null for the root
+     */
+    static String getParentPackageName(String packageName) {
+        if (packageName.isEmpty()) {
+            return null;
+        }
+        int lastDot = packageName.lastIndexOf('.');
+        return (lastDot == -1) ? "" : packageName.substring(0, lastDot);
+    }
+}
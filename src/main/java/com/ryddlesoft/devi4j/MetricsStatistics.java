@@ -0,0 +1,70 @@
+package com.ryddlesoft.devi4j;
+
+/**
+ * Throughput and heap cost of a project-wide metrics run.
+ */
+public class MetricsStatistics {
+    private final int fileCount;
+    private final int classCount;
+    private final int failedFileCount;
+    private final int cachedFileCount;
+    private final long durationMillis;
+    private final long peakHeapBytes;
+    private final int threadCount;
+
+    public MetricsStatistics(int fileCount, int classCount, int failedFileCount, int cachedFileCount,
+                             long durationMillis, long peakHeapBytes, int threadCount) {
+        this.fileCount = fileCount;
+        this.classCount = classCount;
+        this.failedFileCount = failedFileCount;
+        this.cachedFileCount = cachedFileCount;
+        this.durationMillis = durationMillis;
+        this.peakHeapBytes = peakHeapBytes;
+        this.threadCount = threadCount;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @return source files Spoon could not build a model for
+     */
+    public int getFailedFileCount() {
+        return failedFileCount;
+    }
+
+    /**
+     * @return source files whose metrics came from the cache without being parsed
+     */
+    public int getCachedFileCount() {
+        return cachedFileCount;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public double getFilesPerSecond() {
+        return (durationMillis > 0) ? fileCount * 1000.0 / durationMillis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %d classes in %d ms (%.1f files/s on %d thread(s), %d cached, %d failed, peak heap %d MB)",
+                fileCount, classCount, durationMillis, getFilesPerSecond(), threadCount, cachedFileCount, failedFileCount,
+                peakHeapBytes / (1024 * 1024));
+    }
+}
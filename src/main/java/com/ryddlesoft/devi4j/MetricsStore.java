@@ -0,0 +1,78 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe collection of computed class metrics, keyed by class name, that batch analysis
+ * streams into while it runs. Keeps a {@link MetricsRollup} of its contents up to date.
+ */
+public class MetricsStore {
+
+    private final Map<String, ClassMetrics> classMetrics = new ConcurrentHashMap<>();
+    private final MetricsRollup rollup = new MetricsRollup();
+
+    public void put(ClassMetrics metrics) {
+        classMetrics.put(metrics.getFullyQualifiedName(), metrics);
+        rollup.update(metrics);
+    }
+
+    /**
+     * Replaces the metrics of a re-analyzed source file: its top-level class and every class
+     * nested in it that is not in {@code fileMetrics} any more are removed.
+     */
+    public void replaceFile(String topLevelClassName, List<ClassMetrics> fileMetrics) {
+        Set<String> replaced = new HashSet<>();
+        for (ClassMetrics metrics : fileMetrics) {
+            replaced.add(metrics.getFullyQualifiedName());
+            put(metrics);
+        }
+        for (String className : new ArrayList<>(classMetrics.keySet())) {
+            boolean inFile = className.equals(topLevelClassName) || className.startsWith(topLevelClassName + "$");
+            if (inFile && !replaced.contains(className)) {
+                classMetrics.remove(className);
+                rollup.remove(className);
+            }
+        }
+    }
+
+    public ClassMetrics get(String className) {
+        return classMetrics.get(className);
+    }
+
+    public Collection<ClassMetrics> getAll() {
+        return Collections.unmodifiableCollection(classMetrics.values());
+    }
+
+    public int size() {
+        return classMetrics.size();
+    }
+
+    public void clear() {
+        classMetrics.clear();
+        rollup.clear();
+    }
+
+    public MetricsRollup getRollup() {
+        return rollup;
+    }
+
+    /**
+     * @return up to {@code limit} classes, most complex method first, then by total complexity
+     */
+    public List<ClassMetrics> getHotspots(int limit) {
+        List<ClassMetrics> hotspots = new ArrayList<>(classMetrics.values());
+        hotspots.sort(Comparator.comparingInt(ClassMetrics::getMaxCyclomaticComplexity)
+                .thenComparingInt(ClassMetrics::getTotalCyclomaticComplexity)
+                .reversed()
+                .thenComparing(ClassMetrics::getFullyQualifiedName));
+        return hotspots.subList(0, Math.min(limit, hotspots.size()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.ryddlesoft.devi4j;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a project-wide {@link BatchMetricsAnalyzer} off the Event Dispatch Thread, storing the
+ * results in a {@link MetricsStore} and reporting progress to the {@link Callback} on the EDT.
+ */
+public class MetricsWorker extends SwingWorker<MetricsStatistics, int[]> {
+
+    public interface Callback {
+        void metricsProgress(int completedFiles, int totalFiles, int analyzedClasses);
+
+        void metricsFinished(MetricsStatistics statistics);
+
+        void metricsFailed(Throwable error);
+    }
+
+    private final BatchMetricsAnalyzer analyzer;
+    private final MetricsStore store;
+    private final Callback callback;
+
+    public MetricsWorker(Project project, MetricsStore store, MetricsCache cache, Callback callback) {
+        this.analyzer = new BatchMetricsAnalyzer(project.getSourcePaths(), project.getScanThreads(),
+                BatchMetricsAnalyzer.DEFAULT_CHUNK_SIZE, cache);
+        this.store = store;
+        this.callback = callback;
+    }
+
+    public void abort() {
+        analyzer.cancel();
+        cancel(true);
+    }
+
+    @Override
+    protected MetricsStatistics doInBackground() throws Exception {
+        return analyzer.analyze(store::put,
+                (completedFiles, totalFiles, analyzedClasses) -> publish(new int[]{completedFiles, totalFiles, analyzedClasses}));
+    }
+
+    @Override
+    protected void process(List<int[]> chunks) {
+        if (!isCancelled()) {
+            int[] latest = chunks.get(chunks.size() - 1);
+            callback.metricsProgress(latest[0], latest[1], latest[2]);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            callback.metricsFinished(get());
+        } catch (ExecutionException e) {
+            callback.metricsFailed(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
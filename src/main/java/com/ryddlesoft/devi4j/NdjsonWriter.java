@@ -0,0 +1,48 @@
+package com.ryddlesoft.devi4j;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes newline-delimited JSON: one self-contained record per line, written as soon as it is
+ * produced, so consumers can process the output while the analysis is still running.
+ */
+public class NdjsonWriter implements Closeable {
+
+    private final Writer writer;
+    private final Gson gson;
+
+    public NdjsonWriter(Writer writer) {
+        this.writer = writer;
+        this.gson = new GsonBuilder().disableHtmlEscaping().create();
+    }
+
+    /**
+     * Starts a record of the given type; further fields keep their insertion order.
+     */
+    public static Map<String, Object> record(String type) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", type);
+        return record;
+    }
+
+    public void write(Map<String, Object> record) throws IOException {
+        writer.write(gson.toJson(record));
+        writer.write('\n');
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the OO metrics that depend on other classes for every class of a scan in a single
+ * pass over the inheritance index and the dependency adjacency:
+ * <ul>
+ *     <li>DIT, the depth in the inheritance tree, counting {@code java.lang.Object} as depth 0.
+ *     A superclass outside the scan counts as one level directly below Object, so DIT is a
+ *     lower bound for classes extending library classes.</li>
+ *     <li>NOC, the number of direct subclasses within the scan.</li>
+ *     <li>CBO, the number of other scanned classes the class depends on or is depended on by.</li>
+ * </ul>
+ * The class-local metrics (WMC, LCOM and RFC) come from {@link BytecodeMetricsAnalyzer}.
+ */
+public class OoMetricsCalculator {
+
+    public static final String DIT = "dit";
+    public static final String NOC = "noc";
+    public static final String CBO = "cbo";
+
+    private OoMetricsCalculator() {
+    }
+
+    /**
+     * @param superclasses the direct superclass name of each class by id, null for none
+     * @return the metric columns by name, each indexed by class id
+     */
+    public static Map<String, int[]> calculate(DependencyGraph graph, String[] superclasses) {
+        int classCount = graph.getClassCount();
+        int[] superclassIds = new int[classCount];
+        int[] noc = new int[classCount];
+        for (int classId = 0; classId < classCount; classId++) {
+            String superclass = superclasses[classId];
+            superclassIds[classId] = (superclass == null) ? -1 : graph.findClass(superclass);
+            if (superclassIds[classId] >= 0) {
+                noc[superclassIds[classId]]++;
+            }
+        }
+
+        int[] dit = new int[classCount];
+        int[] chain = new int[classCount];
+        for (int classId = 0; classId < classCount; classId++) {
+            // Walk up until a class with a known depth, then assign depths on the way back down;
+            // every class is resolved once, so the pass stays linear even for deep hierarchies
+            int length = 0;
+            int current = classId;
+            while (current >= 0 && dit[current] == 0 && length < classCount) {
+                chain[length++] = current;
+                current = superclassIds[current];
+            }
+            int depth = (current >= 0) ? dit[current] : 0;
+            for (int i = length - 1; i >= 0; i--) {
+                int member = chain[i];
+                if (superclassIds[member] >= 0) {
+                    depth++;
+                } else {
+                    depth = (superclasses[member] == null) ? 1 : 2;
+                }
+                dit[member] = depth;
+            }
+        }
+
+        int[] cbo = new int[classCount];
+        DependencyGraph.Adjacency dependencies = graph.getClassDependencies();
+        DependencyGraph.Adjacency dependents = graph.getClassDependents();
+        for (int classId = 0; classId < classCount; classId++) {
+            cbo[classId] = countUnion(dependencies, dependents, classId);
+        }
+
+        Map<String, int[]> columns = new LinkedHashMap<>();
+        columns.put(DIT, dit);
+        columns.put(NOC, noc);
+        columns.put(CBO, cbo);
+        return columns;
+    }
+
+    /**
+     * Merges the two sorted neighbor lists of a node, counting each coupled class once.
+     */
+    private static int countUnion(DependencyGraph.Adjacency first, DependencyGraph.Adjacency second, int node) {
+        int i = 0;
+        int j = 0;
+        int firstDegree = first.degree(node);
+        int secondDegree = second.degree(node);
+        int count = 0;
+        while (i < firstDegree || j < secondDegree) {
+            int a = (i < firstDegree) ? first.target(node, i) : Integer.MAX_VALUE;
+            int b = (j < secondDegree) ? second.target(node, j) : Integer.MAX_VALUE;
+            if (a <= b) {
+                i++;
+            }
+            if (b <= a) {
+                j++;
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Compiled form of {@link ScanRules}.
+ * <p>
+ * Package rules are stored in a trie keyed by package name segments, so matching a package
+ * costs one map lookup per segment no matter how many rules exist. The same rules are handed
+ * to ClassGraph by {@link DependencyScanner}; this matcher post-filters what ClassGraph still
+ * reports, such as dependency targets in rejected packages.
+ */
+public class PackageFilter {
+
+    private static final int ACCEPT = 1;
+    private static final int REJECT = 2;
+
+    private final TrieNode root = new TrieNode();
+    private final boolean acceptAll;
+    private final List<String> acceptPackages;
+    private final List<String> rejectPackages;
+    private final List<Pattern> acceptJars;
+    private final List<Pattern> rejectJars;
+
+    private static class TrieNode {
+        private final Map<String, TrieNode> children = new HashMap<>(4);
+        private int flags;
+    }
+
+    public PackageFilter(ScanRules rules) {
+        this.acceptPackages = normalize(rules.getAcceptPackages());
+        this.rejectPackages = normalize(rules.getRejectPackages());
+        this.acceptAll = acceptPackages.isEmpty();
+        acceptPackages.forEach(p -> insert(p, ACCEPT));
+        rejectPackages.forEach(p -> insert(p, REJECT));
+        this.acceptJars = compileGlobs(rules.getAcceptJars());
+        this.rejectJars = compileGlobs(rules.getRejectJars());
+    }
+
+    /**
+     * @return the accepted package prefixes, ready for {@code ClassGraph.acceptPackages}
+     */
+    public List<String> getAcceptPackages() {
+        return acceptPackages;
+    }
+
+    public List<String> getRejectPackages() {
+        return rejectPackages;
+    }
+
+    public boolean acceptsPackage(String packageName) {
+        boolean accepted = acceptAll;
+        TrieNode node = root;
+        int start = 0;
+        while (node != null) {
+            if ((node.flags & REJECT) != 0) {
+                return false;
+            }
+            if ((node.flags & ACCEPT) != 0) {
+                accepted = true;
+            }
+            if (start > packageName.length()) {
+                break;
+            }
+            int end = packageName.indexOf('.', start);
+            if (end == -1) {
+                end = packageName.length();
+            }
+            node = node.children.get(packageName.substring(start, end));
+            start = end + 1;
+        }
+        return accepted;
+    }
+
+    public boolean acceptsClass(String className) {
+        return acceptsPackage(DependencyGraph.packageNameOf(className));
+    }
+
+    /**
+     * Matches the jar rules against the file name of {@code path}.
+     */
+    public boolean acceptsJar(String path) {
+        String fileName = new File(path).getName();
+        if (rejectJars.stream().anyMatch(p -> p.matcher(fileName).matches())) {
+            return false;
+        }
+        return acceptJars.isEmpty() || acceptJars.stream().anyMatch(p -> p.matcher(fileName).matches());
+    }
+
+    private void insert(String packageName, int flag) {
+        TrieNode node = root;
+        for (String segment : packageName.split("\\.")) {
+            node = node.children.computeIfAbsent(segment, k -> new TrieNode());
+        }
+        node.flags |= flag;
+    }
+
+    private static List<String> normalize(List<String> packages) {
+        List<String> normalized = new ArrayList<>();
+        if (packages == null) {
+            return normalized;
+        }
+        for (String pkg : packages) {
+            String trimmed = pkg.trim();
+            if (trimmed.endsWith(".*")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 2);
+            }
+            if (!trimmed.isEmpty()) {
+                normalized.add(trimmed);
+            }
+        }
+        return normalized;
+    }
+
+    private static List<Pattern> compileGlobs(List<String> globs) {
+        if (globs == null) {
+            return new ArrayList<>();
+        }
+        return globs.stream()
+                .map(String::trim)
+                .filter(g -> !g.isEmpty())
+                .map(g -> Pattern.compile(Pattern.quote(g).replace("*", "\\E.*\\Q").replace("?", "\\E.\\Q")))
+                .collect(Collectors.toList());
+    }
+}
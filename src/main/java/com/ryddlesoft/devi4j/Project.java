@@ -8,11 +8,19 @@ public class Project {
     private String projectFilePath;
     private List<String> jarPaths;
     private List<String> sourcePaths;
+    private ScanRules scanRules;
+    private ScanProfile scanProfile;
+    private int scanThreads;
+    private boolean watchEnabled;
+    private List<ArchitectureRule> architectureRules;
 
     public Project(String name) {
         this.name = name;
         this.jarPaths = new ArrayList<>();
         this.sourcePaths = new ArrayList<>();
+        this.scanRules = new ScanRules();
+        this.scanProfile = ScanProfile.FULL;
+        this.architectureRules = new ArrayList<>();
     }
 
     public String getName() {
@@ -66,4 +74,61 @@ public class Project {
     public void removeSourcePath(String path) {
         sourcePaths.remove(path);
     }
+
+    public ScanRules getScanRules() {
+        // Project files written before scan rules existed have none
+        if (scanRules == null) {
+            scanRules = new ScanRules();
+        }
+        return scanRules;
+    }
+
+    public void setScanRules(ScanRules scanRules) {
+        this.scanRules = scanRules;
+    }
+
+    public ScanProfile getScanProfile() {
+        return scanProfile != null ? scanProfile : ScanProfile.FULL;
+    }
+
+    public void setScanProfile(ScanProfile scanProfile) {
+        this.scanProfile = scanProfile;
+    }
+
+    /**
+     * @return the number of jars scanned in parallel; 0 means one per available processor
+     */
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+    /**
+     * @return true if jars and sources are watched and rescanned as they change
+     */
+    public boolean isWatchEnabled() {
+        return watchEnabled;
+    }
+
+    public void setWatchEnabled(boolean watchEnabled) {
+        this.watchEnabled = watchEnabled;
+    }
+
+    /**
+     * @return the dependencies the project forbids; checked after every scan
+     */
+    public List<ArchitectureRule> getArchitectureRules() {
+        // Project files written before architecture rules existed have none
+        if (architectureRules == null) {
+            architectureRules = new ArrayList<>();
+        }
+        return architectureRules;
+    }
+
+    public void setArchitectureRules(List<ArchitectureRule> architectureRules) {
+        this.architectureRules = architectureRules;
+    }
 }
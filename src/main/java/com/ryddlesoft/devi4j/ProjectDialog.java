@@ -17,13 +17,20 @@ public class ProjectDialog extends JDialog {
     private JList<String> jarList;
     private DefaultListModel<String> sourceListModel;
     private JList<String> sourceList;
+    private JTextField acceptPackagesField;
+    private JTextField rejectPackagesField;
+    private JTextField acceptJarsField;
+    private JTextField rejectJarsField;
+    private JComboBox<ScanProfile> scanProfileBox;
+    private JSpinner scanThreadsSpinner;
+    private JTextArea architectureRulesArea;
 
     public ProjectDialog(JFrame parent, Project project) {
         super(parent, "Project Settings", true);
         this.project = project != null ? project : new Project("New Project");
 
         setLayout(new BorderLayout(10, 10));
-        setSize(600, 550);
+        setSize(600, 900);
         setLocationRelativeTo(parent);
 
         add(createFieldsPanel(), BorderLayout.CENTER);
@@ -43,7 +50,7 @@ public class ProjectDialog extends JDialog {
 
         // Panel for lists
         JPanel listsPanel = new JPanel();
-        listsPanel.setLayout(new GridLayout(2, 1, 10, 10));
+        listsPanel.setLayout(new GridLayout(3, 1, 10, 10));
 
         // JARs List
         JPanel jarsPanel = new JPanel(new BorderLayout(5, 5));
@@ -83,11 +90,63 @@ public class ProjectDialog extends JDialog {
         sourcesPanel.add(sourcesButtonsPanel, BorderLayout.SOUTH);
         listsPanel.add(sourcesPanel);
 
+        // Architecture rules, one per line
+        JPanel rulesPanel = new JPanel(new BorderLayout(5, 5));
+        rulesPanel.setBorder(BorderFactory.createTitledBorder("Architecture Rules (one per line)"));
+        architectureRulesArea = new JTextArea();
+        for (ArchitectureRule rule : project.getArchitectureRules()) {
+            architectureRulesArea.append(rule + "\n");
+        }
+        architectureRulesArea.setToolTipText("<html>[classes] &lt;from&gt; must not [transitively] depend on &lt;to&gt;<br>"
+                + "e.g. ..web.. must not transitively depend on ..persistence..<br>"
+                + "or .. must not depend on (**).internal.. to keep modules out of each other's internals</html>");
+        rulesPanel.add(new JScrollPane(architectureRulesArea), BorderLayout.CENTER);
+        listsPanel.add(rulesPanel);
+
         panel.add(listsPanel, BorderLayout.CENTER);
+        panel.add(createScanRulesPanel(), BorderLayout.SOUTH);
 
         return panel;
     }
 
+    private JPanel createScanRulesPanel() {
+        ScanRules rules = project.getScanRules();
+        JPanel rulesPanel = new JPanel(new GridLayout(6, 2, 5, 5));
+        rulesPanel.setBorder(BorderFactory.createTitledBorder("Scan Settings (rules are comma-separated)"));
+
+        scanProfileBox = new JComboBox<>(ScanProfile.values());
+        scanProfileBox.setSelectedItem(project.getScanProfile());
+        rulesPanel.add(new JLabel("Scan profile:"));
+        rulesPanel.add(scanProfileBox);
+
+        scanThreadsSpinner = new JSpinner(new SpinnerNumberModel(project.getScanThreads(), 0, 256, 1));
+        rulesPanel.add(new JLabel("Scan threads (0 = all cores):"));
+        rulesPanel.add(scanThreadsSpinner);
+
+        acceptPackagesField = addRuleField(rulesPanel, "Include packages:", rules.getAcceptPackages());
+        rejectPackagesField = addRuleField(rulesPanel, "Exclude packages:", rules.getRejectPackages());
+        acceptJarsField = addRuleField(rulesPanel, "Include JARs (e.g. app-*.jar):", rules.getAcceptJars());
+        rejectJarsField = addRuleField(rulesPanel, "Exclude JARs:", rules.getRejectJars());
+        return rulesPanel;
+    }
+
+    private JTextField addRuleField(JPanel rulesPanel, String label, List<String> values) {
+        JTextField field = new JTextField(values == null ? "" : String.join(", ", values));
+        rulesPanel.add(new JLabel(label));
+        rulesPanel.add(field);
+        return field;
+    }
+
+    private static List<String> parseRules(JTextField field) {
+        List<String> rules = new ArrayList<>();
+        for (String rule : field.getText().split(",")) {
+            if (!rule.trim().isEmpty()) {
+                rules.add(rule.trim());
+            }
+        }
+        return rules;
+    }
+
     private JPanel createButtonsPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton saveButton = new JButton("Save");
@@ -138,6 +197,19 @@ public class ProjectDialog extends JDialog {
     }
 
     private void onSave() {
+        List<ArchitectureRule> architectureRules = new ArrayList<>();
+        for (String line : architectureRulesArea.getText().split("\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                architectureRules.add(ArchitectureRule.parse(line));
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid Architecture Rule", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+        project.setArchitectureRules(architectureRules);
         project.setName(projectNameField.getText());
 
         project.getJarPaths().clear();
@@ -154,6 +226,14 @@ public class ProjectDialog extends JDialog {
             project.addSourcePath(sourceListModel.getElementAt(i));
         }
 
+        ScanRules rules = project.getScanRules();
+        rules.setAcceptPackages(parseRules(acceptPackagesField));
+        rules.setRejectPackages(parseRules(rejectPackagesField));
+        rules.setAcceptJars(parseRules(acceptJarsField));
+        rules.setRejectJars(parseRules(rejectJarsField));
+        project.setScanProfile((ScanProfile) scanProfileBox.getSelectedItem());
+        project.setScanThreads((Integer) scanThreadsSpinner.getValue());
+
         if (project.getProjectFilePath() == null || project.getProjectFilePath().isEmpty()) {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Save Project File");
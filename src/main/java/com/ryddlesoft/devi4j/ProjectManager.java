@@ -2,17 +2,27 @@ package com.ryddlesoft.devi4j;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 
 public class ProjectManager {
 
+    private static final String SCAN_INDEX_SUFFIX = ".index";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String METRICS_CACHE_SUFFIX = ".metrics";
+
     private final Gson gson;
+    private final Gson indexGson;
 
     public ProjectManager() {
         this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.indexGson = new Gson();
     }
 
     public void saveProject(Project project) throws IOException {
@@ -26,4 +36,134 @@ public class ProjectManager {
             return gson.fromJson(reader, Project.class);
         }
     }
+
+    /**
+     * Loads the scan index stored next to the project file. A missing, unreadable or
+     * outdated index yields an empty one, which simply causes a full rescan.
+     */
+    public ScanIndex loadScanIndex(Project project) {
+        File indexFile = getScanIndexFile(project);
+        if (indexFile == null || !indexFile.exists()) {
+            return new ScanIndex();
+        }
+        try (FileReader reader = new FileReader(indexFile)) {
+            ScanIndex index = indexGson.fromJson(reader, ScanIndex.class);
+            return (index != null && index.isCompatible()) ? index : new ScanIndex();
+        } catch (IOException | JsonParseException e) {
+            return new ScanIndex();
+        }
+    }
+
+    public void saveScanIndex(Project project, ScanIndex index) throws IOException {
+        File indexFile = getScanIndexFile(project);
+        if (indexFile == null) {
+            return;
+        }
+        try (FileWriter writer = new FileWriter(indexFile)) {
+            indexGson.toJson(index, writer);
+        }
+    }
+
+    /**
+     * Opens the binary snapshot stored next to the project file, if it still matches the
+     * scanner's configuration and the project's jars.
+     *
+     * @return the snapshot, or null if there is none or it is stale, in which case it is deleted
+     */
+    public GraphSnapshot loadSnapshot(Project project, DependencyScanner scanner) {
+        File snapshotFile = getProjectCompanionFile(project, SNAPSHOT_SUFFIX);
+        if (snapshotFile == null || !snapshotFile.exists()) {
+            return null;
+        }
+        try {
+            GraphSnapshot snapshot = GraphSnapshot.read(snapshotFile, scanner.getConfigurationKey(),
+                    scanner.selectPaths(project.getJarPaths()));
+            if (snapshot == null) {
+                deleteSnapshot(project);
+            }
+            return snapshot;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void saveSnapshot(Project project, DependencyScanner scanner, GraphSnapshot snapshot) throws IOException {
+        File snapshotFile = getProjectCompanionFile(project, SNAPSHOT_SUFFIX);
+        if (snapshotFile != null) {
+            snapshot.write(snapshotFile, scanner.getConfigurationKey(), scanner.selectPaths(project.getJarPaths()));
+        }
+    }
+
+    public void deleteSnapshot(Project project) {
+        File snapshotFile = getProjectCompanionFile(project, SNAPSHOT_SUFFIX);
+        if (snapshotFile != null) {
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Writes a scan, with the method metrics of its classes, as a baseline that later scans
+     * can be compared with by a {@link GraphDiff}.
+     */
+    public void saveBaseline(Project project, File file, DependencyGraph graph, Map<String, int[]> classMetrics,
+                             Collection<ClassMetrics> methodMetrics) throws IOException {
+        DependencyScanner scanner = new DependencyScanner(project.getScanRules(), project.getScanProfile(), project.getScanThreads());
+        GraphSnapshot snapshot = new GraphSnapshot(graph, classMetrics, GraphSnapshot.MethodTable.of(graph, methodMetrics));
+        snapshot.write(file, scanner.getConfigurationKey(), scanner.selectPaths(project.getJarPaths()));
+    }
+
+    public GraphSnapshot loadBaseline(File file) throws IOException {
+        GraphSnapshot baseline = GraphSnapshot.readBaseline(file);
+        if (baseline == null) {
+            throw new IOException("Not a baseline of snapshot format " + GraphSnapshot.FORMAT_VERSION + ": " + file);
+        }
+        return baseline;
+    }
+
+    /**
+     * Opens the metrics cache stored in a directory next to the project file; projects that
+     * were never saved get a cache that lives in memory only.
+     */
+    public MetricsCache openMetricsCache(Project project) {
+        return new MetricsCache(getProjectCompanionFile(project, METRICS_CACHE_SUFFIX), MetricsCache.DEFAULT_MEMORY_ENTRIES);
+    }
+
+    /**
+     * Produces the scan result of a project: from its snapshot when that is current, otherwise
+     * by an incremental scan against its scan index, after which index and snapshot are
+     * rewritten. Projects that were never saved are always scanned from scratch.
+     */
+    public DependencyScanner.ScanResultContainer scanProject(Project project, DependencyScanner scanner,
+                                                             DependencyScanner.ProgressListener listener) {
+        ScanStatistics.Recorder recorder = ScanStatistics.Recorder.start(project.getScanProfile());
+        GraphSnapshot snapshot = loadSnapshot(project, scanner);
+        if (snapshot != null) {
+            DependencyGraph graph = snapshot.getGraph();
+            return new DependencyScanner.ScanResultContainer(graph, recorder.stopFromSnapshot(graph.getClassCount()),
+                    snapshot.getClassMetrics(), snapshot.getClassOrigins());
+        }
+
+        ScanIndex scanIndex = loadScanIndex(project);
+        DependencyScanner.ScanResultContainer result = scanner.scan(project.getJarPaths(), scanIndex, listener);
+        try {
+            saveScanIndex(project, scanIndex);
+            saveSnapshot(project, scanner, new GraphSnapshot(result.getGraph(), result.getClassMetrics(),
+                    GraphSnapshot.MethodTable.empty(result.getGraph().getClassCount()), result.getClassOrigins()));
+        } catch (IOException ex) {
+            // Only costs a rescan next time
+            result.setCacheWarning("scan cache not saved: " + ex.getMessage());
+        }
+        return result;
+    }
+
+    private File getScanIndexFile(Project project) {
+        return getProjectCompanionFile(project, SCAN_INDEX_SUFFIX);
+    }
+
+    private File getProjectCompanionFile(Project project, String suffix) {
+        if (project.getProjectFilePath() == null || project.getProjectFilePath().isEmpty()) {
+            return null;
+        }
+        return new File(project.getProjectFilePath() + suffix);
+    }
 }
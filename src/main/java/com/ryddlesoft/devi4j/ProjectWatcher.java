@@ -0,0 +1,297 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a project's jars and source directories and reports changes in debounced batches,
+ * so that a rebuild touching dozens of files results in a single notification.
+ * <p>
+ * Jars are watched through their parent directory; class directories and source directories
+ * are watched recursively, including directories created later. A directory that does not
+ * exist, or is deleted by a clean build, is watched through its nearest existing ancestor until
+ * it is created again, and then reported as changed as a whole. So is a directory whose events
+ * overflowed.
+ */
+public class ProjectWatcher implements AutoCloseable {
+
+    private static final long DEBOUNCE_MILLIS = 750;
+
+    /**
+     * Called on the watcher thread.
+     */
+    public interface Listener {
+        /**
+         * Called once a burst of changes has settled.
+         */
+        void filesChanged(Set<String> changedJarPaths, Set<Path> changedSourceFiles);
+
+        /**
+         * Called when a watched directory can no longer be watched; no further changes are
+         * reported.
+         */
+        void watchingStopped(String reason);
+    }
+
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Set<Path> registeredDirectories = new HashSet<>();
+    private final Map<Path, String> jarFiles = new HashMap<>();
+    private final Map<Path, String> classDirectories = new HashMap<>();
+    private final List<Path> sourceRoots = new ArrayList<>();
+    private final Thread thread;
+
+    public ProjectWatcher(Project project, Listener listener) throws IOException {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (String jarPath : project.getJarPaths()) {
+            Path path = Paths.get(jarPath).toAbsolutePath().normalize();
+            if (Files.isDirectory(path) || (!Files.exists(path) && !jarPath.endsWith(".jar"))) {
+                classDirectories.put(path, jarPath);
+                watchRoot(path, true);
+            } else if (path.getParent() != null) {
+                jarFiles.put(path, jarPath);
+                watchRoot(path.getParent(), false);
+            }
+        }
+        if (project.getSourcePaths() != null) {
+            for (String sourcePath : project.getSourcePaths()) {
+                Path root = Paths.get(sourcePath).toAbsolutePath().normalize();
+                sourceRoots.add(root);
+                watchRoot(root, true);
+            }
+        }
+        this.thread = new Thread(this::run, "devi4j-watch");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private void run() {
+        Set<String> changedJars = new LinkedHashSet<>();
+        Set<Path> changedSources = new LinkedHashSet<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Block for the first event, then keep collecting until the burst is quiet
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    collect(key, changedJars, changedSources);
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (!changedJars.isEmpty() || !changedSources.isEmpty()) {
+                    listener.filesChanged(new LinkedHashSet<>(changedJars), new LinkedHashSet<>(changedSources));
+                    changedJars.clear();
+                    changedSources.clear();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watching stopped
+        } catch (IOException e) {
+            listener.watchingStopped(e.getMessage());
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changedJars, Set<Path> changedSources) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so anything below the directory may have changed
+                collectAll(directory, changedJars, changedSources);
+                continue;
+            }
+            Path changed = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                // Files may have been written to it before it could be watched
+                collectAll(changed, changedJars, changedSources);
+            }
+
+            String jarPath = jarFiles.get(changed);
+            if (jarPath != null) {
+                changedJars.add(jarPath);
+            }
+            for (Map.Entry<Path, String> classDirectory : classDirectories.entrySet()) {
+                if (changed.startsWith(classDirectory.getKey()) && changed.toString().endsWith(".class")) {
+                    changedJars.add(classDirectory.getValue());
+                }
+            }
+            if (changed.toString().endsWith(".java") && sourceRoots.stream().anyMatch(changed::startsWith)) {
+                changedSources.add(changed);
+            }
+        }
+        if (!key.reset()) {
+            // Deleted; roots at or below it are watched through an ancestor until they return
+            watchedDirectories.remove(key);
+            registeredDirectories.remove(directory);
+            if (directory != null) {
+                for (Path root : classDirectories.keySet()) {
+                    if (root.startsWith(directory)) {
+                        watchRoot(root, true);
+                    }
+                }
+                for (Path root : sourceRoots) {
+                    if (root.startsWith(directory)) {
+                        watchRoot(root, true);
+                    }
+                }
+                for (Path jarFile : jarFiles.keySet()) {
+                    if (jarFile.getParent().startsWith(directory)) {
+                        watchRoot(jarFile.getParent(), false);
+                    }
+                }
+                if (Files.isDirectory(directory) && isWatchedRecursively(directory)) {
+                    registerQuietly(directory); // Already created again
+                }
+            }
+        }
+    }
+
+    private boolean isWatchedRecursively(Path directory) {
+        return classDirectories.keySet().stream().anyMatch(directory::startsWith)
+                || sourceRoots.stream().anyMatch(directory::startsWith);
+    }
+
+    /**
+     * Reports everything at or below {@code directory} as changed and watches what it contains
+     * that is not watched yet.
+     */
+    private void collectAll(Path directory, Set<String> changedJars, Set<Path> changedSources) throws IOException {
+        for (Map.Entry<Path, String> classDirectory : classDirectories.entrySet()) {
+            Path root = classDirectory.getKey();
+            if (directory.startsWith(root)) {
+                registerQuietly(directory);
+                changedJars.add(classDirectory.getValue());
+            } else if (root.startsWith(directory) && watchRoot(root, true)) {
+                changedJars.add(classDirectory.getValue());
+            }
+        }
+        for (Map.Entry<Path, String> jarFile : jarFiles.entrySet()) {
+            Path parent = jarFile.getKey().getParent();
+            if (parent.startsWith(directory) && watchRoot(parent, false) && Files.exists(jarFile.getKey())) {
+                changedJars.add(jarFile.getValue());
+            }
+        }
+        for (Path root : sourceRoots) {
+            Path changed = null;
+            if (directory.startsWith(root)) {
+                registerQuietly(directory);
+                changed = directory;
+            } else if (root.startsWith(directory) && watchRoot(root, true)) {
+                changed = root;
+            }
+            if (changed != null) {
+                try (Stream<Path> files = Files.walk(changed)) {
+                    files.filter(file -> file.toString().endsWith(".java") && Files.isRegularFile(file))
+                            .forEach(changedSources::add);
+                } catch (IOException | UncheckedIOException e) {
+                    // Deleted again while listing; its deletion is reported on its own
+                }
+            }
+        }
+    }
+
+    /**
+     * Watches {@code root}, or its nearest existing ancestor if it does not exist.
+     *
+     * @return whether the root itself exists and is watched
+     * @throws IOException if neither the root nor any ancestor can be watched
+     */
+    private boolean watchRoot(Path root, boolean recursive) throws IOException {
+        while (true) {
+            try {
+                if (Files.isDirectory(root)) {
+                    if (recursive) {
+                        registerRecursively(root);
+                    } else {
+                        register(root);
+                    }
+                    return true;
+                }
+                Path ancestor = root.getParent();
+                while (ancestor != null && !Files.isDirectory(ancestor)) {
+                    ancestor = ancestor.getParent();
+                }
+                if (ancestor == null) {
+                    throw new IOException("Cannot watch " + root + ": no existing parent directory");
+                }
+                register(ancestor);
+                // Created in the meantime, before its ancestor was watched?
+                if (!Files.isDirectory(ancestor.resolve(root.getName(ancestor.getNameCount())))) {
+                    return false;
+                }
+            } catch (NoSuchFileException e) {
+                // Deleted while registering; look for the nearest ancestor again
+            } catch (IOException e) {
+                throw new IOException("Stopped watching " + root + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        if (registeredDirectories.add(directory)) {
+            try {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, directory);
+            } catch (IOException e) {
+                registeredDirectories.remove(directory);
+                throw e;
+            }
+        }
+    }
+
+    private void registerRecursively(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void registerQuietly(Path directory) {
+        try {
+            registerRecursively(directory);
+        } catch (IOException e) {
+            // The directory vanished again before it could be watched
+        }
+    }
+}
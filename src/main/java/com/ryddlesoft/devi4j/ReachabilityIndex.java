@@ -0,0 +1,344 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Answers transitive dependency questions over one level of a scan: whether a node depends on
+ * another, what a set of nodes depends on or is depended on by, up to a depth or without limit,
+ * and the shortest dependency path between two nodes.
+ * <p>
+ * Reachability is decided on the {@link Condensation}, where component ids already form a
+ * topological order. Each component also carries interval labels from two depth-first
+ * traversals of the DAG: a component can only reach another if its intervals contain the
+ * other's, and the spanning tree of the first traversal proves reachability outright. Only
+ * queries neither test settles search the DAG, pruned by the same labels. The index takes
+ * linear space, where a bitset closure per component would grow with the square of the
+ * component count.
+ */
+public class ReachabilityIndex {
+
+    /** Depth meaning "no limit" for {@link #getDependencies} and {@link #getDependents}. */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int LABELINGS = 2;
+
+    private final DependencyGraph.Adjacency adjacency;
+    private final DependencyGraph.Adjacency reverse;
+    private final Condensation condensation;
+    private final DependencyGraph.Adjacency dag;
+    private final DependencyGraph.Adjacency reverseDag;
+    // Post-order rank of each component per traversal, and the lowest rank it can reach
+    private final int[][] rank = new int[LABELINGS][];
+    private final int[][] low = new int[LABELINGS][];
+    // Lowest rank in the component's subtree of the first traversal's spanning forest
+    private final int[] treeStart;
+
+    public ReachabilityIndex(DependencyGraph.Adjacency adjacency, Condensation condensation) {
+        this.adjacency = adjacency;
+        this.reverse = adjacency.reverse();
+        this.condensation = condensation;
+        this.dag = condensation.getDag();
+        this.reverseDag = dag.reverse();
+        this.treeStart = new int[dag.getNodeCount()];
+        for (int labeling = 0; labeling < LABELINGS; labeling++) {
+            label(labeling);
+        }
+    }
+
+    public int getNodeCount() {
+        return adjacency.getNodeCount();
+    }
+
+    /**
+     * Numbers the components in post-order of a depth-first traversal. Odd labelings start
+     * from the other end and take successors in reverse, so their intervals cut differently.
+     */
+    private void label(int labeling) {
+        int componentCount = dag.getNodeCount();
+        boolean reversed = (labeling % 2) == 1;
+        int[] ranks = new int[componentCount];
+        int[] lows = new int[componentCount];
+        Arrays.fill(ranks, -1);
+        int[] stack = new int[componentCount];
+        int[] cursor = new int[componentCount];
+        int nextRank = 0;
+        for (int k = 0; k < componentCount; k++) {
+            // High ids have no predecessors more often, so they make better roots
+            int root = reversed ? k : componentCount - 1 - k;
+            if (ranks[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = root;
+            ranks[root] = -2; // Entered, not yet finished
+            if (labeling == 0) {
+                treeStart[root] = nextRank;
+            }
+            while (depth >= 0) {
+                int component = stack[depth];
+                int degree = dag.degree(component);
+                if (cursor[component] < degree) {
+                    int i = cursor[component]++;
+                    int successor = dag.target(component, reversed ? degree - 1 - i : i);
+                    if (ranks[successor] == -1) {
+                        ranks[successor] = -2;
+                        if (labeling == 0) {
+                            treeStart[successor] = nextRank;
+                        }
+                        stack[++depth] = successor;
+                    }
+                } else {
+                    // The DAG has no back edges, so every successor is finished by now
+                    int lowest = nextRank;
+                    for (int i = 0; i < degree; i++) {
+                        lowest = Math.min(lowest, lows[dag.target(component, i)]);
+                    }
+                    ranks[component] = nextRank++;
+                    lows[component] = lowest;
+                    depth--;
+                }
+            }
+        }
+        rank[labeling] = ranks;
+        low[labeling] = lows;
+    }
+
+    /**
+     * @return whether {@code from} depends on {@code to} through one or more edges; a node
+     *         depends on itself only if it lies on a cycle
+     */
+    public boolean reaches(int from, int to) {
+        int fromComponent = condensation.getComponent(from);
+        int toComponent = condensation.getComponent(to);
+        if (fromComponent == toComponent) {
+            return condensation.isCyclic(fromComponent);
+        }
+        return componentReaches(fromComponent, toComponent);
+    }
+
+    private boolean componentReaches(int from, int to) {
+        if (!mayReach(from, to)) {
+            return false;
+        }
+        if (treeContains(from, to)) {
+            return true;
+        }
+        BitSet visited = new BitSet();
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.push(from);
+        visited.set(from);
+        while (!pending.isEmpty()) {
+            int component = pending.pop();
+            for (int i = 0; i < dag.degree(component); i++) {
+                int successor = dag.target(component, i);
+                if (treeContains(successor, to)) {
+                    return true;
+                }
+                if (!visited.get(successor) && mayReach(successor, to)) {
+                    visited.set(successor);
+                    pending.push(successor);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false if no path from one component to the other can exist; true is only a maybe
+     */
+    private boolean mayReach(int from, int to) {
+        if (from <= to) {
+            return false; // Every DAG edge leads to a lower id
+        }
+        for (int labeling = 0; labeling < LABELINGS; labeling++) {
+            if (low[labeling][from] > low[labeling][to] || rank[labeling][to] > rank[labeling][from]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean treeContains(int ancestor, int component) {
+        return treeStart[ancestor] <= rank[0][component] && rank[0][component] <= rank[0][ancestor];
+    }
+
+    /**
+     * @param maxDepth the longest path to follow, in edges, or {@link #UNLIMITED}
+     * @return the nodes any of {@code nodes} depends on through one to {@code maxDepth} edges
+     */
+    public BitSet getDependencies(BitSet nodes, int maxDepth) {
+        return (maxDepth == UNLIMITED)
+                ? closure(nodes, dag)
+                : neighborhood(nodes, maxDepth, adjacency);
+    }
+
+    /**
+     * @param maxDepth the longest path to follow, in edges, or {@link #UNLIMITED}
+     * @return the nodes that depend on any of {@code nodes} through one to {@code maxDepth} edges
+     */
+    public BitSet getDependents(BitSet nodes, int maxDepth) {
+        return (maxDepth == UNLIMITED)
+                ? closure(nodes, reverseDag)
+                : neighborhood(nodes, maxDepth, reverse);
+    }
+
+    // Whole components are reached at once, so this costs what it returns
+    private BitSet closure(BitSet nodes, DependencyGraph.Adjacency componentEdges) {
+        BitSet reached = new BitSet(componentEdges.getNodeCount());
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        nodes.stream().forEach(node -> {
+            int component = condensation.getComponent(node);
+            // A node inside a cycle reaches its whole component, itself included
+            if (condensation.isCyclic(component) && !reached.get(component)) {
+                reached.set(component);
+                pending.push(component);
+            } else if (!condensation.isCyclic(component)) {
+                pending.push(component);
+            }
+        });
+        while (!pending.isEmpty()) {
+            int component = pending.pop();
+            for (int i = 0; i < componentEdges.degree(component); i++) {
+                int next = componentEdges.target(component, i);
+                if (!reached.get(next)) {
+                    reached.set(next);
+                    pending.push(next);
+                }
+            }
+        }
+        BitSet result = new BitSet(adjacency.getNodeCount());
+        reached.stream().forEach(component -> {
+            for (int member : condensation.getMembers(component)) {
+                result.set(member);
+            }
+        });
+        return result;
+    }
+
+    private static BitSet neighborhood(BitSet nodes, int maxDepth, DependencyGraph.Adjacency edges) {
+        BitSet result = new BitSet(edges.getNodeCount());
+        BitSet expanded = (BitSet) nodes.clone();
+        int[] frontier = nodes.stream().toArray();
+        for (int depth = 1; depth <= maxDepth && frontier.length > 0; depth++) {
+            int[] next = new int[16];
+            int nextCount = 0;
+            for (int node : frontier) {
+                for (int i = 0; i < edges.degree(node); i++) {
+                    int target = edges.target(node, i);
+                    result.set(target);
+                    if (!expanded.get(target)) {
+                        expanded.set(target);
+                        if (nextCount == next.length) {
+                            next = Arrays.copyOf(next, nextCount * 2);
+                        }
+                        next[nextCount++] = target;
+                    }
+                }
+            }
+            frontier = Arrays.copyOf(next, nextCount);
+        }
+        return result;
+    }
+
+    /**
+     * Searches from both ends at once, each side only entering nodes whose component the
+     * labels do not rule out.
+     *
+     * @return the nodes of a shortest path from {@code from} to {@code to}, both included, or
+     *         null if {@code from} does not depend on {@code to}; a node's path to itself is
+     *         just that node
+     */
+    public int[] findShortestPath(int from, int to) {
+        if (from == to) {
+            return new int[]{from};
+        }
+        if (!reaches(from, to)) {
+            return null;
+        }
+        int fromComponent = condensation.getComponent(from);
+        int toComponent = condensation.getComponent(to);
+        Map<Integer, Integer> forwardParent = new HashMap<>();
+        Map<Integer, Integer> backwardParent = new HashMap<>();
+        Map<Integer, Integer> backwardDepth = new HashMap<>();
+        Map<Integer, Integer> forwardDepth = new HashMap<>();
+        forwardParent.put(from, -1);
+        forwardDepth.put(from, 0);
+        backwardParent.put(to, -1);
+        backwardDepth.put(to, 0);
+        int[] forwardFrontier = {from};
+        int[] backwardFrontier = {to};
+        while (true) {
+            boolean forward = forwardFrontier.length <= backwardFrontier.length;
+            int[] frontier = forward ? forwardFrontier : backwardFrontier;
+            DependencyGraph.Adjacency edges = forward ? adjacency : reverse;
+            Map<Integer, Integer> parent = forward ? forwardParent : backwardParent;
+            Map<Integer, Integer> depth = forward ? forwardDepth : backwardDepth;
+            Map<Integer, Integer> otherDepth = forward ? backwardDepth : forwardDepth;
+
+            // Finish the whole level before meeting, so that the shortest meeting point wins
+            int meeting = -1;
+            int meetingLength = Integer.MAX_VALUE;
+            int[] next = new int[16];
+            int nextCount = 0;
+            for (int node : frontier) {
+                int nodeDepth = depth.get(node);
+                for (int i = 0; i < edges.degree(node); i++) {
+                    int target = edges.target(node, i);
+                    if (parent.containsKey(target)) {
+                        continue;
+                    }
+                    int targetComponent = condensation.getComponent(target);
+                    boolean useful = forward
+                            ? targetComponent == toComponent || mayReach(targetComponent, toComponent)
+                            : targetComponent == fromComponent || mayReach(fromComponent, targetComponent);
+                    if (!useful) {
+                        continue;
+                    }
+                    parent.put(target, node);
+                    depth.put(target, nodeDepth + 1);
+                    Integer remaining = otherDepth.get(target);
+                    if (remaining != null && nodeDepth + 1 + remaining < meetingLength) {
+                        meeting = target;
+                        meetingLength = nodeDepth + 1 + remaining;
+                    }
+                    if (nextCount == next.length) {
+                        next = Arrays.copyOf(next, nextCount * 2);
+                    }
+                    next[nextCount++] = target;
+                }
+            }
+            if (meeting != -1) {
+                return joinPath(meeting, meetingLength, forwardParent, backwardParent);
+            }
+            if (nextCount == 0) {
+                return null; // Unreachable once reaches() said yes, short of a concurrent change
+            }
+            if (forward) {
+                forwardFrontier = Arrays.copyOf(next, nextCount);
+            } else {
+                backwardFrontier = Arrays.copyOf(next, nextCount);
+            }
+        }
+    }
+
+    private static int[] joinPath(int meeting, int length, Map<Integer, Integer> forwardParent,
+                                  Map<Integer, Integer> backwardParent) {
+        int[] path = new int[length + 1];
+        int index = 0;
+        for (int node = meeting; node != -1; node = forwardParent.get(node)) {
+            index++;
+        }
+        int position = index - 1;
+        for (int node = meeting; node != -1; node = forwardParent.get(node)) {
+            path[position--] = node;
+        }
+        for (int node = backwardParent.get(meeting); node != -1; node = backwardParent.get(node)) {
+            path[index++] = node;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,268 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persisted per-jar scan results, stored next to the project file so that
+ * only jars that changed since the last scan have to be handed to ClassGraph again.
+ */
+public class ScanIndex {
+
+    public static final int FORMAT_VERSION = 2;
+
+    private int version = FORMAT_VERSION;
+    private String configurationKey = "";
+    private Map<String, JarEntry> jars = new LinkedHashMap<>();
+
+    /**
+     * The scanned classes of a single classpath element, together with the fingerprint
+     * (size, modification time and content hash) they were scanned from.
+     */
+    public static class JarEntry {
+        private String path;
+        private long size;
+        private long lastModified;
+        private String contentHash;
+        private List<ClassEntry> classes = new ArrayList<>();
+
+        public JarEntry(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public List<ClassEntry> getClasses() {
+            return classes;
+        }
+    }
+
+    /**
+     * A scanned class and the fully qualified names of the classes it depends on.
+     */
+    public static class ClassEntry {
+        private String name;
+        private String packageName;
+        private List<String> dependencies;
+        private String superclass;
+        private int[] bytecodeMetrics;
+
+        public ClassEntry(String name, String packageName, List<String> dependencies, String superclass,
+                          int[] bytecodeMetrics) {
+            this.name = name;
+            this.packageName = packageName;
+            this.dependencies = dependencies;
+            this.superclass = superclass;
+            this.bytecodeMetrics = bytecodeMetrics;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public List<String> getDependencies() {
+            return dependencies;
+        }
+
+        /**
+         * @return the direct superclass, or null for interfaces and direct subclasses of Object
+         */
+        public String getSuperclass() {
+            return superclass;
+        }
+
+        /**
+         * @return the {@link BytecodeMetricsAnalyzer#summarize summary} of the class, or null
+         *         if the scan profile does not collect it
+         */
+        public int[] getBytecodeMetrics() {
+            return bytecodeMetrics;
+        }
+    }
+
+    public boolean isCompatible() {
+        return version == FORMAT_VERSION && jars != null;
+    }
+
+    /**
+     * Discards every entry if they were recorded under a different scan configuration,
+     * e.g. after the project's package rules changed.
+     */
+    public void ensureConfiguration(String key) {
+        if (!key.equals(configurationKey)) {
+            jars.clear();
+            configurationKey = key;
+        }
+    }
+
+    public JarEntry getEntry(String path) {
+        return jars.get(path);
+    }
+
+    /**
+     * Drops the entries of classpath elements that are no longer part of the project.
+     */
+    public void retainPaths(Collection<String> paths) {
+        jars.keySet().retainAll(new HashSet<>(paths));
+    }
+
+    /**
+     * Checks whether the stored entry for {@code path} still describes the file on disk.
+     * Size and modification time are compared first; the content hash is only computed
+     * when they differ, so touched-but-unchanged jars are not rescanned either.
+     *
+     * @return true if the stored classes can be reused
+     */
+    public boolean isUpToDate(String path) throws IOException {
+        JarEntry entry = jars.get(path);
+        if (entry == null || entry.contentHash == null) {
+            return false;
+        }
+        Fingerprint current = Fingerprint.of(new File(path));
+        if (current.size == entry.size && current.lastModified == entry.lastModified) {
+            return true;
+        }
+        if (current.size == entry.size && current.computeHash().equals(entry.contentHash)) {
+            entry.lastModified = current.lastModified;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fingerprints {@code path} and pairs it with its freshly scanned classes. This only reads
+     * the file, so it may run on any thread; {@link #putEntry(JarEntry)} records the result.
+     */
+    public static JarEntry createEntry(String path, List<ClassEntry> classes) throws IOException {
+        Fingerprint current = Fingerprint.of(new File(path));
+        JarEntry entry = new JarEntry(path);
+        entry.size = current.size;
+        entry.lastModified = current.lastModified;
+        entry.contentHash = current.computeHash();
+        entry.classes = classes;
+        return entry;
+    }
+
+    public void putEntry(JarEntry entry) {
+        jars.put(entry.getPath(), entry);
+    }
+
+    /**
+     * @return the hex SHA-256 of a file's content, or of every file below a directory
+     */
+    static String contentHash(File file) throws IOException {
+        return Fingerprint.of(file).computeHash();
+    }
+
+    /**
+     * Size and modification time of a jar, or summed and latest over every file below a class
+     * directory, whose own size and time do not move when a nested class file is rewritten.
+     */
+    static class Fingerprint {
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        private Fingerprint(File file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static Fingerprint of(File file) throws IOException {
+            if (!file.isDirectory()) {
+                return new Fingerprint(file, file.length(), file.lastModified());
+            }
+            // Class directories: aggregate over every file below the root
+            long size = 0;
+            long lastModified = file.lastModified();
+            for (Path child : listFiles(file.toPath())) {
+                size += Files.size(child);
+                lastModified = Math.max(lastModified, Files.getLastModifiedTime(child).toMillis());
+            }
+            return new Fingerprint(file, size, lastModified);
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String computeHash() throws IOException {
+            MessageDigest digest = newDigest();
+            if (file.isDirectory()) {
+                Path root = file.toPath();
+                for (Path child : listFiles(root)) {
+                    digest.update(root.relativize(child).toString().getBytes(StandardCharsets.UTF_8));
+                    digestFile(digest, child);
+                }
+            } else {
+                digestFile(digest, file.toPath());
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+
+        private static List<Path> listFiles(Path root) throws IOException {
+            try (Stream<Path> stream = Files.walk(root)) {
+                return stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        }
+
+        private static void digestFile(MessageDigest digest, Path path) throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(path)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ryddlesoft.devi4j;
+
+import io.github.classgraph.ClassGraph;
+
+/**
+ * How much class file information ClassGraph extracts during a scan. Leaner profiles are
+ * faster and need less memory, but see fewer dependencies: the dependency-only profile
+ * finds references through the constant pool and class signatures only, while member
+ * signatures and annotations contribute further edges in the richer profiles.
+ */
+public enum ScanProfile {
+    DEPENDENCIES_ONLY("Dependencies only"),
+    DEPENDENCIES_AND_MEMBERS("Dependencies + members"),
+    FULL("Full");
+
+    private final String displayName;
+
+    ScanProfile(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Enables the ClassGraph features this profile needs. Visibility filtering is always
+     * disabled so that every profile sees the same set of classes.
+     */
+    public ClassGraph configure(ClassGraph classGraph) {
+        switch (this) {
+            case DEPENDENCIES_ONLY:
+                return classGraph.enableClassInfo()
+                        .ignoreClassVisibility()
+                        .enableInterClassDependencies();
+            case DEPENDENCIES_AND_MEMBERS:
+                return classGraph.enableClassInfo()
+                        .ignoreClassVisibility()
+                        .enableFieldInfo()
+                        .ignoreFieldVisibility()
+                        .enableMethodInfo()
+                        .ignoreMethodVisibility()
+                        .enableInterClassDependencies();
+            default:
+                return classGraph.enableAllInfo()
+                        .enableInterClassDependencies();
+        }
+    }
+
+    /**
+     * @return true if scans under this profile also summarize each class's bytecode metrics
+     */
+    public boolean collectsBytecodeMetrics() {
+        return this == FULL;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,58 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.List;
+
+/**
+ * Progress of a running scan, reported after every classpath element.
+ */
+public class ScanProgress {
+    private final String currentPath;
+    private final int completedPaths;
+    private final int totalPaths;
+    private final int scannedClasses;
+    private final long elapsedNanos;
+    private final List<String> discoveredPackages;
+
+    public ScanProgress(String currentPath, int completedPaths, int totalPaths, int scannedClasses,
+                        long elapsedNanos, List<String> discoveredPackages) {
+        this.currentPath = currentPath;
+        this.completedPaths = completedPaths;
+        this.totalPaths = totalPaths;
+        this.scannedClasses = scannedClasses;
+        this.elapsedNanos = elapsedNanos;
+        this.discoveredPackages = discoveredPackages;
+    }
+
+    /**
+     * @return the classpath element just completed, or null for the initial report
+     */
+    public String getCurrentPath() {
+        return currentPath;
+    }
+
+    public int getCompletedPaths() {
+        return completedPaths;
+    }
+
+    public int getTotalPaths() {
+        return totalPaths;
+    }
+
+    /**
+     * @return classes parsed by ClassGraph so far; classes reused from the scan index are not counted
+     */
+    public int getScannedClasses() {
+        return scannedClasses;
+    }
+
+    public double getClassesPerSecond() {
+        return elapsedNanos == 0 ? 0 : scannedClasses / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    /**
+     * @return packages seen for the first time since the previous report
+     */
+    public List<String> getDiscoveredPackages() {
+        return discoveredPackages;
+    }
+}
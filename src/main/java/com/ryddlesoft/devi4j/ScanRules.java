@@ -0,0 +1,68 @@
+package com.ryddlesoft.devi4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-project accept/reject rules deciding which packages and jars take part in a scan.
+ * <p>
+ * Package rules are package names that also cover all subpackages ({@code com.acme} matches
+ * {@code com.acme.web}); a trailing {@code .*} is accepted and means the same. Jar rules are
+ * matched against the jar's file name and may use {@code *} and {@code ?} wildcards.
+ * An empty accept list accepts everything; reject rules always win.
+ */
+public class ScanRules {
+    private List<String> acceptPackages;
+    private List<String> rejectPackages;
+    private List<String> acceptJars;
+    private List<String> rejectJars;
+
+    public ScanRules() {
+        this.acceptPackages = new ArrayList<>();
+        this.rejectPackages = new ArrayList<>(Arrays.asList("java", "javax", "sun", "com.sun"));
+        this.acceptJars = new ArrayList<>();
+        this.rejectJars = new ArrayList<>();
+    }
+
+    public List<String> getAcceptPackages() {
+        return acceptPackages;
+    }
+
+    public void setAcceptPackages(List<String> acceptPackages) {
+        this.acceptPackages = acceptPackages;
+    }
+
+    public List<String> getRejectPackages() {
+        return rejectPackages;
+    }
+
+    public void setRejectPackages(List<String> rejectPackages) {
+        this.rejectPackages = rejectPackages;
+    }
+
+    public List<String> getAcceptJars() {
+        return acceptJars;
+    }
+
+    public void setAcceptJars(List<String> acceptJars) {
+        this.acceptJars = acceptJars;
+    }
+
+    public List<String> getRejectJars() {
+        return rejectJars;
+    }
+
+    public void setRejectJars(List<String> rejectJars) {
+        this.rejectJars = rejectJars;
+    }
+
+    /**
+     * @return a stable textual form of the rules; scan results recorded under different
+     *         rules cannot be reused
+     */
+    public String toKey() {
+        return String.join(",", acceptPackages) + "|" + String.join(",", rejectPackages) + "|"
+                + String.join(",", acceptJars) + "|" + String.join(",", rejectJars);
+    }
+}
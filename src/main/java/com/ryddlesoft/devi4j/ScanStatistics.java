@@ -0,0 +1,144 @@
+package com.ryddlesoft.devi4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Time and heap cost of a single scan, so that scan profiles can be compared per project.
+ */
+public class ScanStatistics {
+    private final ScanProfile profile;
+    private final long durationMillis;
+    private final long peakHeapBytes;
+    private final long retainedHeapBytes;
+    private final int classCount;
+    private final int rescannedPathCount;
+    private final int shardCount;
+    private final boolean fromSnapshot;
+
+    public ScanStatistics(ScanProfile profile, long durationMillis, long peakHeapBytes,
+                          long retainedHeapBytes, int classCount, int rescannedPathCount, int shardCount,
+                          boolean fromSnapshot) {
+        this.profile = profile;
+        this.durationMillis = durationMillis;
+        this.peakHeapBytes = peakHeapBytes;
+        this.retainedHeapBytes = retainedHeapBytes;
+        this.classCount = classCount;
+        this.rescannedPathCount = rescannedPathCount;
+        this.shardCount = shardCount;
+        this.fromSnapshot = fromSnapshot;
+    }
+
+    public ScanProfile getProfile() {
+        return profile;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return the highest heap usage observed while scanning
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * @return heap in use after the scan minus heap in use before it
+     */
+    public long getRetainedHeapBytes() {
+        return retainedHeapBytes;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getRescannedPathCount() {
+        return rescannedPathCount;
+    }
+
+    /**
+     * @return how many jar groups were scanned in parallel
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return true if the result was opened from a binary snapshot instead of being scanned
+     */
+    public boolean isFromSnapshot() {
+        return fromSnapshot;
+    }
+
+    @Override
+    public String toString() {
+        if (fromSnapshot) {
+            return String.format("%d classes from snapshot in %d ms (%s, retained %+d MB)",
+                    classCount, durationMillis, profile, retainedHeapBytes / (1024 * 1024));
+        }
+        return String.format("%d classes in %d ms (%s, %d jar(s) rescanned on %d thread(s), peak heap %d MB, retained %+d MB)",
+                classCount, durationMillis, profile, rescannedPathCount, shardCount,
+                peakHeapBytes / (1024 * 1024), retainedHeapBytes / (1024 * 1024));
+    }
+
+    /**
+     * Measures a scan between {@link #start(ScanProfile)} and {@link #stop(int, int, int)}.
+     */
+    public static class Recorder {
+        private final ScanProfile profile;
+        private final long startNanos;
+        private final long startHeap;
+
+        private Recorder(ScanProfile profile) {
+            this.profile = profile;
+            resetPeakHeap();
+            this.startHeap = usedHeap();
+            this.startNanos = System.nanoTime();
+        }
+
+        public static Recorder start(ScanProfile profile) {
+            return new Recorder(profile);
+        }
+
+        public ScanStatistics stop(int classCount, int rescannedPathCount, int shardCount) {
+            long durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            return new ScanStatistics(profile, durationMillis, peakHeap(), usedHeap() - startHeap,
+                    classCount, rescannedPathCount, shardCount, false);
+        }
+
+        public ScanStatistics stopFromSnapshot(int classCount) {
+            ScanStatistics scanned = stop(classCount, 0, 0);
+            return new ScanStatistics(profile, scanned.durationMillis, scanned.peakHeapBytes,
+                    scanned.retainedHeapBytes, classCount, 0, 0, true);
+        }
+
+        static void resetPeakHeap() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+
+        /**
+         * @return the sum of the heap pools' peak usage since the last {@link #resetPeakHeap()}
+         */
+        static long peakHeap() {
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            return peakHeap;
+        }
+
+        private static long usedHeap() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ryddlesoft.devi4j;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Scans a project off the Event Dispatch Thread. Progress reports and the final result are
+ * delivered to the {@link Callback} on the EDT; nothing is delivered once the worker was aborted.
+ */
+public class ScanWorker extends SwingWorker<DependencyScanner.ScanResultContainer, ScanProgress> {
+
+    public interface Callback {
+        void scanProgress(ScanProgress progress);
+
+        void scanFinished(DependencyScanner.ScanResultContainer result);
+
+        void scanFailed(Throwable error);
+    }
+
+    private final Project project;
+    private final ProjectManager projectManager;
+    private final DependencyScanner scanner;
+    private final Callback callback;
+    private final DependencyScanner.ScanResultContainer previous;
+
+    public ScanWorker(Project project, ProjectManager projectManager, Callback callback) {
+        this(project, projectManager, null, callback);
+    }
+
+    /**
+     * @param previous the project's last scan, whose cycles are updated rather than recomputed;
+     *                 null for a first scan
+     */
+    public ScanWorker(Project project, ProjectManager projectManager, DependencyScanner.ScanResultContainer previous,
+                      Callback callback) {
+        this.project = project;
+        this.previous = previous;
+        this.projectManager = projectManager;
+        this.scanner = new DependencyScanner(project.getScanRules(), project.getScanProfile(), project.getScanThreads());
+        this.callback = callback;
+    }
+
+    /**
+     * Stops the scan after the jar currently being read and suppresses any further callbacks.
+     */
+    public void abort() {
+        scanner.cancel();
+        cancel(true);
+    }
+
+    @Override
+    protected DependencyScanner.ScanResultContainer doInBackground() {
+        DependencyScanner.ScanResultContainer result = projectManager.scanProject(project, scanner, progress -> publish(progress));
+        if (previous != null) {
+            result.continueCyclesFrom(previous);
+        }
+        // Computed here so that selections in the tree only look up cycles and dependencies
+        result.getPackageCondensation();
+        result.getClassCondensation();
+        result.getPackageReachability();
+        result.getClassReachability();
+        return result;
+    }
+
+    @Override
+    protected void process(List<ScanProgress> chunks) {
+        if (!isCancelled()) {
+            chunks.forEach(callback::scanProgress);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            callback.scanFinished(get());
+        } catch (ExecutionException e) {
+            callback.scanFailed(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Approximate method metrics from a single pass over the tokens of a source file. No syntax
+ * tree is built, so a file is analyzed in a small fraction of the time a Spoon model takes; the
+ * results are meant to be shown at once and replaced by those of {@link CodeMetricsAnalyzer}
+ * as soon as they are available.
+ * <p>
+ * Complexity counts the constructs {@link CodeMetricsAnalyzer} counts, recognized by their
+ * keywords and operators, and the line count is the number of statements directly in a body.
+ * Top-level and member types are reported under their binary names, with constructors and
+ * initializer blocks named as there, and constructors count the implicit {@code super()} call as
+ * Spoon does. Local and anonymous classes and lambdas are skipped.
+ */
+public class StreamingMetricsAnalyzer {
+
+    private static final int EOF = -1;
+    // Single-character tokens are their character; everything else is above the char range
+    private static final int IDENT = 0x10000;
+    private static final int LITERAL = IDENT + 1;
+    private static final int AND = IDENT + 2;
+    private static final int OR = IDENT + 3;
+    private static final int ARROW = IDENT + 4;
+    private static final int OTHER_OPERATOR = IDENT + 5;
+
+    public List<ClassMetrics> analyzeFile(Path sourceFile) throws IOException {
+        return analyze(new String(Files.readAllBytes(sourceFile), StandardCharsets.UTF_8).toCharArray());
+    }
+
+    public List<ClassMetrics> analyze(char[] source) {
+        return new Pass(source).run();
+    }
+
+    private static class Frame {
+        final Frame parent;
+
+        Frame(Frame parent) {
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * A type body, or the compilation unit itself, read one member declaration at a time.
+     */
+    private static final class TypeFrame extends Frame {
+        final String binaryName;
+        final String simpleName;
+        final ClassMetrics metrics; // null for types that are not reported
+        final boolean localClass;
+        boolean enumConstants;
+
+        // The member declaration read so far
+        int memberTokens;
+        boolean isStatic;
+        boolean assigned;
+        boolean packageDeclaration;
+        boolean typeKeyword;
+        boolean enumKeyword;
+        String typeName;
+        int methodNameStart = -1;
+        int methodNameEnd;
+        int parameterDepth;
+        int angleDepth;
+        int commas;
+        boolean hasParameters;
+        boolean afterParameters;
+        boolean defaultValue;
+        int otherParens;
+
+        TypeFrame(Frame parent, String binaryName, String simpleName, ClassMetrics metrics, boolean localClass) {
+            super(parent);
+            this.binaryName = binaryName;
+            this.simpleName = simpleName;
+            this.metrics = metrics;
+            this.localClass = localClass;
+        }
+
+        void resetMember() {
+            memberTokens = 0;
+            isStatic = false;
+            assigned = false;
+            packageDeclaration = false;
+            typeKeyword = false;
+            enumKeyword = false;
+            typeName = null;
+            methodNameStart = -1;
+            parameterDepth = 0;
+            angleDepth = 0;
+            commas = 0;
+            hasParameters = false;
+            afterParameters = false;
+            defaultValue = false;
+            otherParens = 0;
+        }
+    }
+
+    /**
+     * The body of a method, constructor, initializer or lambda, or a brace-delimited initializer
+     * expression of a field.
+     */
+    private static final class BodyFrame extends Frame {
+        final MethodMetrics metrics; // null for bodies that are not reported
+        final boolean isConstructor;
+        int braceDepth = 1;
+        int parenDepth;
+        boolean statementStart = true;
+        boolean pendingNew;
+        int typeArgumentAngles;
+        // Top-level facts of the current statement, to tell declarators from generic arguments
+        boolean statementAssigned;
+        boolean statementCalls;
+        int statementAngles;
+        final BitSet newArgumentParens = new BitSet();
+        boolean closedNewArguments;
+        boolean localType;
+        boolean caseLabel;
+        boolean lambdaArrow;
+        int lambdaParen = -1; // Paren and brace depth of the expression lambda being skipped
+        int lambdaBrace;
+        boolean constructorCall;
+        int[] doDepths = new int[4];
+        int openDos;
+        int forHeaderParen = -1;
+        int forHeaderQuestions;
+
+        BodyFrame(Frame parent, MethodMetrics metrics) {
+            super(parent);
+            this.metrics = metrics;
+            this.isConstructor = metrics != null && metrics.getMethodName().equals("<init>");
+            if (isConstructor) {
+                metrics.setLineCount(1);
+            }
+        }
+    }
+
+    private static final class Pass {
+        private static final int ANNOTATION_NONE = 0;
+        private static final int ANNOTATION_NAME = 1;
+        private static final int ANNOTATION_AFTER_NAME = 2;
+        private static final int ANNOTATION_ARGUMENTS = 3;
+
+        private final char[] source;
+        private final List<ClassMetrics> classes = new ArrayList<>();
+        private final StringBuilder packageName = new StringBuilder();
+        private Frame frame;
+        private int pos;
+        private int start;
+        private int end;
+        private int previous = EOF;
+        private int previousStart;
+        private int previousEnd;
+        private int annotationState;
+        private int annotationParens;
+
+        Pass(char[] source) {
+            this.source = source;
+        }
+
+        List<ClassMetrics> run() {
+            frame = new TypeFrame(null, null, null, null, false);
+            int token;
+            while ((token = next()) != EOF) {
+                if (frame instanceof TypeFrame) {
+                    memberToken((TypeFrame) frame, token);
+                } else {
+                    bodyToken((BodyFrame) frame, token);
+                }
+                previous = token;
+                previousStart = start;
+                previousEnd = end;
+            }
+            return classes;
+        }
+
+        // Member declarations
+
+        private void memberToken(TypeFrame type, int token) {
+            if (skipAnnotation(token)) {
+                return;
+            }
+            if (type.enumConstants) {
+                enumConstantToken(type, token);
+                return;
+            }
+            if (type.parameterDepth > 0 && !(token == ')' && type.parameterDepth == 1)) {
+                type.hasParameters = true;
+            }
+            switch (token) {
+                case IDENT:
+                    memberIdentifier(type);
+                    break;
+                case '(':
+                    if (type.parameterDepth > 0) {
+                        type.parameterDepth++;
+                    } else if (type.otherParens == 0 && !type.assigned && !type.typeKeyword && type.typeName == null
+                            && type.methodNameStart < 0 && previous == IDENT) {
+                        type.methodNameStart = previousStart;
+                        type.methodNameEnd = previousEnd;
+                        type.parameterDepth = 1;
+                    } else {
+                        type.otherParens++;
+                    }
+                    break;
+                case ')':
+                    if (type.parameterDepth > 0) {
+                        if (--type.parameterDepth == 0) {
+                            type.afterParameters = true;
+                        }
+                    } else if (type.otherParens > 0) {
+                        type.otherParens--;
+                    }
+                    break;
+                case ',':
+                    if (type.parameterDepth == 1 && type.angleDepth == 0) {
+                        type.commas++;
+                    }
+                    break;
+                case '<':
+                    if (type.parameterDepth > 0) {
+                        type.angleDepth++;
+                    }
+                    break;
+                case '>':
+                    if (type.parameterDepth > 0) {
+                        type.angleDepth--;
+                    }
+                    break;
+                case '=':
+                    if (type.parameterDepth == 0 && type.otherParens == 0) {
+                        type.assigned = true;
+                    }
+                    break;
+                case ';':
+                    endMember(type);
+                    return;
+                case '{':
+                    openMemberBody(type);
+                    return;
+                case '}':
+                    if (type.parent != null) {
+                        closeFrame();
+                    }
+                    return;
+                default:
+                    break;
+            }
+            type.memberTokens++;
+        }
+
+        private void memberIdentifier(TypeFrame type) {
+            if (type.packageDeclaration) {
+                if (packageName.length() > 0) {
+                    packageName.append('.');
+                }
+                packageName.append(source, start, end - start);
+            } else if (type.typeKeyword) {
+                type.typeName = text(start, end);
+                type.typeKeyword = false;
+            } else if (type.parameterDepth == 0 && type.otherParens == 0 && !type.assigned
+                    && type.typeName == null && type.methodNameStart < 0) {
+                if (previous != '.' && (is("class") || is("interface") || is("enum"))) {
+                    type.typeKeyword = true;
+                    type.enumKeyword = is("enum");
+                } else if (previous == IDENT && previousIs("record")) {
+                    type.typeName = text(start, end);
+                } else if (type.memberTokens == 0 && is("static")) {
+                    type.isStatic = true;
+                } else if (type.memberTokens == 0 && type.parent == null && is("package")) {
+                    type.packageDeclaration = true;
+                }
+            } else if (type.afterParameters && is("default")) {
+                type.defaultValue = true; // Annotation element default, possibly an array in braces
+            }
+        }
+
+        private void enumConstantToken(TypeFrame type, int token) {
+            switch (token) {
+                case '(':
+                    type.otherParens++;
+                    break;
+                case ')':
+                    type.otherParens--;
+                    break;
+                case '{':
+                    // Braces in constant arguments, or the class body of a constant
+                    frame = (type.otherParens > 0) ? new BodyFrame(type, null) : new TypeFrame(type, null, null, null, false);
+                    break;
+                case ';':
+                    type.enumConstants = false;
+                    type.resetMember();
+                    break;
+                case '}':
+                    closeFrame();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endMember(TypeFrame type) {
+            if (type.methodNameStart >= 0 && !type.assigned && type.otherParens == 0 && type.metrics != null) {
+                addMethod(type, methodName(type)); // Abstract, interface or native method
+            }
+            type.resetMember();
+        }
+
+        private void openMemberBody(TypeFrame type) {
+            if (type.typeName != null && type.parameterDepth == 0 && type.otherParens == 0) {
+                ClassMetrics metrics = null;
+                String binaryName = null;
+                if (type.parent == null || type.metrics != null) {
+                    binaryName = (type.parent != null) ? type.binaryName + "$" + type.typeName
+                            : (packageName.length() > 0) ? packageName + "." + type.typeName : type.typeName;
+                    metrics = new ClassMetrics(binaryName);
+                    classes.add(metrics);
+                }
+                TypeFrame nested = new TypeFrame(type, binaryName, type.typeName, metrics, false);
+                nested.enumConstants = type.enumKeyword;
+                type.resetMember();
+                frame = nested;
+            } else if (type.methodNameStart >= 0 && type.afterParameters && !type.assigned && !type.defaultValue
+                    && type.otherParens == 0) {
+                MethodMetrics metrics = (type.metrics != null) ? addMethod(type, methodName(type)) : null;
+                type.resetMember();
+                frame = new BodyFrame(type, metrics);
+            } else if (type.memberTokens == 0 || (type.memberTokens == 1 && type.isStatic)) {
+                MethodMetrics metrics = (type.metrics != null) ? addMethod(type, type.isStatic ? "<clinit>" : "<init-block>") : null;
+                type.resetMember();
+                frame = new BodyFrame(type, metrics);
+            } else {
+                // Array initializers, anonymous classes and lambdas of a field, module bodies;
+                // the declaration goes on after the closing brace
+                frame = new BodyFrame(type, null);
+            }
+        }
+
+        private String methodName(TypeFrame type) {
+            String name = text(type.methodNameStart, type.methodNameEnd);
+            return name.equals(type.simpleName) ? "<init>" : name;
+        }
+
+        private MethodMetrics addMethod(TypeFrame type, String name) {
+            MethodMetrics metrics = new MethodMetrics(name);
+            metrics.setParameterCount(type.hasParameters ? type.commas + 1 : 0);
+            metrics.setCyclomaticComplexity(1);
+            type.metrics.addMethodMetrics(metrics);
+            return metrics;
+        }
+
+        /**
+         * Consumes annotations between member declarations, including their arguments.
+         *
+         * @return true if the token belongs to an annotation
+         */
+        private boolean skipAnnotation(int token) {
+            switch (annotationState) {
+                case ANNOTATION_NAME:
+                    if (token == IDENT && is("interface")) {
+                        annotationState = ANNOTATION_NONE; // @interface declares an annotation type
+                        return false;
+                    }
+                    annotationState = ANNOTATION_AFTER_NAME;
+                    return true;
+                case ANNOTATION_AFTER_NAME:
+                    if (token == '.' || token == '@') {
+                        annotationState = ANNOTATION_NAME;
+                        return true;
+                    }
+                    if (token == '(') {
+                        annotationState = ANNOTATION_ARGUMENTS;
+                        annotationParens = 1;
+                        return true;
+                    }
+                    annotationState = ANNOTATION_NONE;
+                    return false;
+                case ANNOTATION_ARGUMENTS:
+                    if (token == '(') {
+                        annotationParens++;
+                    } else if (token == ')' && --annotationParens == 0) {
+                        annotationState = ANNOTATION_NONE;
+                    }
+                    return true;
+                default:
+                    if (token == '@') {
+                        annotationState = ANNOTATION_NAME;
+                        return true;
+                    }
+                    return false;
+            }
+        }
+
+        // Bodies
+
+        private void bodyToken(BodyFrame body, int token) {
+            boolean closedNewArguments = body.closedNewArguments;
+            body.closedNewArguments = false;
+            boolean doWhile = token == IDENT && body.openDos > 0 && body.doDepths[body.openDos - 1] == body.braceDepth
+                    && (previous == '}' || previous == ';') && is("while");
+            if (body.constructorCall) {
+                body.constructorCall = false;
+                if (token == '(') {
+                    body.metrics.setLineCount(body.metrics.getLineCount() - 1); // Replaces the implicit super()
+                }
+            }
+            if (body.metrics != null && body.braceDepth == 1 && body.parenDepth == 0) {
+                countStatement(body, token, doWhile);
+            }
+            if (previous == ARROW && body.lambdaArrow && token != '{' && body.lambdaParen < 0) {
+                body.lambdaParen = body.parenDepth;
+                body.lambdaBrace = body.braceDepth;
+            }
+
+            switch (token) {
+                case IDENT:
+                    bodyIdentifier(body, doWhile);
+                    break;
+                case AND:
+                case OR:
+                    addComplexity(body, 1);
+                    break;
+                case '?':
+                    // Not a wildcard as in List<?> or Map<?, ?>
+                    if (previous != '<' && previous != ',') {
+                        addComplexity(body, 1);
+                        if (body.parenDepth == body.forHeaderParen) {
+                            body.forHeaderQuestions++;
+                        }
+                    }
+                    break;
+                case ':':
+                    body.caseLabel = false;
+                    if (body.parenDepth == body.forHeaderParen) {
+                        if (body.forHeaderQuestions > 0) {
+                            body.forHeaderQuestions--;
+                        } else {
+                            addComplexity(body, -1); // An enhanced for, which is not counted
+                            body.forHeaderParen = -1;
+                        }
+                    }
+                    break;
+                case ARROW:
+                    body.lambdaArrow = !body.caseLabel;
+                    body.caseLabel = false;
+                    break;
+                case '(':
+                    if (isDeclarationPrefix(body)) {
+                        body.statementCalls = true;
+                    }
+                    body.parenDepth++;
+                    if (body.pendingNew) {
+                        body.newArgumentParens.set(body.parenDepth);
+                        body.pendingNew = false;
+                    }
+                    break;
+                case ')':
+                    if (body.parenDepth == body.lambdaParen) {
+                        body.lambdaParen = -1;
+                    }
+                    body.closedNewArguments = body.newArgumentParens.get(body.parenDepth);
+                    body.newArgumentParens.clear(body.parenDepth);
+                    if (body.parenDepth == body.forHeaderParen) {
+                        body.forHeaderParen = -1;
+                    }
+                    body.parenDepth = Math.max(0, body.parenDepth - 1);
+                    break;
+                case ',':
+                case ';':
+                    if (body.parenDepth == body.lambdaParen && body.braceDepth == body.lambdaBrace) {
+                        body.lambdaParen = -1;
+                    }
+                    if (token == ',' && body.metrics != null && body.braceDepth == 1 && body.parenDepth == 0
+                            && body.typeArgumentAngles == 0 && !body.localType && (body.statementAssigned || (!body.statementCalls && body.statementAngles == 0))) {
+                        // Spoon splits int a = 1, b; into one statement per variable
+                        body.metrics.setLineCount(body.metrics.getLineCount() + 1);
+                    }
+                    if (token == ';') {
+                        body.pendingNew = false;
+                    }
+                    break;
+                case '=':
+                    if (body.braceDepth == 1 && body.parenDepth == 0) {
+                        body.statementAssigned = true;
+                    }
+                    break;
+                case '<':
+                    if (body.pendingNew || previous == '.') {
+                        body.typeArgumentAngles++;
+                    } else if (isDeclarationPrefix(body)) {
+                        body.statementAngles++;
+                    }
+                    break;
+                case '>':
+                    if (body.typeArgumentAngles > 0) {
+                        body.typeArgumentAngles--;
+                    } else if (isDeclarationPrefix(body) && body.statementAngles > 0) {
+                        body.statementAngles--;
+                    }
+                    break;
+                case '[':
+                    body.pendingNew = false;
+                    break;
+                case '{':
+                    body.pendingNew = false;
+                    if (previous == ARROW && body.lambdaArrow) {
+                        frame = new BodyFrame(body, null);
+                    } else if (closedNewArguments) {
+                        frame = new TypeFrame(body, null, null, null, false);
+                    } else if (body.localType) {
+                        body.localType = false;
+                        frame = new TypeFrame(body, null, null, null, true);
+                    } else {
+                        body.braceDepth++;
+                    }
+                    break;
+                case '}':
+                    if (body.braceDepth == body.lambdaBrace) {
+                        body.lambdaParen = -1;
+                    }
+                    if (--body.braceDepth == 0) {
+                        closeFrame();
+                    } else if (body.braceDepth == 1 && body.parenDepth == 0) {
+                        body.statementStart = true;
+                        resetStatement(body);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void bodyIdentifier(BodyFrame body, boolean doWhile) {
+            if (is("if")) {
+                addComplexity(body, 1);
+            } else if (is("for")) {
+                addComplexity(body, 1);
+                body.forHeaderParen = body.parenDepth + 1;
+                body.forHeaderQuestions = 0;
+            } else if (is("while")) {
+                if (doWhile) {
+                    body.openDos--;
+                } else {
+                    addComplexity(body, 1);
+                }
+            } else if (is("do")) {
+                addComplexity(body, 1);
+                if (body.openDos == body.doDepths.length) {
+                    body.doDepths = Arrays.copyOf(body.doDepths, body.openDos * 2);
+                }
+                body.doDepths[body.openDos++] = body.braceDepth;
+            } else if (is("case") || is("default")) {
+                addComplexity(body, 1);
+                body.caseLabel = true;
+            } else if (is("new")) {
+                body.pendingNew = true;
+            } else if (previous != '.' && (is("class") || is("interface") || is("enum"))) {
+                body.localType = true;
+            }
+        }
+
+        // Before any '=' or '(' at the top level of a statement, '<' and '>' can only be generics
+        private static boolean isDeclarationPrefix(BodyFrame body) {
+            return body.braceDepth == 1 && body.parenDepth == 0 && !body.statementAssigned && !body.statementCalls;
+        }
+
+        private void countStatement(BodyFrame body, int token, boolean doWhile) {
+            if (body.statementStart) {
+                body.statementStart = false;
+                boolean continuation = doWhile || (token == IDENT && (is("else") || is("catch") || is("finally")));
+                if (token != '}' && token != ';' && !continuation) {
+                    body.metrics.setLineCount(body.metrics.getLineCount() + 1);
+                    if (body.isConstructor && body.metrics.getLineCount() == 2 && (is("this") || is("super"))) {
+                        body.constructorCall = true; // An explicit this(...) or super(...) if a '(' follows
+                    }
+                }
+            }
+            if (token == ';') {
+                body.statementStart = true;
+                resetStatement(body);
+            }
+        }
+
+        private static void resetStatement(BodyFrame body) {
+            body.statementAssigned = false;
+            body.statementCalls = false;
+            body.statementAngles = 0;
+        }
+
+        private static void addComplexity(BodyFrame body, int delta) {
+            if (body.metrics != null && body.lambdaParen < 0) {
+                body.metrics.setCyclomaticComplexity(body.metrics.getCyclomaticComplexity() + delta);
+            }
+        }
+
+        private void closeFrame() {
+            Frame closed = frame;
+            frame = closed.parent;
+            if (closed instanceof TypeFrame && ((TypeFrame) closed).localClass) {
+                BodyFrame body = (BodyFrame) frame;
+                body.statementStart = body.braceDepth == 1 && body.parenDepth == 0;
+            }
+        }
+
+        // Tokens
+
+        private int next() {
+            char[] s = source;
+            int n = s.length;
+            while (pos < n) {
+                char c = s[pos];
+                if (c <= ' ') {
+                    pos++;
+                } else if (c == '/' && pos + 1 < n && s[pos + 1] == '/') {
+                    while (pos < n && s[pos] != '\n') {
+                        pos++;
+                    }
+                } else if (c == '/' && pos + 1 < n && s[pos + 1] == '*') {
+                    pos += 2;
+                    while (pos < n && !(s[pos] == '*' && pos + 1 < n && s[pos + 1] == '/')) {
+                        pos++;
+                    }
+                    pos = Math.min(n, pos + 2);
+                } else {
+                    break;
+                }
+            }
+            start = pos;
+            if (pos >= n) {
+                end = pos;
+                return EOF;
+            }
+            char c = s[pos++];
+            int token;
+            if (Character.isJavaIdentifierStart(c)) {
+                while (pos < n && Character.isJavaIdentifierPart(s[pos])) {
+                    pos++;
+                }
+                token = IDENT;
+            } else if ((c >= '0' && c <= '9') || (c == '.' && pos < n && s[pos] >= '0' && s[pos] <= '9')) {
+                skipNumber();
+                token = LITERAL;
+            } else if (c == '"') {
+                skipString();
+                token = LITERAL;
+            } else if (c == '\'') {
+                skipQuoted('\'');
+                token = LITERAL;
+            } else {
+                token = operator(c);
+            }
+            end = pos;
+            return token;
+        }
+
+        private int operator(char c) {
+            if (pos < source.length) {
+                char d = source[pos];
+                if (c == '&' && d == '&') {
+                    pos++;
+                    return AND;
+                }
+                if (c == '|' && d == '|') {
+                    pos++;
+                    return OR;
+                }
+                if (c == '-' && d == '>') {
+                    pos++;
+                    return ARROW;
+                }
+                if ((d == '=' && (c == '=' || c == '!' || c == '<' || c == '>')) || (c == ':' && d == ':')) {
+                    pos++;
+                    return OTHER_OPERATOR;
+                }
+            }
+            // Shifts stay single '<' and '>' tokens, which keeps nested generics balanced
+            return c;
+        }
+
+        private void skipNumber() {
+            char[] s = source;
+            while (pos < s.length) {
+                char c = s[pos];
+                if (Character.isJavaIdentifierPart(c) || c == '.') {
+                    pos++;
+                } else if ((c == '+' || c == '-') && "eEpP".indexOf(s[pos - 1]) >= 0) {
+                    pos++; // Exponent sign
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void skipString() {
+            char[] s = source;
+            if (pos + 1 < s.length && s[pos] == '"' && s[pos + 1] == '"') {
+                pos += 2; // Text block
+                while (pos < s.length) {
+                    if (s[pos] == '\\') {
+                        pos += 2;
+                    } else if (s[pos] == '"' && pos + 2 < s.length && s[pos + 1] == '"' && s[pos + 2] == '"') {
+                        pos += 3;
+                        return;
+                    } else {
+                        pos++;
+                    }
+                }
+                pos = s.length;
+                return;
+            }
+            skipQuoted('"');
+        }
+
+        private void skipQuoted(char quote) {
+            char[] s = source;
+            while (pos < s.length && s[pos] != quote && s[pos] != '\n') {
+                pos += (s[pos] == '\\') ? 2 : 1;
+            }
+            pos = Math.min(s.length, pos + 1);
+        }
+
+        private boolean is(String word) {
+            return matches(start, end, word);
+        }
+
+        private boolean previousIs(String word) {
+            return matches(previousStart, previousEnd, word);
+        }
+
+        private boolean matches(int from, int to, String word) {
+            if (to - from != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (source[from + i] != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String text(int from, int to) {
+            return new String(source, from, to - from);
+        }
+    }
+}
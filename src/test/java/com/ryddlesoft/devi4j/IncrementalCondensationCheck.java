@@ -0,0 +1,344 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks {@link IncrementalCondensation} against a full Tarjan pass: random graphs get random
+ * batches of edge inserts and deletes, and after every batch the components and their cycle
+ * flags must equal those of a {@link Condensation} of the same edges. The same holds for a
+ * {@link CycleDetector.ComponentTracker} fed rescans of named graphs that lose and gain nodes.
+ * A final run on one large layered graph compares the cost of editing one class at a time with
+ * recomputing everything. Run from the test classpath, optionally with a seed; the result is
+ * written to standard output as a single {@code incremental-check} record.
+ */
+public class IncrementalCondensationCheck {
+
+    private static final int MAX_NODES = 300;
+    private static final int BATCHES_PER_GRAPH = 40;
+    private static final int GRAPHS = 500;
+    private static final int RESCANS_PER_GRAPH = 10;
+    private static final int LARGE_NODES = 200_000;
+    private static final int LARGE_EDITS = 2_000;
+
+    private final long seed;
+    private final int graphs;
+    private final int largeNodes;
+
+    public IncrementalCondensationCheck(long seed, int graphs) {
+        this(seed, graphs, LARGE_NODES);
+    }
+
+    /**
+     * @param largeNodes size of the graph the cost is measured on
+     */
+    public IncrementalCondensationCheck(long seed, int graphs, int largeNodes) {
+        this.seed = seed;
+        this.graphs = Math.max(1, graphs);
+        this.largeNodes = Math.max(100, largeNodes);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed;
+        try {
+            seed = (args.length > 0) ? Long.parseLong(args[0]) : System.nanoTime();
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: IncrementalCondensationCheck [seed]");
+            System.exit(1);
+            return;
+        }
+        Map<String, Object> record = new IncrementalCondensationCheck(seed, GRAPHS).run();
+        NdjsonWriter out = new NdjsonWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        out.write(record);
+        out.flush();
+        if ((int) record.get("mismatches") > 0) {
+            System.err.println("Incremental cycles differ from full recomputation with seed " + seed + ": "
+                    + record.get("firstMismatch"));
+            System.exit(1);
+        }
+        System.err.println("Incremental cycles match full recomputation after " + record.get("updates") + " updates; "
+                + record.get("incrementalMicrosPerEdit") + " us per edit against " + record.get("fullRecomputationMicros")
+                + " us for a full pass");
+    }
+
+    /**
+     * @return the results as an {@code incremental-check} record
+     */
+    public Map<String, Object> run() {
+        Random random = new Random(seed);
+        int updates = 0;
+        int batches = 0;
+        int mismatches = 0;
+        String firstMismatch = null;
+        for (int g = 0; g < graphs; g++) {
+            int nodeCount = 1 + random.nextInt(MAX_NODES);
+            // Between a forest and a dense tangle, so both merges and splits happen
+            double density = 0.5 + random.nextDouble() * 3;
+            IncrementalCondensation incremental = new IncrementalCondensation(randomGraph(random, nodeCount, density, 0.2));
+            for (int batch = 0; batch < BATCHES_PER_GRAPH; batch++) {
+                updates += applyRandomBatch(random, incremental);
+                batches++;
+                String mismatch = compare(incremental);
+                if (mismatch != null) {
+                    mismatches++;
+                    if (firstMismatch == null) {
+                        firstMismatch = "graph " + g + ", batch " + batch + ": " + mismatch;
+                    }
+                    break;
+                }
+            }
+        }
+
+        int rescans = 0;
+        for (int g = 0; g < graphs; g++) {
+            String mismatch = checkRescans(random);
+            rescans += RESCANS_PER_GRAPH;
+            if (mismatch != null) {
+                mismatches++;
+                if (firstMismatch == null) {
+                    firstMismatch = "rescanned graph " + g + ": " + mismatch;
+                }
+            }
+        }
+
+        // Cost on a large layered graph with a few back edges, edited one class at a time
+        DependencyGraph.Adjacency large = randomGraph(random, largeNodes, 2.5, 0.001);
+        IncrementalCondensation incremental = new IncrementalCondensation(large);
+        long startNanos = System.nanoTime();
+        for (int edit = 0; edit < LARGE_EDITS; edit++) {
+            int node = random.nextInt(largeNodes);
+            int[] targets = incremental.neighbors(node);
+            if (targets.length > 0 && random.nextBoolean()) {
+                targets[random.nextInt(targets.length)] = node + 1 + random.nextInt(largeNodes / 100);
+            } else {
+                targets = Arrays.copyOf(targets, targets.length + 1);
+                targets[targets.length - 1] = node + 1 + random.nextInt(largeNodes / 100);
+            }
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = Math.min(targets[i], largeNodes - 1);
+            }
+            incremental.replaceNeighbors(node, targets);
+        }
+        long incrementalNanos = System.nanoTime() - startNanos;
+        startNanos = System.nanoTime();
+        new Condensation(incremental.toAdjacency());
+        long fullNanos = System.nanoTime() - startNanos;
+        String largeMismatch = compare(incremental);
+        if (largeMismatch != null) {
+            mismatches++;
+            if (firstMismatch == null) {
+                firstMismatch = "large graph: " + largeMismatch;
+            }
+        }
+
+        Map<String, Object> record = NdjsonWriter.record("incremental-check");
+        record.put("seed", seed);
+        record.put("graphs", graphs);
+        record.put("batches", batches);
+        record.put("updates", updates);
+        record.put("rescans", rescans);
+        record.put("mismatches", mismatches);
+        if (firstMismatch != null) {
+            record.put("firstMismatch", firstMismatch);
+        }
+        record.put("largeNodes", largeNodes);
+        record.put("largeEdges", incremental.toAdjacency().getEdgeCount());
+        record.put("largeEdits", LARGE_EDITS);
+        record.put("visitedEdgesPerEdit", incremental.getVisitedEdges() / LARGE_EDITS);
+        record.put("incrementalMicrosPerEdit", incrementalNanos / 1000 / LARGE_EDITS);
+        record.put("fullRecomputationMicros", fullNanos / 1000);
+        return record;
+    }
+
+    /**
+     * Rescans a graph of named nodes several times, each time dropping some names, adding new
+     * ones and redrawing some edges, as a recompiled project would.
+     *
+     * @return what the tracker got wrong on one of the rescans, or null
+     */
+    private static String checkRescans(Random random) {
+        List<String> names = new ArrayList<>();
+        int nextName = 0;
+        for (int count = 1 + random.nextInt(MAX_NODES); nextName < count; nextName++) {
+            names.add("n" + nextName);
+        }
+        DependencyGraph.Adjacency adjacency = randomGraph(random, names.size(), 0.5 + random.nextDouble() * 3, 0.2);
+        List<String> scanNames = new ArrayList<>(names);
+        CycleDetector.ComponentTracker tracker =
+                new CycleDetector.ComponentTracker(scanNames::get, adjacency, new Condensation(adjacency));
+        for (int rescan = 0; rescan < RESCANS_PER_GRAPH; rescan++) {
+            // Scans number their nodes afresh, so shuffle the names to move every id
+            List<String> previousNames = scanNames;
+            DependencyGraph.Adjacency previous = adjacency;
+            Map<String, Integer> previousId = new HashMap<>();
+            for (int id = 0; id < previousNames.size(); id++) {
+                previousId.put(previousNames.get(id), id);
+            }
+            scanNames = new ArrayList<>();
+            for (String name : previousNames) {
+                if (random.nextInt(8) > 0) {
+                    scanNames.add(name);
+                }
+            }
+            for (int added = random.nextInt(8); added > 0; added--) {
+                scanNames.add("n" + nextName++);
+            }
+            if (scanNames.isEmpty()) {
+                scanNames.add("n" + nextName++);
+            }
+            Collections.shuffle(scanNames, random);
+            int nodeCount = scanNames.size();
+            int[] from = new int[16];
+            int[] to = new int[16];
+            int edgeCount = 0;
+            for (int id = 0; id < nodeCount; id++) {
+                Integer old = previousId.get(scanNames.get(id));
+                boolean redraw = old == null || random.nextInt(4) == 0;
+                int degree = redraw ? random.nextInt(4) : previous.degree(old);
+                for (int i = 0; i < degree; i++) {
+                    int target = redraw
+                            ? random.nextInt(nodeCount)
+                            : scanNames.indexOf(previousNames.get(previous.target(old, i)));
+                    if (target < 0) {
+                        continue; // The dependency was dropped with its class
+                    }
+                    if (edgeCount == from.length) {
+                        from = Arrays.copyOf(from, edgeCount * 2);
+                        to = Arrays.copyOf(to, edgeCount * 2);
+                    }
+                    from[edgeCount] = id;
+                    to[edgeCount++] = target;
+                }
+            }
+            adjacency = DependencyGraph.Adjacency.fromEdges(nodeCount, from, to, edgeCount);
+            List<String> currentNames = scanNames;
+            String mismatch = compare(tracker.update(currentNames::get, adjacency), new Condensation(adjacency), adjacency);
+            if (mismatch != null) {
+                return "rescan " + rescan + ": " + mismatch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return what differs between two condensations of {@code adjacency}, or null; the
+     *         component ids must form a topological order, but may differ from Tarjan's
+     */
+    private static String compare(Condensation actual, Condensation expected, DependencyGraph.Adjacency adjacency) {
+        if (actual.getComponentCount() != expected.getComponentCount()) {
+            return expected.getComponentCount() + " components expected, found " + actual.getComponentCount();
+        }
+        for (int node = 0; node < adjacency.getNodeCount(); node++) {
+            int[] actualMembers = actual.getMembers(actual.getComponent(node));
+            int[] expectedMembers = expected.getMembers(expected.getComponent(node));
+            if (!Arrays.equals(actualMembers, expectedMembers)) {
+                return "node " + node + " is with " + Arrays.toString(actualMembers) + " instead of "
+                        + Arrays.toString(expectedMembers);
+            }
+            if (actual.isCyclic(actual.getComponent(node)) != expected.isCyclic(expected.getComponent(node))) {
+                return "component of node " + node + " has the wrong cycle flag";
+            }
+            for (int i = 0; i < adjacency.degree(node); i++) {
+                int target = adjacency.target(node, i);
+                if (actual.getComponent(target) > actual.getComponent(node)) {
+                    return "edge " + node + " -> " + target + " leads to a higher component id";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param backEdgeShare share of edges to any node; the others lead a little further on,
+     *                      as in a layered code base
+     */
+    private static DependencyGraph.Adjacency randomGraph(Random random, int nodeCount, double density,
+                                                         double backEdgeShare) {
+        int edgeCount = (int) (nodeCount * density);
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            from[i] = random.nextInt(nodeCount);
+            to[i] = (random.nextDouble() >= backEdgeShare)
+                    ? Math.min(nodeCount - 1, from[i] + 1 + random.nextInt(Math.max(1, nodeCount / 10)))
+                    : random.nextInt(nodeCount);
+        }
+        return DependencyGraph.Adjacency.fromEdges(nodeCount, from, to, edgeCount);
+    }
+
+    /**
+     * @return the number of edge updates in the batch
+     */
+    private static int applyRandomBatch(Random random, IncrementalCondensation incremental) {
+        if (random.nextInt(10) == 0) {
+            incremental.addNode();
+        }
+        int nodeCount = incremental.getNodeCount();
+        int size = 1 + random.nextInt(12);
+        int[] from = new int[size];
+        int[] to = new int[size];
+        int kind = random.nextInt(5);
+        if (kind == 0) {
+            int node = random.nextInt(nodeCount);
+            int[] targets = incremental.neighbors(node);
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = (random.nextInt(4) == 0) ? random.nextInt(nodeCount) : targets[i];
+            }
+            incremental.replaceNeighbors(node, targets);
+            return targets.length;
+        } else if (kind <= 2) {
+            for (int i = 0; i < size; i++) {
+                from[i] = random.nextInt(nodeCount);
+                to[i] = (random.nextInt(20) == 0) ? from[i] : random.nextInt(nodeCount);
+            }
+            incremental.addEdges(from, to, size);
+        } else {
+            // Existing edges, with the odd missing one that must be ignored
+            for (int i = 0; i < size; i++) {
+                from[i] = random.nextInt(nodeCount);
+                int[] successors = incremental.neighbors(from[i]);
+                to[i] = (successors.length > 0 && random.nextInt(10) > 0)
+                        ? successors[random.nextInt(successors.length)]
+                        : random.nextInt(nodeCount);
+            }
+            incremental.removeEdges(from, to, size);
+        }
+        return size;
+    }
+
+    /**
+     * @return what differs from a full recomputation, or null
+     */
+    private static String compare(IncrementalCondensation incremental) {
+        Condensation full = new Condensation(incremental.toAdjacency());
+        if (full.getComponentCount() != incremental.getComponentCount()) {
+            return full.getComponentCount() + " components expected, found " + incremental.getComponentCount();
+        }
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int node = 0; node < incremental.getNodeCount(); node++) {
+            int component = incremental.getComponent(node);
+            if (expected.putIfAbsent(component, node) == null) {
+                // Checking the first node of each component covers the others
+                int[] actualMembers = incremental.getMembers(component);
+                int[] expectedMembers = full.getMembers(full.getComponent(node));
+                if (!Arrays.equals(actualMembers, expectedMembers)) {
+                    return "node " + node + " is with " + Arrays.toString(actualMembers) + " instead of "
+                            + Arrays.toString(expectedMembers);
+                }
+                if (incremental.isCyclic(component) != full.isCyclic(full.getComponent(node))) {
+                    return "component of node " + node + " has the wrong cycle flag";
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.ryddlesoft.devi4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs a short {@link IncrementalCondensationCheck} with fixed seeds, so that a regression in
+ * the incremental components or the rescan tracking fails the build. Longer seeded runs go
+ * through the check's own {@code main}.
+ */
+class IncrementalCondensationTest {
+
+    private static final int GRAPHS = 40;
+    private static final int LARGE_NODES = 5_000;
+
+    @Test
+    void matchesFullRecomputation() {
+        for (long seed = 1; seed <= 3; seed++) {
+            Map<String, Object> record = new IncrementalCondensationCheck(seed, GRAPHS, LARGE_NODES).run();
+            assertEquals(0, record.get("mismatches"), () -> "seed " + record.get("seed") + ": " + record.get("firstMismatch"));
+        }
+    }
+}
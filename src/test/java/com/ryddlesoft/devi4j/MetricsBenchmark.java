@@ -0,0 +1,131 @@
+package com.ryddlesoft.devi4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares {@link StreamingMetricsAnalyzer} with the Spoon analysis on a project's sources:
+ * the time each takes on one thread, and how often the approximate method metrics agree with
+ * the precise ones. Run from the test classpath with the source directories as arguments; the
+ * result is written to standard output as a single {@code benchmark} record.
+ */
+public class MetricsBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private final List<String> sourcePaths;
+    private final int rounds;
+
+    /**
+     * @param rounds streaming passes to time; the fastest one counts, after one warm-up pass
+     */
+    public MetricsBenchmark(List<String> sourcePaths, int rounds) {
+        this.sourcePaths = sourcePaths;
+        this.rounds = Math.max(1, rounds);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: MetricsBenchmark <source-dir>...");
+            System.exit(1);
+        }
+        Map<String, Object> record = new MetricsBenchmark(Arrays.asList(args), ROUNDS).run();
+        System.err.println("Streaming metrics: " + record.get("streamingMillis") + " ms, Spoon: " + record.get("spoonMillis")
+                + " ms, " + record.get("speedup") + "x faster");
+        NdjsonWriter out = new NdjsonWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        out.write(record);
+        out.flush();
+    }
+
+    /**
+     * @return the results as a {@code benchmark} record
+     */
+    public Map<String, Object> run() throws IOException {
+        List<Path> files = BatchMetricsAnalyzer.collectSourceFiles(sourcePaths);
+
+        StreamingMetricsAnalyzer streamingAnalyzer = new StreamingMetricsAnalyzer();
+        Map<String, ClassMetrics> approximate = new HashMap<>();
+        for (Path file : files) {
+            for (ClassMetrics metrics : streamingAnalyzer.analyzeFile(file)) {
+                approximate.put(metrics.getFullyQualifiedName(), metrics);
+            }
+        }
+        long streamingNanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long startNanos = System.nanoTime();
+            for (Path file : files) {
+                streamingAnalyzer.analyzeFile(file);
+            }
+            streamingNanos = Math.min(streamingNanos, System.nanoTime() - startNanos);
+        }
+
+        Map<String, ClassMetrics> precise = new ConcurrentHashMap<>();
+        BatchMetricsAnalyzer spoonAnalyzer = new BatchMetricsAnalyzer(sourcePaths, 1, BatchMetricsAnalyzer.DEFAULT_CHUNK_SIZE, null);
+        MetricsStatistics spoonStatistics = spoonAnalyzer.analyze(
+                metrics -> precise.put(metrics.getFullyQualifiedName(), metrics), (completedFiles, totalFiles, analyzedClasses) -> { });
+
+        int comparedMethods = 0;
+        int complexityMatches = 0;
+        int complexityNear = 0;
+        int statementMatches = 0;
+        int parameterMatches = 0;
+        for (ClassMetrics classMetrics : approximate.values()) {
+            ClassMetrics preciseClass = precise.get(classMetrics.getFullyQualifiedName());
+            if (preciseClass == null) {
+                continue;
+            }
+            Map<String, MethodMetrics> preciseMethods = methodsByKey(preciseClass);
+            for (Map.Entry<String, MethodMetrics> method : methodsByKey(classMetrics).entrySet()) {
+                MethodMetrics preciseMethod = preciseMethods.get(method.getKey());
+                if (preciseMethod == null) {
+                    continue;
+                }
+                MethodMetrics approximateMethod = method.getValue();
+                comparedMethods++;
+                int complexityError = Math.abs(approximateMethod.getCyclomaticComplexity() - preciseMethod.getCyclomaticComplexity());
+                complexityMatches += (complexityError == 0) ? 1 : 0;
+                complexityNear += (complexityError <= 1) ? 1 : 0;
+                statementMatches += (approximateMethod.getLineCount() == preciseMethod.getLineCount()) ? 1 : 0;
+                parameterMatches += (approximateMethod.getParameterCount() == preciseMethod.getParameterCount()) ? 1 : 0;
+            }
+        }
+
+        long streamingMillis = streamingNanos / 1_000_000;
+        Map<String, Object> record = NdjsonWriter.record("benchmark");
+        record.put("files", files.size());
+        record.put("streamingMillis", streamingMillis);
+        record.put("spoonMillis", spoonStatistics.getDurationMillis());
+        record.put("speedup", Math.round(spoonStatistics.getDurationMillis() * 10.0 / Math.max(1, streamingMillis)) / 10.0);
+        record.put("streamingClasses", approximate.size());
+        record.put("spoonClasses", precise.size());
+        record.put("comparedMethods", comparedMethods);
+        record.put("complexityExact", share(complexityMatches, comparedMethods));
+        record.put("complexityWithinOne", share(complexityNear, comparedMethods));
+        record.put("statementsExact", share(statementMatches, comparedMethods));
+        record.put("parametersExact", share(parameterMatches, comparedMethods));
+        return record;
+    }
+
+    // Overloads are told apart by their position among the methods of the same name
+    private static Map<String, MethodMetrics> methodsByKey(ClassMetrics classMetrics) {
+        Map<String, MethodMetrics> methods = new HashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (MethodMetrics method : classMetrics.getMethodMetrics()) {
+            int occurrence = occurrences.merge(method.getMethodName(), 1, Integer::sum);
+            methods.put(method.getMethodName() + "#" + occurrence, method);
+        }
+        return methods;
+    }
+
+    private static double share(int count, int total) {
+        return (total == 0) ? 0 : Math.round(count * 1000.0 / total) / 1000.0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ryddlesoft.devi4j;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs {@link MetricsBenchmark} once on a small source tree, so that the benchmark keeps
+ * working and the streaming and Spoon metrics keep agreeing on plain code.
+ */
+class MetricsBenchmarkTest {
+
+    @Test
+    void streamingMetricsAgreeOnPlainCode(@TempDir Path sourceRoot) throws IOException {
+        Path packageDirectory = Files.createDirectories(sourceRoot.resolve("p"));
+        Files.write(packageDirectory.resolve("A.java"), String.join("\n",
+                "package p;",
+                "public class A {",
+                "    int sum(int[] values) {",
+                "        int sum = 0;",
+                "        for (int value : values) {",
+                "            if (value > 0 && value < 100) {",
+                "                sum += value;",
+                "            }",
+                "        }",
+                "        return sum;",
+                "    }",
+                "    String name(int kind) {",
+                "        return kind == 0 ? \"none\" : \"some\";",
+                "    }",
+                "}").getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Object> record = new MetricsBenchmark(Collections.singletonList(sourceRoot.toString()), 1).run();
+
+        assertEquals(1, record.get("files"));
+        assertEquals(1, record.get("streamingClasses"));
+        assertEquals(1, record.get("spoonClasses"));
+        assertEquals(2, record.get("comparedMethods"));
+        assertEquals(1.0, record.get("complexityExact"));
+    }
+}